@@ -1,8 +1,12 @@
 /* Generated By:JJTree: Do not edit this line. ASTReturnType.java Version 6.1 */
 /* JavaCCOptions:MULTI=true,NODE_USES_PARSER=false,VISITOR=true,TRACK_TOKENS=false,NODE_PREFIX=AST,NODE_EXTENDS=,NODE_FACTORY=,SUPPORT_CLASS_VISIBILITY_PUBLIC=true */
+import SymbolTable.JmmType;
+
 public
 class ASTReturnType extends SimpleNode {
   public boolean array = false;
+  /** Canonical type, resolved on first use **/
+  private JmmType type = null;
 
   public ASTReturnType(int id) {
     super(id);
@@ -24,9 +28,16 @@ class ASTReturnType extends SimpleNode {
     return "Returns: " + super.value + (array ? "[]" : "");
   }
 
+  /** Get the canonical type of this node. **/
+  public JmmType getJmmType() {
+    if (type == null)
+      type = JmmType.of(super.value + (array ? "[]" : ""));
+    return type;
+  }
+
   @Override
   public Object jjtGetValue() {
-    return super.value + (array ? "[]" : "");
+    return getJmmType().getName();
   }
 
 }
@@ -1,8 +1,12 @@
 /* Generated By:JJTree: Do not edit this line. ASTType.java Version 6.1 */
 /* JavaCCOptions:MULTI=true,NODE_USES_PARSER=false,VISITOR=true,TRACK_TOKENS=false,NODE_PREFIX=AST,NODE_EXTENDS=,NODE_FACTORY=,SUPPORT_CLASS_VISIBILITY_PUBLIC=true */
+import SymbolTable.JmmType;
+
 public
 class ASTType extends SimpleNode {
   public boolean array = false;
+  /** Canonical type, resolved on first use **/
+  private JmmType type = null;
 
   public ASTType(int id) {
     super(id);
@@ -24,9 +28,16 @@ class ASTType extends SimpleNode {
     return "Type: " + super.value + (array ? "[]" : "");
   }
 
+  /** Get the canonical type of this node. **/
+  public JmmType getJmmType() {
+    if (type == null)
+      type = JmmType.of(super.value + (array ? "[]" : ""));
+    return type;
+  }
+
   @Override
   public Object jjtGetValue() {
-    return super.value + (array ? "[]" : "");
+    return getJmmType().getName();
   }
 }
 /* JavaCC - OriginalChecksum=076e5533aa36f31d12d52520881ff7b5 (do not edit this line) */
@@ -1,10 +1,18 @@
 /* Generated By:JJTree: Do not edit this line. SimpleNode.java Version 6.1 */
 /* JavaCCOptions:MULTI=true,NODE_USES_PARSER=false,VISITOR=true,TRACK_TOKENS=false,NODE_PREFIX=AST,NODE_EXTENDS=,NODE_FACTORY=,SUPPORT_CLASS_VISIBILITY_PUBLIC=true */
+import SymbolTable.Descriptor;
+import SymbolTable.JmmType;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
 public
 class SimpleNode implements Node {
 
   protected Node parent;
   protected Node[] children;
+  /** Number of children, the children array may have spare capacity while the node is open **/
+  protected int numChildren;
   protected int id;
   protected Object value;
   protected Parser parser;
@@ -12,6 +20,16 @@ class SimpleNode implements Node {
   public int line;
   public int column;
 
+  /** Symbol id of the identifier of the node (-1 if it has none) **/
+  public int symbol = -1;
+
+  /** Expression type, recorded by the semantic analysis **/
+  public JmmType resolvedType;
+  /** Invoked method or import of an object call, recorded by the semantic analysis **/
+  public Descriptor resolvedDescriptor;
+  /** Local variable slot of an identifier, resolved by the code generator (-1 if not resolved) **/
+  public int localSlot = -1;
+
   public SimpleNode(int i) {
     id = i;
   }
@@ -25,20 +43,29 @@ class SimpleNode implements Node {
   }
 
   public void jjtClose() {
+    trimChildren();
   }
 
   public void jjtSetParent(Node n) { parent = n; }
   public Node jjtGetParent() { return parent; }
 
   public void jjtAddChild(Node n, int i) {
+    // JJTree adds the last child first, which sizes the array exactly;
+    // children added in order grow it geometrically
     if (children == null) {
       children = new Node[i + 1];
     } else if (i >= children.length) {
-      Node c[] = new Node[i + 1];
-      System.arraycopy(children, 0, c, 0, children.length);
-      children = c;
+      children = Arrays.copyOf(children, Math.max(i + 1, children.length * 2));
     }
     children[i] = n;
+    if (i >= numChildren)
+      numChildren = i + 1;
+  }
+
+  /** Release the spare capacity of the children array. **/
+  protected void trimChildren() {
+    if (children != null && children.length > numChildren)
+      children = Arrays.copyOf(children, numChildren);
   }
 
   public Node jjtGetChild(int i) {
@@ -46,7 +73,7 @@ class SimpleNode implements Node {
   }
 
   public int jjtGetNumChildren() {
-    return (children == null) ? 0 : children.length;
+    return numChildren;
   }
 
   public void jjtSetValue(Object value) { this.value = value; }
@@ -54,6 +81,7 @@ class SimpleNode implements Node {
 
   /* START CREATED METHOD */
   public Node[] jjtGetChildren() {
+    trimChildren();
     return children;
   }
 
@@ -68,10 +96,8 @@ class SimpleNode implements Node {
   /** Accept the visitor. **/
   public Object childrenAccept(ParserVisitor visitor, Object data)
 {
-    if (children != null) {
-      for (int i = 0; i < children.length; ++i) {
-        children[i].jjtAccept(visitor, data);
-      }
+    for (int i = 0; i < numChildren; ++i) {
+      children[i].jjtAccept(visitor, data);
     }
     return data;
   }
@@ -91,17 +117,31 @@ class SimpleNode implements Node {
      out its children. */
 
   public void dump(String prefix) {
-    System.out.println(toString(prefix));
-    if (children != null) {
-      for (int i = 0; i < children.length; ++i) {
-        SimpleNode n = (SimpleNode)children[i];
+    // explicit stack, so very deep expressions do not overflow the call stack
+    ArrayDeque<SimpleNode> nodes = new ArrayDeque<>();
+    ArrayDeque<String> prefixes = new ArrayDeque<>();
+    nodes.push(this);
+    prefixes.push(prefix);
+    while (!nodes.isEmpty()) {
+      SimpleNode node = nodes.pop();
+      String nodePrefix = prefixes.pop();
+      System.out.println(node.toString(nodePrefix));
+      for (int i = node.numChildren - 1; i >= 0; --i) {
+        SimpleNode n = (SimpleNode)node.children[i];
         if (n != null) {
-          n.dump(prefix + " ");
+          nodes.push(n);
+          prefixes.push(nodePrefix + " ");
         }
       }
     }
   }
 
+  /** True for the binary operator nodes: '&&', '<', '+', '-', '*' and '/' **/
+  public boolean isBinaryOperator() {
+    return id == ParserTreeConstants.JJTAND || id == ParserTreeConstants.JJTLT || id == ParserTreeConstants.JJTSUM
+        || id == ParserTreeConstants.JJTSUB || id == ParserTreeConstants.JJTMULT || id == ParserTreeConstants.JJTDIV;
+  }
+
   public int getId() {
     return id;
   }
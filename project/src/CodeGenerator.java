@@ -1,16 +1,27 @@
 import Exceptions.SemanticErrorException;
+import SymbolTable.Descriptor;
 import SymbolTable.ImportDescriptor;
+import SymbolTable.JmmType;
 import SymbolTable.MethodDescriptor;
+import SymbolTable.SymbolMap;
 import SymbolTable.SymbolTable;
 import SymbolTable.VariableDescriptor;
 
+import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileReader;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * <h1>Code Generator</h1>
@@ -25,6 +36,10 @@ import java.util.LinkedList;
  * @see ParserVisitor
  */
 public class CodeGenerator implements ParserVisitor{
+    /**
+     * Initial size of the output buffer, in chars
+     */
+    private static final int INITIAL_OUTPUT_CAPACITY = 16 * 1024;
     /**
      * Symbol Table
      */
@@ -32,29 +47,44 @@ public class CodeGenerator implements ParserVisitor{
     /**
      * Output .j file
      */
-    private FileWriter outFileWriter;
+    private final File outFile;
+    /**
+     * File a streamed class is written to, moved to the output
+     * file once the class is complete
+     */
+    private File streamFile = null;
     /**
      * AST root node
      */
     private final SimpleNode root;
     /**
-     * Buffer to write down instructions for each method
+     * Jasmin code of the class, written to the output file at the end
+     */
+    private final JasminEmitter emitter;
+    /**
+     * Local variables of the method being generated
+     * identifier -> local variable
+     * only used to resolve each identifier node once
+     */
+    private SymbolMap<LocalVariable> variableMap;
+    /**
+     * Local variables of the method being generated,
+     * indexed by slot
      */
-    private StringBuilder instructionBuffer;
+    private LocalVariable[] locals = new LocalVariable[16];
     /**
-     * Variable Map
-     * The arrayList stores the following information:
-     * [0] - The index of the variable
-     * [1] - The type of the variable
-     * [3] (if exists) value of the variable
+     * Assignments of the method being generated whose value is
+     * never read: the variable is not live after them
      */
-    private HashMap<String, ArrayList<String>> variableMap;
+    private final HashSet<SimpleNode> deadStores = new HashSet<>();
     /**
      * Variable index counter for instructions
      */
     private int currentVariableIndex;
     /**
      * IF_ELSE block counters for jump labels
+     * jump labels are numbered per method, so the code of a method
+     * does not depend on the methods generated before it
      */
     private int if_counter = 0;
     /**
@@ -73,6 +103,67 @@ public class CodeGenerator implements ParserVisitor{
      * Current size of stack while parsing
      */
     private int currentStack = 0;
+    /**
+     * If true, branch counters are injected
+     * in the generated code and dumped when main exits
+     */
+    private boolean instrumented = false;
+    /**
+     * Labels of the branch counters, in counter index order
+     */
+    private final ArrayList<String> branchCounters = new ArrayList<>();
+    /**
+     * Branch counts of a previous instrumented run
+     * counter label -> count
+     * null if no profile is being used
+     */
+    private HashMap<String, Integer> branchProfile = null;
+    /**
+     * Name and parameters of the method being generated,
+     * used to prefix the counter labels
+     */
+    private String currentMethodKey = "";
+    /**
+     * If true, every method records its invocation count and
+     * elapsed time and a sorted profile is printed when main exits
+     */
+    private boolean timed = false;
+    /**
+     * Names of the timed methods, in table index order
+     */
+    private final ArrayList<String> methodNames = new ArrayList<>();
+    /**
+     * Local variable index of the entry time of the method being generated
+     */
+    private int entryTimeIndex = 0;
+    /**
+     * Jasmin code of the methods reused from a previous compilation
+     * method node -> code
+     * null unless method code is recorded (incremental compilation)
+     */
+    private HashMap<SimpleNode, String> reusedMethods = null;
+    /**
+     * Jasmin code of every method of the class, reused or generated
+     * method node -> code
+     * null unless method code is recorded (incremental compilation)
+     */
+    private HashMap<SimpleNode, String> methodCode = null;
+    /**
+     * Output length when the method being generated started
+     */
+    private int methodStart = 0;
+    /**
+     * If true, methods are generated in parallel by method generators
+     * (not in instrumented or timed builds, whose counter and timing
+     * tables are numbered across the class)
+     */
+    private boolean parallel = false;
+    /**
+     * Methods being generated in parallel
+     * method node -> Jasmin code of the method
+     * null unless generating in parallel
+     */
+    private HashMap<SimpleNode, ForkJoinTask<String>> forkedMethods = null;
 
     /**
      * Default Constructor
@@ -86,45 +177,218 @@ public class CodeGenerator implements ParserVisitor{
         //Create the output directory if it does not exist
         new File("out/").mkdirs();
 
-        //Create the .j file
-        File outFile = new File("out/" + symbolTable.getClassName()+ ".j");
-        try {
-            if (!outFile.createNewFile()) {
-                //clear the file
-                PrintWriter pw = new PrintWriter(outFile.getPath());
-                pw.close();
-            }
+        //Output .j file, written when code generation ends
+        this.outFile = new File("out/" + symbolTable.getClassName() + ".j");
+        this.emitter = new JasminEmitter(INITIAL_OUTPUT_CAPACITY);
+    }
+
+    /**
+     * Constructor of a method generator, which generates a single
+     * method into its own output with its own locals, stack and labels
+     * @param parent class code generator
+     */
+    private CodeGenerator(CodeGenerator parent) {
+        this.symbolTable = parent.symbolTable;
+        this.root = parent.root;
+        this.outFile = parent.outFile;
+        this.emitter = new JasminEmitter(INITIAL_OUTPUT_CAPACITY / 4);
+        this.branchProfile = parent.branchProfile;
+    }
+
+    /**
+     * Enables the instrumented build: every branch gets an execution
+     * counter, and all counters are written to 'ClassName.prof' when
+     * main exits
+     * @param instrumented true to inject counters
+     */
+    public void setInstrumented(boolean instrumented) {
+        this.instrumented = instrumented;
+    }
 
-            //create the writer
-            this.outFileWriter = new FileWriter(outFile.getPath());
+    /**
+     * Enables method timing of the generated code
+     * @param timed true to time every method of the generated code
+     */
+    public void setTimed(boolean timed) {
+        this.timed = timed;
+    }
 
-            //create the instruction Buffer
-            this.instructionBuffer = new StringBuilder();
+    /**
+     * Loads the branch counts dumped by an instrumented build.
+     * These are only used to lay out the hottest branch of each
+     * if-else block as fall-through.
+     * @param filename profile file
+     */
+    public void useBranchProfile(String filename) {
+        this.branchProfile = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // each line is: <counter label> <count>
+                String[] entry = line.split(" ");
+                if (entry.length == 2)
+                    this.branchProfile.put(entry[0], Integer.parseInt(entry[1]));
+            }
         }
-        catch (IOException e) {
-            e.printStackTrace();
+        catch (IOException | NumberFormatException e) {
+            System.out.println("ERROR: could not read profile " + filename + ".");
+            this.branchProfile = null;
         }
     }
 
+    /**
+     * Records the Jasmin code of every method and reuses the code
+     * of a previous compilation for the given methods, which are
+     * not generated again
+     * @param reusedMethods method node -> Jasmin code of the method
+     */
+    public void reuseMethods(HashMap<SimpleNode, String> reusedMethods) {
+        this.reusedMethods = reusedMethods;
+        this.methodCode = new HashMap<>();
+    }
+
+    /**
+     * Getter method for the code of each method, only recorded
+     * after reuseMethods is called
+     * @return method node -> Jasmin code of the method, null if not recorded
+     */
+    public HashMap<SimpleNode, String> getMethodCode() {
+        return this.methodCode;
+    }
+
+    /**
+     * Enables parallel code generation: every method is generated by a
+     * method generator on the common ForkJoin pool and the methods are
+     * appended in declaration order, so the output is the same as the
+     * sequential generation
+     * @param parallel true to generate methods in parallel
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
     /**
      * Initiator method for code generator
      */
     public void generateCode() {
+        if (this.parallel && !this.instrumented && !this.timed) {
+            this.forkedMethods = new HashMap<>();
+            // the method generators look methods and imports up concurrently
+            this.symbolTable.buildIndexes();
+            this.forkMethods(this.root);
+        }
         this.visit(this.root, null);
     }
 
+    /**
+     * Starts a streamed class: the class header and fields are
+     * written to the output file, and each method is written as
+     * soon as it is generated by streamMethod. The root must be
+     * the signature tree the symbol table was built from.
+     */
+    public void beginStream() {
+        ASTClassDeclaration classNode = null;
+        for (int i = 0; i < this.root.jjtGetNumChildren(); i++) {
+            if (this.root.jjtGetChild(i) instanceof ASTClassDeclaration)
+                classNode = (ASTClassDeclaration) this.root.jjtGetChild(i);
+        }
+        // deleted if the compilation does not complete (i.e stops on too many errors)
+        this.streamFile = new File(this.outFile.getPath() + ".part");
+        this.streamFile.deleteOnExit();
+        try {
+            this.emitter.openStream(this.streamFile);
+            this.writeClassHeader(classNode);
+            // fields, the methods are streamed
+            for (int i = 0; i < classNode.jjtGetNumChildren(); i++) {
+                if (classNode.jjtGetChild(i) instanceof ASTVarDeclaration)
+                    classNode.jjtGetChild(i).jjtAccept(this, null);
+            }
+            this.emitter.drain();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Generates a method of a streamed class and writes it to the
+     * output file, so the method code is not kept in memory
+     * @param method RegularMethod or MainMethod node
+     */
+    public void streamMethod(SimpleNode method) {
+        method.jjtAccept(this, null);
+        try {
+            this.emitter.drain();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Ends a streamed class: writes the constructor (and the methods of
+     * the instrumented and timed builds) and moves the class to the output file
+     */
+    public void endStream() {
+        this.writeClassFooter();
+        try {
+            this.emitter.closeStream();
+            Files.move(this.streamFile.toPath(), this.outFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Ends a streamed class that failed to compile: the partially
+     * written class is deleted and the output file is left as it was
+     */
+    public void abortStream() {
+        this.emitter.abortStream();
+        this.streamFile.delete();
+    }
+
+    /**
+     * Submits the generation of every method of a subtree that is
+     * not reused to the common ForkJoin pool
+     * @param node subtree root
+     */
+    private void forkMethods(SimpleNode node) {
+        for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+            SimpleNode child = (SimpleNode) node.jjtGetChild(i);
+            if (child instanceof ASTRegularMethod || child instanceof ASTMainMethod) {
+                if (this.reusedMethods != null && this.reusedMethods.containsKey(child))
+                    continue;
+                this.forkedMethods.put(child, ForkJoinPool.commonPool().submit(() -> {
+                    CodeGenerator method = new CodeGenerator(this);
+                    child.jjtAccept(method, null);
+                    return method.getOutput().toString();
+                }));
+            }
+            else if (child instanceof ASTClassDeclaration)
+                this.forkMethods(child);
+        }
+    }
+
+    /**
+     * Getter method for the generated code
+     * @return Jasmin code of the class
+     */
+    public CharSequence getOutput() {
+        return this.emitter.getOutput();
+    }
+
     /**
      * Add variable to variable map
-     * @param variableId variable identifier
+     * @param variableSymbol variable identifier symbol id
      * @param variableType variable type
      * @return true if variable was stored correctly
      */
-    private boolean addVariable(String variableId, String variableType) {
-        if (!this.variableMap.containsKey(variableId)) {
-            ArrayList<String> paramInfo = new ArrayList<>();
-            paramInfo.add(String.valueOf(this.currentVariableIndex));
-            paramInfo.add(variableType);
-            this.variableMap.put(variableId,paramInfo);
+    private boolean addVariable(int variableSymbol, String variableType) {
+        if (!this.variableMap.containsKey(variableSymbol)) {
+            LocalVariable variable = new LocalVariable(this.currentVariableIndex, JmmType.of(variableType));
+            this.variableMap.put(variableSymbol, variable);
+            if (variable.getSlot() >= this.locals.length)
+                this.locals = Arrays.copyOf(this.locals, this.locals.length * 2);
+            this.locals[variable.getSlot()] = variable;
             this.currentVariableIndex++;
 
             return true;
@@ -134,6 +398,68 @@ public class CodeGenerator implements ParserVisitor{
         }
     }
 
+    /**
+     * Get the local variable an identifier node refers to. The
+     * slot is resolved on the first call and cached in the node.
+     * @param node identifier node
+     * @return local variable, null if the identifier is a field
+     */
+    private LocalVariable getLocal(SimpleNode node) {
+        if (node.localSlot == -1) {
+            LocalVariable variable = this.variableMap.get(node.symbol);
+            // fields are cached as slot 0 ('this' is never a variable)
+            node.localSlot = (variable == null) ? 0 : variable.getSlot();
+        }
+        return this.locals[node.localSlot];
+    }
+
+    /**
+     * Starts the local variables, stack size and jump labels of a new method
+     */
+    private void resetLocals() {
+        this.variableMap = new SymbolMap<>();
+        Arrays.fill(this.locals, null);
+        this.currentVariableIndex = 1;
+        this.maxStack = 0;
+        this.currentStack = 0;
+        this.if_counter = 0;
+        this.while_counter = 0;
+        this.logic_operation_counter = 0;
+    }
+
+    /**
+     * Starts the code of a method. If the method code is reused or
+     * was generated by a method generator it is appended to the
+     * output and the method is not generated.
+     * @param node method node
+     * @return true if the method code was appended
+     */
+    private boolean beginMethod(SimpleNode node) {
+        String code = null;
+        if (this.reusedMethods != null)
+            code = this.reusedMethods.get(node);
+        if (code == null && this.forkedMethods != null && this.forkedMethods.containsKey(node))
+            code = this.forkedMethods.get(node).join();
+        if (code != null) {
+            this.emitter.append(code);
+            if (this.methodCode != null)
+                this.methodCode.put(node, code);
+            return true;
+        }
+        this.methodStart = this.emitter.length();
+        return false;
+    }
+
+    /**
+     * Ends the code of a generated method, recording it if
+     * method code is being recorded
+     * @param node method node
+     */
+    private void endMethod(SimpleNode node) {
+        if (this.methodCode != null)
+            this.methodCode.put(node, this.emitter.getOutput().subSequence(this.methodStart, this.emitter.length()).toString());
+    }
+
     /**
      * Increment current stack and update max
      * stack
@@ -153,6 +479,16 @@ public class CodeGenerator implements ParserVisitor{
         currentStack -= value;
     }
 
+    /**
+     * Updates max stack for instructions which use extra stack
+     * slots but leave the stack as it was
+     * @param slots number of extra slots used
+     */
+    private void reserveStack(int slots) {
+        if (currentStack + slots > maxStack)
+            maxStack = currentStack + slots;
+    }
+
     /**
      * Called after each statement. Clears the stack
      * to size 0 while writing pops to the instruction
@@ -170,7 +506,25 @@ public class CodeGenerator implements ParserVisitor{
      * @param instruction
      */
     private void bufferInstruction(String instruction) {
-        this.instructionBuffer.append("   ").append(instruction).append("\n");
+        this.emitter.instruction(instruction);
+    }
+
+    /**
+     * Adds an instruction with a label or descriptor operand to the buffer
+     * @param opcode instruction opcode
+     * @param operand instruction operand
+     */
+    private void bufferInstruction(String opcode, String operand) {
+        this.emitter.instruction(opcode, operand);
+    }
+
+    /**
+     * Adds an instruction with an integer operand to the buffer
+     * @param opcode instruction opcode
+     * @param operand instruction operand
+     */
+    private void bufferInstruction(String opcode, int operand) {
+        this.emitter.instruction(opcode, operand);
     }
 
     /**
@@ -178,49 +532,261 @@ public class CodeGenerator implements ParserVisitor{
      * @param instruction
      */
     private void writeInstruction(String instruction) {
-        try {
-            this.outFileWriter.write(instruction + "\n");
-        }
-        catch (IOException e) {
-            e.printStackTrace();
-        }
+        this.emitter.directive(instruction);
     }
 
     /**
-     * Dumps buffered instructions to the output file and clears the buffer (by creating a new one)
+     * Dumps buffered instructions to the output file and clears the buffer
      */
     private void dumpInstructions() {
-        try {
-            this.outFileWriter.write(this.instructionBuffer.toString());
-            this.instructionBuffer = new StringBuilder();
+        this.emitter.flushMethod();
+    }
+
+    /**
+     * Increments the counter at the given index of a counter array
+     * @param counters counter array field name
+     * @param index counter index
+     */
+    private void bufferCounterIncrement(String counters, int index) {
+        bufferInstruction("getstatic " + symbolTable.getClassName() + "/" + counters + " [I");
+        loadInteger(index);
+        bufferInstruction("dup2");
+        bufferInstruction("iaload");
+        bufferInstruction("iconst_1");
+        bufferInstruction("iadd");
+        bufferInstruction("iastore");
+        // arrayref, index, arrayref, index
+        this.reserveStack(4);
+    }
+
+    /**
+     * Counts the executions of a branch (instrumented build only)
+     * @param label branch label
+     */
+    private void bufferBranchCounter(String label) {
+        if (!this.instrumented)
+            return;
+        this.branchCounters.add(this.currentMethodKey + "/" + label);
+        this.bufferCounterIncrement("__branch_counters", this.branchCounters.size() - 1);
+    }
+
+    /**
+     * Get the execution count of a branch from the loaded profile
+     * @param label branch label
+     * @return execution count, 0 if unknown
+     */
+    private int getBranchCount(String label) {
+        Integer count = this.branchProfile.get(this.currentMethodKey + "/" + label);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Writes the static initialiser which allocates the counter
+     * arrays and the method timing table
+     */
+    private void writeStaticInitializer() {
+        String className = symbolTable.getClassName();
+
+        writeInstruction(".method static <clinit>()V");
+        writeInstruction(".limit stack " + (this.timed ? 4 : 1));
+        writeInstruction(".limit locals 0");
+        if (this.instrumented) {
+            loadInteger(this.branchCounters.size());
+            bufferInstruction("newarray int");
+            bufferInstruction("putstatic " + className + "/__branch_counters [I");
         }
-        catch (IOException e) {
-            e.printStackTrace();
+        if (this.timed) {
+            loadInteger(this.methodNames.size());
+            bufferInstruction("newarray int");
+            bufferInstruction("putstatic " + className + "/__method_calls [I");
+            loadInteger(this.methodNames.size());
+            bufferInstruction("newarray long");
+            bufferInstruction("putstatic " + className + "/__method_time [J");
+            loadInteger(this.methodNames.size());
+            bufferInstruction("anewarray java/lang/String");
+            for (int i = 0; i < this.methodNames.size(); i++) {
+                bufferInstruction("dup");
+                loadInteger(i);
+                bufferInstruction("ldc \"" + this.methodNames.get(i) + "\"");
+                bufferInstruction("aastore");
+            }
+            bufferInstruction("putstatic " + className + "/__method_names [Ljava/lang/String;");
         }
+        bufferInstruction("return");
+        dumpInstructions();
+        writeInstruction(".end method");
+    }
+
+    /**
+     * Writes the method which dumps the counters to 'ClassName.prof'
+     */
+    private void writeProfileMethods() {
+        String className = symbolTable.getClassName();
+
+        writeInstruction(".method static __dumpProfile()V");
+        writeInstruction(".limit stack 4");
+        writeInstruction(".limit locals 0");
+        bufferInstruction("new java/io/PrintStream");
+        bufferInstruction("dup");
+        bufferInstruction("ldc \"" + className + ".prof\"");
+        bufferInstruction("invokespecial java/io/PrintStream/<init>(Ljava/lang/String;)V");
+        this.bufferProfileEntries("__branch_counters", this.branchCounters);
+        bufferInstruction("invokevirtual java/io/PrintStream/close()V");
+        bufferInstruction("return");
+        dumpInstructions();
+        writeInstruction(".end method");
     }
 
     /**
-     * Return the accordingly JVM type
-     * @param type value type (i.e int, boolean, void...)
-     * @return JVM type according to specified type
+     * Prints a 'label count' line for each counter
+     * of a counter array, assuming the print stream is on top of the stack
+     * @param counters counter array field name
+     * @param labels counter labels
      */
-    private String convertType(String type) {
-        switch (type) {
-            case "void":
-                return "V";
+    private void bufferProfileEntries(String counters, ArrayList<String> labels) {
+        for (int i = 0; i < labels.size(); i++) {
+            bufferInstruction("dup");
+            bufferInstruction("ldc \"" + labels.get(i) + " \"");
+            bufferInstruction("invokevirtual java/io/PrintStream/print(Ljava/lang/String;)V");
+            bufferInstruction("dup");
+            bufferInstruction("getstatic " + symbolTable.getClassName() + "/" + counters + " [I");
+            loadInteger(i);
+            bufferInstruction("iaload");
+            bufferInstruction("invokevirtual java/io/PrintStream/println(I)V");
+        }
+    }
 
-            case "int":
-                return "I";
+    /**
+     * Registers the method being generated in the timing table
+     * and stores its entry time in two new local variables (timed build only)
+     */
+    private void bufferMethodEntry() {
+        if (!this.timed)
+            return;
+        this.methodNames.add(this.currentMethodKey);
+        // a long takes two local variable slots
+        this.entryTimeIndex = this.currentVariableIndex;
+        this.currentVariableIndex += 2;
+        bufferInstruction("invokestatic java/lang/System/nanoTime()J");
+        bufferLocalInstruction("lstore", this.entryTimeIndex);
+        this.reserveStack(2);
+    }
 
-            case "boolean":
-                return "Z";
+    /**
+     * Counts the invocation of the method being generated and adds
+     * the time elapsed since its entry to the timing table (timed build only)
+     */
+    private void bufferMethodExit() {
+        if (!this.timed)
+            return;
+        String className = symbolTable.getClassName();
+        int methodIndex = this.methodNames.size() - 1;
+        this.bufferCounterIncrement("__method_calls", methodIndex);
+
+        bufferInstruction("getstatic " + className + "/__method_time [J");
+        loadInteger(methodIndex);
+        bufferInstruction("dup2");
+        bufferInstruction("laload");
+        bufferInstruction("invokestatic java/lang/System/nanoTime()J");
+        bufferLocalInstruction("lload", this.entryTimeIndex);
+        bufferInstruction("lsub");
+        bufferInstruction("ladd");
+        bufferInstruction("lastore");
+        // arrayref, index, total time, now, entry time
+        this.reserveStack(8);
+    }
 
-            case "int[]":
-                return "[I";
+    /**
+     * Writes the method which prints the timing table to System.err,
+     * most expensive method first.
+     * Sorting packs each entry as 'time * methods + index' in a long[]
+     */
+    private void writeTimingMethods() {
+        String className = symbolTable.getClassName();
+
+        writeInstruction(".method static __printProfile()V");
+        writeInstruction(".limit stack 6");
+        // keys, number of methods, loop index, method index
+        writeInstruction(".limit locals 4");
+        bufferInstruction("getstatic " + className + "/__method_names [Ljava/lang/String;");
+        bufferInstruction("arraylength");
+        bufferInstruction("istore_1");
+        bufferInstruction("iload_1");
+        bufferInstruction("newarray long");
+        bufferInstruction("astore_0");
 
-            default:
-                return null;
-        }
+        // keys[i] = time[i] * n + i
+        bufferInstruction("iconst_0");
+        bufferInstruction("istore_2");
+        bufferInstruction("pack:");
+        bufferInstruction("iload_2");
+        bufferInstruction("iload_1");
+        bufferInstruction("if_icmpge sort");
+        bufferInstruction("aload_0");
+        bufferInstruction("iload_2");
+        bufferInstruction("getstatic " + className + "/__method_time [J");
+        bufferInstruction("iload_2");
+        bufferInstruction("laload");
+        bufferInstruction("iload_1");
+        bufferInstruction("i2l");
+        bufferInstruction("lmul");
+        bufferInstruction("iload_2");
+        bufferInstruction("i2l");
+        bufferInstruction("ladd");
+        bufferInstruction("lastore");
+        bufferInstruction("iinc 2 1");
+        bufferInstruction("goto pack");
+
+        bufferInstruction("sort:");
+        bufferInstruction("aload_0");
+        bufferInstruction("invokestatic java/util/Arrays/sort([J)V");
+        bufferInstruction("getstatic java/lang/System/err Ljava/io/PrintStream;");
+        bufferInstruction("ldc \"==== Method Profile ====\"");
+        bufferInstruction("invokevirtual java/io/PrintStream/println(Ljava/lang/String;)V");
+
+        // print from the last (most expensive) key to the first
+        bufferInstruction("iload_1");
+        bufferInstruction("istore_2");
+        bufferInstruction("print:");
+        bufferInstruction("iinc 2 -1");
+        bufferInstruction("iload_2");
+        bufferInstruction("iflt done");
+        bufferInstruction("aload_0");
+        bufferInstruction("iload_2");
+        bufferInstruction("laload");
+        bufferInstruction("iload_1");
+        bufferInstruction("i2l");
+        bufferInstruction("lrem");
+        bufferInstruction("l2i");
+        bufferInstruction("istore_3");
+        bufferInstruction("getstatic java/lang/System/err Ljava/io/PrintStream;");
+        bufferInstruction("new java/lang/StringBuilder");
+        bufferInstruction("dup");
+        bufferInstruction("invokespecial java/lang/StringBuilder/<init>()V");
+        bufferInstruction("getstatic " + className + "/__method_names [Ljava/lang/String;");
+        bufferInstruction("iload_3");
+        bufferInstruction("aaload");
+        bufferInstruction("invokevirtual java/lang/StringBuilder/append(Ljava/lang/String;)Ljava/lang/StringBuilder;");
+        bufferInstruction("ldc \" calls: \"");
+        bufferInstruction("invokevirtual java/lang/StringBuilder/append(Ljava/lang/String;)Ljava/lang/StringBuilder;");
+        bufferInstruction("getstatic " + className + "/__method_calls [I");
+        bufferInstruction("iload_3");
+        bufferInstruction("iaload");
+        bufferInstruction("invokevirtual java/lang/StringBuilder/append(I)Ljava/lang/StringBuilder;");
+        bufferInstruction("ldc \" time (ns): \"");
+        bufferInstruction("invokevirtual java/lang/StringBuilder/append(Ljava/lang/String;)Ljava/lang/StringBuilder;");
+        bufferInstruction("getstatic " + className + "/__method_time [J");
+        bufferInstruction("iload_3");
+        bufferInstruction("laload");
+        bufferInstruction("invokevirtual java/lang/StringBuilder/append(J)Ljava/lang/StringBuilder;");
+        bufferInstruction("invokevirtual java/lang/StringBuilder/toString()Ljava/lang/String;");
+        bufferInstruction("invokevirtual java/io/PrintStream/println(Ljava/lang/String;)V");
+        bufferInstruction("goto print");
+
+        bufferInstruction("done:");
+        bufferInstruction("return");
+        dumpInstructions();
+        writeInstruction(".end method");
     }
 
     /**
@@ -233,45 +799,24 @@ public class CodeGenerator implements ParserVisitor{
         String result = "";
 
         for (String arg : args) {
-            result += convertType(arg);
+            result += JmmType.of(arg).getDescriptor();
         }
 
         return result;
     }
 
     /**
-     * Convert regular types to JVM instruction fashion
-     * @param type value type
-     * @return JVM instruction type
-     */
-    private String convertInstructionType(String type) {
-        switch (type) {
-            case "boolean":
-            case "int":
-                return "i";
-
-            case "void":
-                return "";
-
-            default:
-                return  "a";
-        }
-    }
-
-    /**
-     * Return method's list of arguments
+     * Get the arguments of a call in JVM instruction fashion
      * @param node CallMethodNode
-     * @param methodDescriptor method descriptor
-     * @return List of Arguments in List of Strings
+     * @return string with the argument types in JVM instruction fashion
      */
-    private LinkedList<String> fetchMethodArgs(ASTCallMethod node, MethodDescriptor methodDescriptor) {
-        LinkedList<String> args = new LinkedList<>();
-        // create semantic analyzer
-        SemanticAnalyser analyser = new SemanticAnalyser(this.symbolTable, 0);
-        // use semantic analyser logic to fetch method call arguments
-        args = (LinkedList<String>) analyser.visit(node, methodDescriptor);
+    private String fetchArgumentDescriptors(SimpleNode node) {
+        String result = "";
+        // argument types were recorded by the semantic analysis
+        for (int i = 0; i < node.jjtGetNumChildren(); i++)
+            result += ((SimpleNode) node.jjtGetChild(i)).resolvedType.getDescriptor();
 
-        return args;
+        return result;
     }
 
     /**
@@ -333,17 +878,207 @@ public class CodeGenerator implements ParserVisitor{
 
     private void loadInteger(int number) {
         if (number < 6) {
-            bufferInstruction("iconst_" + number);
+            this.emitter.shortInstruction("iconst", number);
         }
         else if (number < 128) {
-            bufferInstruction("bipush " + number);
+            bufferInstruction("bipush", number);
         }
         else if (number < 32768) { //65536 = 2^15 -> number of bits in a signed short
-            bufferInstruction("sipush " + number);
+            bufferInstruction("sipush", number);
         }
         else {
-            bufferInstruction("ldc_w " + number);
+            bufferInstruction("ldc_w", number);
+        }
+    }
+
+    /**
+     * Buffers a load or store instruction for a local variable,
+     * using the short form (i.e iload_1) whenever possible
+     * @param instruction load or store instruction (i.e iload, astore...)
+     * @param index local variable index
+     */
+    private void bufferLocalInstruction(String instruction, int index) {
+        if (index > 3)
+            bufferInstruction(instruction, index);
+        else
+            this.emitter.shortInstruction(instruction, index);
+    }
+
+    /**
+     * Checks if a while loop has the shape 'while (i < a.length)', where
+     * 'i' is a non constant int local variable and 'a' is an int[] local
+     * variable which is never reassigned inside the loop body.
+     * @param node while block node
+     * @return the 'a.length' node if the loop is counted, null otherwise
+     */
+    private ASTObjectCall getCountedLoopLength(ASTWhileBlock node) {
+        // condition must be a '<' comparison
+        if (!(node.jjtGetChild(0) instanceof ASTlt))
+            return null;
+        SimpleNode condition = (SimpleNode) node.jjtGetChild(0);
+        // left operand must be a non constant int local variable
+        if (!(condition.jjtGetChild(0) instanceof ASTIdentifier) || condition.jjtGetChild(0).jjtGetNumChildren() != 0)
+            return null;
+        LocalVariable induction = this.getLocal((SimpleNode) condition.jjtGetChild(0));
+        if (induction == null || induction.isConstant() || induction.getType() != JmmType.INT)
+            return null;
+        // right operand must be 'a.length'
+        if (!(condition.jjtGetChild(1) instanceof ASTObjectCall))
+            return null;
+        ASTObjectCall lengthCall = (ASTObjectCall) condition.jjtGetChild(1);
+        if (!(lengthCall.jjtGetChild(0) instanceof ASTIdentifier) || !(lengthCall.jjtGetChild(1) instanceof ASTGetLength))
+            return null;
+        // 'a' must be an int[] local variable
+        SimpleNode array = (SimpleNode) lengthCall.jjtGetChild(0);
+        if (array.jjtGetNumChildren() != 0)
+            return null;
+        LocalVariable arrayVariable = this.getLocal(array);
+        if (arrayVariable == null || arrayVariable.getType() != JmmType.INT_ARRAY)
+            return null;
+        // 'a' must not be reassigned inside the loop, otherwise its length may change
+        for (int i = 1; i < node.jjtGetNumChildren(); i++) {
+            if (this.assignsVariable((SimpleNode) node.jjtGetChild(i), (String) array.jjtGetValue()))
+                return null;
+        }
+        return lengthCall;
+    }
+
+    /**
+     * Finds the assignments of a method whose variable is not live
+     * after them, i.e no path reads the value before it is assigned
+     * again or the method returns
+     * @param node RegularMethod or MainMethod node
+     * @param descriptor method descriptor
+     */
+    private void findDeadStores(SimpleNode node, MethodDescriptor descriptor) {
+        this.deadStores.clear();
+        FlowGraph graph = new FlowGraph(node, descriptor);
+        // a local is live if it is read on some path before it is assigned
+        BitSet[] liveAfter = Dataflow.solve(graph, Dataflow.Direction.BACKWARD, Dataflow.Meet.UNION, new BitSet(),
+                (flowNode, value) -> {
+                    if (graph.getDef(flowNode) != FlowGraph.NONE)
+                        value.clear(graph.getDef(flowNode));
+                    value.or(graph.getUses(flowNode));
+                });
+        for (int flowNode = 0; flowNode < graph.size(); flowNode++) {
+            int def = graph.getDef(flowNode);
+            if (def != FlowGraph.NONE && !liveAfter[flowNode].get(def))
+                this.deadStores.add(graph.getStatement(flowNode));
+        }
+    }
+
+    /**
+     * Writes an assignment whose value is never read: the value
+     * is only computed (and discarded) if computing it has side
+     * effects
+     * @param value assigned expression
+     * @param data method descriptor
+     */
+    private void writeDeadStore(SimpleNode value, Object data) {
+        if (!this.hasSideEffects(value))
+            return;
+        value.jjtAccept(this, data);
+        bufferInstruction("pop");
+        this.decrementStack(1);
+    }
+
+    /**
+     * Checks if evaluating an expression may have side effects:
+     * calls, object and array creation, array accesses and
+     * divisions (which may throw)
+     * @param node expression node
+     * @return true unless the expression only reads variables and
+     *         uses literals and non throwing operators
+     */
+    private boolean hasSideEffects(SimpleNode node) {
+        // explicit stack, so very deep expressions do not overflow the call stack
+        ArrayDeque<SimpleNode> stack = new ArrayDeque<>();
+        stack.push(node);
+        while (!stack.isEmpty()) {
+            SimpleNode current = stack.pop();
+            if (current instanceof ASTinteger || current instanceof ASTbool || current instanceof AST_this)
+                continue;
+            if (current instanceof ASTIdentifier) {
+                if (current.jjtGetNumChildren() != 0)
+                    return true;
+                continue;
+            }
+            if (!(current instanceof ASTsum || current instanceof ASTsub || current instanceof ASTmult
+                    || current instanceof ASTlt || current instanceof ASTand || current instanceof ASTnot))
+                return true;
+            for (int i = 0; i < current.jjtGetNumChildren(); i++)
+                stack.push((SimpleNode) current.jjtGetChild(i));
+        }
+        return false;
+    }
+
+    /**
+     * Checks if a statement (or any of its nested statements)
+     * assigns a new value to a variable
+     * @param node statement node
+     * @param identifier variable identifier
+     * @return true if the variable is assigned
+     */
+    private boolean assignsVariable(SimpleNode node, String identifier) {
+        // explicit stack, so very deep expressions do not overflow the call stack
+        ArrayDeque<SimpleNode> stack = new ArrayDeque<>();
+        stack.push(node);
+        while (!stack.isEmpty()) {
+            SimpleNode current = stack.pop();
+            if (current instanceof ASTAssignment) {
+                SimpleNode assignee = (SimpleNode) current.jjtGetChild(0);
+                if (assignee.jjtGetNumChildren() == 0 && identifier.equals(assignee.jjtGetValue()))
+                    return true;
+            }
+            for (int i = 0; i < current.jjtGetNumChildren(); i++)
+                stack.push((SimpleNode) current.jjtGetChild(i));
+        }
+        return false;
+    }
+
+    /**
+     * Writes a 'while (i < a.length)' loop in counted form: the array
+     * length is loaded once into a new local variable and the loop test
+     * compares the induction variable directly against it, instead of
+     * building a boolean and reloading the length on every iteration.
+     * @param node while block node
+     * @param lengthCall 'a.length' node of the loop condition
+     * @param whileLabel loop body label
+     * @param endWhileLabel loop exit label
+     * @param data method descriptor
+     */
+    private void writeCountedLoop(ASTWhileBlock node, ASTObjectCall lengthCall, String whileLabel, String endWhileLabel, Object data) {
+        Node induction = node.jjtGetChild(0).jjtGetChild(0);
+        // hoist the array length into a new local variable
+        int lengthIndex = this.currentVariableIndex++;
+        lengthCall.jjtGetChild(0).jjtAccept(this, data);
+        bufferInstruction("arraylength");
+        bufferLocalInstruction("istore", lengthIndex);
+        this.decrementStack(1);
+
+        // test before the first iteration
+        induction.jjtAccept(this, data);
+        bufferLocalInstruction("iload", lengthIndex);
+        this.incrementStack();
+        bufferInstruction("if_icmpge", endWhileLabel);
+        this.decrementStack(2);
+
+        bufferInstruction(whileLabel + ":");
+        this.bufferBranchCounter(whileLabel);
+        for (int i = 1; i < node.jjtGetNumChildren(); i++) {    // accept statements
+            // visit child statements
+            node.jjtGetChild(i).jjtAccept(this, data);
+            // clear stack
+            this.clearStack();
         }
+
+        // test after statements
+        induction.jjtAccept(this, data);
+        bufferLocalInstruction("iload", lengthIndex);
+        this.incrementStack();
+        bufferInstruction("if_icmplt", whileLabel);
+        this.decrementStack(2);
+        bufferInstruction(endWhileLabel + ":");
     }
 
     @Override
@@ -352,7 +1087,7 @@ public class CodeGenerator implements ParserVisitor{
         node.childrenAccept(this,null);
 
         try {
-            this.outFileWriter.close();
+            this.emitter.writeTo(this.outFile);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -362,44 +1097,91 @@ public class CodeGenerator implements ParserVisitor{
 
     @Override
     public Object visit(ASTClassDeclaration node, Object data) {
-        //write the class name and super class
-        writeInstruction(".class public " +  node.classId);
+        this.writeClassHeader(node);
 
+        //Accept children
+        node.childrenAccept(this, null);
 
-        //Write extending class
-        String extendingClassName = symbolTable.getExtendedClassName();
+        this.writeClassFooter();
 
-        if (symbolTable.getExtendedClassName().isEmpty()) {
-            extendingClassName = "java/lang/Object";
-        }
+        return null;
+    }
+
+    /**
+     * Writes the class name, the super class and the
+     * fields of the instrumented and timed builds
+     * @param node class declaration node
+     */
+    private void writeClassHeader(ASTClassDeclaration node) {
+        //write the class name and super class
+        writeInstruction(".class public " +  node.classId);
 
         //write the superclass
-        writeInstruction(".super " + extendingClassName);
+        writeInstruction(".super " + this.getSuperClassName());
 
-        //Accept children
-        node.childrenAccept(this, null);
+        //write the counter array of the instrumented build
+        if (this.instrumented) {
+            writeInstruction(".field private static '__branch_counters' [I");
+        }
+        //write the method timing table of the timed build
+        if (this.timed) {
+            writeInstruction(".field private static '__method_calls' [I");
+            writeInstruction(".field private static '__method_time' [J");
+            writeInstruction(".field private static '__method_names' [Ljava/lang/String;");
+        }
+    }
 
+    /**
+     * Writes the constructor and the methods of the
+     * instrumented and timed builds, after the class methods
+     */
+    private void writeClassFooter() {
         //Write the constructor
         writeInstruction(".method public <init>()V");
         bufferInstruction("aload_0");
-        bufferInstruction("invokespecial " + extendingClassName + "/<init>()V");
+        bufferInstruction("invokespecial " + this.getSuperClassName() + "/<init>()V");
         bufferInstruction("return");
         dumpInstructions();
         writeInstruction(".end method");
 
-        return null;
+        //Write the counter and timing table initialisation and dump
+        if (this.instrumented || this.timed)
+            this.writeStaticInitializer();
+        if (this.instrumented)
+            this.writeProfileMethods();
+        if (this.timed)
+            this.writeTimingMethods();
+    }
+
+    /**
+     * Get the JVM name of the super class
+     * @return extended class name, java/lang/Object if none
+     */
+    private String getSuperClassName() {
+        //Write extending class
+        String extendingClassName = symbolTable.getExtendedClassName();
+
+        if (symbolTable.getExtendedClassName().isEmpty()) {
+            extendingClassName = "java/lang/Object";
+        }
+
+        return extendingClassName;
     }
 
     @Override
     public Object visit(ASTMainMethod node, Object data) {
-        this.variableMap = new HashMap<>();
-        this.currentVariableIndex = 1;
+        if (this.beginMethod(node))
+            return null;
+        this.resetLocals();
 
         //get main method descriptor
         LinkedList<String> args = new LinkedList<>();
         args.push("String[]");
+        this.currentMethodKey = "main([Ljava/lang/String;)";
+        this.bufferMethodEntry();
         try {
             MethodDescriptor descriptor = symbolTable.lookupMethod("main",args);
+            this.findDeadStores(node, descriptor);
             // visit children: 1 by 1 and clear the stack after each statement
             for (Node child : node.jjtGetChildren()) {
                 // visit child statement
@@ -413,22 +1195,33 @@ public class CodeGenerator implements ParserVisitor{
             System.exit(0);
         }
 
+        //dump the counters of the instrumented build
+        if (this.instrumented)
+            bufferInstruction("invokestatic " + symbolTable.getClassName() + "/__dumpProfile()V");
+        //print the method profile of the timed build
+        if (this.timed) {
+            this.bufferMethodExit();
+            bufferInstruction("invokestatic " + symbolTable.getClassName() + "/__printProfile()V");
+        }
+
         //write the main method
         writeInstruction(".method static public main([Ljava/lang/String;)V");
-        writeInstruction(".limit locals " + this.getLimitLocals(node));
+        writeInstruction(".limit locals " + Math.max(this.getLimitLocals(node), this.currentVariableIndex));
         writeInstruction(".limit stack " + this.maxStack);
 
         bufferInstruction("return");
         dumpInstructions(); //Write all method instructions to the file
         writeInstruction(".end method");
+        this.endMethod(node);
 
         return null;
     }
 
     @Override
     public Object visit(ASTRegularMethod node, Object data) {
-        this.variableMap = new HashMap<>();
-        this.currentVariableIndex = 1;
+        if (this.beginMethod(node))
+            return null;
+        this.resetLocals();
 
         LinkedList<String> args = new LinkedList<>();
 
@@ -445,7 +1238,7 @@ public class CodeGenerator implements ParserVisitor{
                     args.add((String) paramType.jjtGetValue());
 
                     //Add the parameter to the variable index table
-                    this.addVariable((String) param.jjtGetValue(),(String) paramType.jjtGetValue());
+                    this.addVariable(param.symbol, (String) paramType.jjtGetValue());
                 }
 
                 continue;
@@ -453,10 +1246,13 @@ public class CodeGenerator implements ParserVisitor{
 
             break;
         }
+        this.currentMethodKey = node.jjtGetValue() + "(" + convertParams(args) + ")";
+        this.bufferMethodEntry();
 
         try {
             //Get method descriptor
             MethodDescriptor descriptor = symbolTable.lookupMethod((String) node.jjtGetValue(),args);
+            this.findDeadStores(node, descriptor);
             // visit children: 1 by 1 and clear the stack after each statement
             for (Node child : node.jjtGetChildren()) {
                 // visit child statement
@@ -465,11 +1261,13 @@ public class CodeGenerator implements ParserVisitor{
                 this.clearStack();
             }
             // write instructions
-            writeInstruction(".method public " + node.jjtGetValue() + "(" + convertParams(args) + ")" + convertType(descriptor.getType()));
-            writeInstruction(".limit locals " + this.getLimitLocals(node));
+            writeInstruction(".method public " + node.jjtGetValue() + "(" + convertParams(args) + ")" + descriptor.getJmmType().getDescriptor());
+            // hoisted loop lengths may use more locals than the declared variables
+            writeInstruction(".limit locals " + Math.max(this.getLimitLocals(node), this.currentVariableIndex));
             writeInstruction(".limit stack " + maxStack);
             dumpInstructions(); //Write all children instructions to the file
             writeInstruction(".end method");
+            this.endMethod(node);
         }
         catch (SemanticErrorException e) {
             e.printStackTrace();
@@ -481,206 +1279,49 @@ public class CodeGenerator implements ParserVisitor{
 
     @Override
     public Object visit(ASTObjectCall node, Object data) {
-        // get belonging method descriptor
-        MethodDescriptor belongingMethodDescriptor = (MethodDescriptor) data;
         // an object call has two child nodes
         // first child is the object (caller)
         SimpleNode identifier = (SimpleNode) node.jjtGetChild(0);
-        String objectType = (String) identifier.jjtGetValue();
         // second child is the method (callee)
         // this can be a method or array.length
         SimpleNode method = (SimpleNode) node.jjtGetChild(1);
-        String methodIdentifier = (String) method.jjtGetValue();
-        LinkedList<String> args = new LinkedList<>();
-        if (method instanceof ASTCallMethod)
-            args = fetchMethodArgs((ASTCallMethod) method, belongingMethodDescriptor);
-
-        // 1 - this.method()
-        if (identifier instanceof AST_this) {
-            // extended class method call
-            if (!this.symbolTable.getExtendedClassName().equals("")) {
-                try {
-                    // fetch invoking method descriptor
-                    String importIdentifier = this.symbolTable.getExtendedClassName() + "." + methodIdentifier;
-                    ImportDescriptor invokingMethodDescriptor = this.symbolTable.lookupImport(importIdentifier, args);
-                    // Load the this pointer into the stack
-                    bufferInstruction("aload_0");
-                    this.incrementStack();
-                    // load any arguments into the stack
-                    node.childrenAccept(this, data);
-                    // invoke method
-                    bufferInstruction("invokevirtual " + symbolTable.getClassName() + "/" + methodIdentifier + "(" + convertParams(args) + ")" + convertType(invokingMethodDescriptor.getType()));
-                    // decrement stack (this + args)
-                    this.decrementStack(1 + args.size());
-                    // increment return value
-                    if (!invokingMethodDescriptor.getType().equals("void")) {
-                        this.incrementStack();
-                    }
-                } catch (SemanticErrorException ignored) { }
-            }
-            // this class method call
-            else {
-                try {
-                    // fetch invoking method descriptor
-                    MethodDescriptor invokingMethodDescriptor = symbolTable.lookupMethod(methodIdentifier, args);
-                    // Load the this pointer into the stack
-                    bufferInstruction("aload_0");
-                    this.incrementStack();
-                    // load any arguments into the stack
-                    node.childrenAccept(this, data);
-                    // invoke method
-                    bufferInstruction("invokevirtual " + symbolTable.getClassName() + "/" + methodIdentifier + "(" + convertParams(args) + ")" + convertType(invokingMethodDescriptor.getType()));
-                    // decrement stack (this + args)
-                    this.decrementStack(1 + args.size());
-                    // increment return value
-                    if (!invokingMethodDescriptor.getType().equals("void")) {
-                        this.incrementStack();
-                    }
-                } catch (SemanticErrorException e) {
-                    //Error
-                    e.printStackTrace();
-                }
-            }
-        }
-        // 2 - new Object().method();
-        else if (identifier instanceof AST_new) {
-            // We have a mandatory method call
-            // if its equal to the class name then we have a class method call
-            if (objectType.equals(this.symbolTable.getClassName())) {
-                try {
-                    // fetch invoking method descriptor
-                    MethodDescriptor invokingMethodDescriptor = symbolTable.lookupMethod(methodIdentifier, args);
-                    // load new and any arguments into the stack
-                    node.childrenAccept(this,data);
-                    // invoke method
-                    bufferInstruction("invokevirtual " + objectType + "/" + methodIdentifier + "(" + convertParams(args) + ")" + convertType(invokingMethodDescriptor.getType()));
-                    // decrement stack (this + args)
-                    this.decrementStack(1 + args.size());
-                    // increment return value
-                    if (!invokingMethodDescriptor.getType().equals("void")) {
-                        this.incrementStack();
-                    }
-                } catch (SemanticErrorException e) {
-                    e.printStackTrace();
-                }
-            }
-            // if its equal to int[] then we have something like: new int[N].length
-            else  if (objectType.equals("int[]")) {
-                // load new and any arguments into the stack
-                node.childrenAccept(this,data);
-            }
-            // else we have an import
-            else {
-                try {
-                    // fetch invoking method descriptor
-                    String importIdentifier = objectType + "." + methodIdentifier;
-                    ImportDescriptor invokingMethodDescriptor = symbolTable.lookupImport(importIdentifier, args);
-                    // load new and any arguments into the stack
-                    node.childrenAccept(this,data);
-                    // invoke method
-                    bufferInstruction("invokevirtual " + objectType + "/" + methodIdentifier + "(" + convertParams(args) + ")" + convertType(invokingMethodDescriptor.getType()));
-                    // decrement stack (this + args)
-                    this.decrementStack(1 + args.size());
-                    // increment return value
-                    if (!invokingMethodDescriptor.getType().equals("void")) {
-                        this.incrementStack();
-                    }
-                } catch (SemanticErrorException e) {
-                    e.printStackTrace();
-                }
-            }
+        // invoked method or import, resolved by the semantic analysis
+        Descriptor descriptor = node.resolvedDescriptor;
+
+        // 1 - array.length
+        if (descriptor == null) {
+            // push array to stack and visit ASTGetLength for its instruction
+            node.childrenAccept(this, data);
+            return null;
         }
-        // 3 - array.length
-        else if (method instanceof ASTGetLength) {
-            // push array to stack
-            node.jjtGetChild(0).jjtAccept(this, data);
-            // visit ASTGetLength for its instruction
-            node.jjtGetChild(1).jjtAccept(this, data);
+
+        String signature = method.jjtGetValue() + "(" + fetchArgumentDescriptors(method) + ")" + descriptor.getJmmType().getDescriptor();
+        // 2 - static import: Object.method()
+        if (descriptor instanceof ImportDescriptor && ((ImportDescriptor) descriptor).isStatic()) {
+            // load the arguments, the identifier is a class
+            method.jjtAccept(this, data);
+            bufferInstruction("invokestatic " + identifier.jjtGetValue() + "/" + signature);
+            // decrement stack (args)
+            this.decrementStack(method.jjtGetNumChildren());
         }
-        // 4 - object.method()
+        // 3 - this.method(), new Object().method() and object.method(),
+        // of this class, of the extended class or of an imported class
         else {
-            // 4.1 - identifier is static import: static Object.method()
-            try {
-                String importIdentifier = objectType + "." + methodIdentifier;
-                ImportDescriptor descriptor = symbolTable.lookupImport(importIdentifier, args);
-                //Accept children except the identifier
-                for (int i = 1; i < node.jjtGetNumChildren(); i++) {
-                    node.jjtGetChild(i).jjtAccept(this,data);
-                }
-                //Assume the parameters are in the stack
-                bufferInstruction("invokestatic " + identifier.jjtGetValue() + "/" + method.jjtGetValue() + "(" + convertParams(args) + ")" + convertType(descriptor.getType()));
-                // decrement stack (args)
-                this.decrementStack(args.size());
-                // increment return value
-                if (!descriptor.getType().equals("void")) {
-                    this.incrementStack();
-                }
-                return null;
-            }
-            catch (SemanticErrorException ignored) {
-            }
-            // 4.2 - identifier is a local variable
-            // get class name
-            SemanticAnalyser analyser = new SemanticAnalyser(this.symbolTable, 0);
-            objectType = (String) node.jjtGetChild(0).jjtAccept(analyser, data);
-            // 4.2.1 - variable is a local class instance
-            if (objectType.equals(symbolTable.getClassName())) {
-                // 4.2.1.2 - extended method
-                if (!this.symbolTable.getExtendedClassName().equals(""))
-                    try {
-                        // lookup method
-                        String importIdentifier = this.symbolTable.getExtendedClassName() + "." + methodIdentifier;
-                        ImportDescriptor descriptor = symbolTable.lookupImport(importIdentifier, args);
-                        //load the arguments and identifier
-                        node.childrenAccept(this, data);
-                        // write instructions
-                        bufferInstruction("invokevirtual " + objectType + "/" + method.jjtGetValue() + "(" + convertParams(args) + ")" + convertType(descriptor.getType()));
-                        // decrement stack (objectref + args)
-                        this.decrementStack(1 + args.size());
-                        // increment return value
-                        if (!descriptor.getType().equals("void")) {
-                            this.incrementStack();
-                        }
-                        return null;
-                    } catch (SemanticErrorException ignored) { }
-                // 4.2.1.1 - local method
-                try {
-                    // lookup method
-                    MethodDescriptor descriptor = symbolTable.lookupMethod(methodIdentifier, args);
-                    //load the arguments and identifier
-                    node.childrenAccept(this, data);
-                    // write instructions
-                    bufferInstruction("invokevirtual " + objectType + "/" + method.jjtGetValue() + "(" + convertParams(args) + ")" + convertType(descriptor.getType()));
-                    // decrement stack (objectref + args)
-                    this.decrementStack(1 + args.size());
-                    // increment return value
-                    if (!descriptor.getType().equals("void")) {
-                        this.incrementStack();
-                    }
-                } catch (SemanticErrorException ignored) {
-                }
-            }
-            // 4.2.2 - variable is an imported class instance
-            else {
-                try {
-                    // lookup imported class method
-                    String importIdentifier = objectType + "." + methodIdentifier;
-                    ImportDescriptor descriptor = symbolTable.lookupImport(importIdentifier, args);
-                    //load the arguments and identifier
-                    node.childrenAccept(this, data);
-                    // write instructions
-                    bufferInstruction("invokevirtual " + objectType + "/" + method.jjtGetValue() + "(" + convertParams(args) + ")" + convertType(descriptor.getType()));
-                    // decrement stack (this + args)
-                    this.decrementStack(1 + args.size());
-                    // increment return value
-                    if (!descriptor.getType().equals("void")) {
-                        this.incrementStack();
-                    }
-                } catch (SemanticErrorException e) {
-                    e.printStackTrace();
-                }
+            // load the this pointer into the stack
+            if (identifier instanceof AST_this) {
+                bufferInstruction("aload_0");
+                this.incrementStack();
             }
+            // load the object and the arguments into the stack
+            node.childrenAccept(this, data);
+            // the class of the object, recorded by the semantic analysis
+            bufferInstruction("invokevirtual " + identifier.resolvedType.getName() + "/" + signature);
+            // decrement stack (objectref + args)
+            this.decrementStack(1 + method.jjtGetNumChildren());
         }
+        // increment return value
+        if (descriptor.getJmmType() != JmmType.VOID)
+            this.incrementStack();
 
         return null;
     }
@@ -697,11 +1338,11 @@ public class CodeGenerator implements ParserVisitor{
         if (node.jjtGetParent() instanceof ASTRegularMethod || node.jjtGetParent() instanceof ASTMainMethod){
             // Allocate the variable in the variable map
             SimpleNode child = (SimpleNode) node.jjtGetChild(0);
-            this.addVariable((String) node.jjtGetValue(),(String) child.jjtGetValue());
+            this.addVariable(node.symbol, (String) child.jjtGetValue());
         }
         else {
             SimpleNode child = (SimpleNode) node.jjtGetChild(0);
-            writeInstruction(".field private '" + node.jjtGetValue() +  "' " + convertType((String) child.jjtGetValue()));
+            writeInstruction(".field private '" + node.jjtGetValue() +  "' " + ((ASTType) child).getJmmType().getDescriptor());
         }
 
         return null;
@@ -715,9 +1356,9 @@ public class CodeGenerator implements ParserVisitor{
         String identifier = (String) assignee.jjtGetValue();
 
         //Get variable identifier info
-        ArrayList<String> variableInfo = this.variableMap.get(identifier);
+        LocalVariable variable = this.getLocal(assignee);
 
-        if (variableInfo != null) {
+        if (variable != null) {
             //Local variable assignment
             if (assignee.jjtGetNumChildren() == 1) { //array
                 node.childrenAccept(this,data);
@@ -728,19 +1369,19 @@ public class CodeGenerator implements ParserVisitor{
             else {
                 SimpleNode rightChild = (SimpleNode) node.jjtGetChild(1);
 
-                try {
-                    VariableDescriptor descriptor = ((MethodDescriptor) data).lookupVariable(identifier);
-
+                VariableDescriptor descriptor = ((MethodDescriptor) data).findVariable(assignee.symbol);
+                if (descriptor != null) {
                     if (node.jjtGetNumChildren() == 2 && node.jjtGetChild(1) instanceof ASTinteger && descriptor.isConstant()) {
-                        //Assign the integer to the variable map
-                        ArrayList<String> paramInfo = new ArrayList<>();
-                        paramInfo.add(variableInfo.get(0));
-                        paramInfo.add(variableInfo.get(1));
-                        paramInfo.add((String) ((ASTinteger) node.jjtGetChild(1)).jjtGetValue());
-                        this.variableMap.put(identifier,paramInfo);
+                        //Assign the integer to the local variable
+                        variable.setConstantValue(Integer.parseInt((String) ((ASTinteger) node.jjtGetChild(1)).jjtGetValue()));
 
                         return null;
                     }
+                    // x = ... where x is not read again: only the side effects are kept
+                    else if (this.deadStores.contains(node)) {
+                        this.writeDeadStore(rightChild, data);
+                        return null;
+                    }
                     // x = x + 1: iinc x 1; instead of laod x > iconst 1 > istore
                     else if (rightChild instanceof ASTsum ) {
                         // get two operands
@@ -751,14 +1392,10 @@ public class CodeGenerator implements ParserVisitor{
                         boolean firstCondition = rightOperand.jjtGetValue().equals("1") && leftOperand.jjtGetValue().equals(identifier);
                         boolean secondCondition = rightOperand.jjtGetValue().equals(identifier) && leftOperand.jjtGetValue().equals("1");
                         if (firstCondition || secondCondition) {
-                            int index = Integer.parseInt(variableInfo.get(0)); //The index in the variable table
-                            bufferInstruction("iinc " + index + " 1");
+                            bufferInstruction("iinc " + variable.getSlot() + " 1");
                             return null;
                         }
                     }
-
-                } catch (SemanticErrorException e) {
-                    //this should never happen
                 }
 
                 //visit children but not the identifier
@@ -766,15 +1403,8 @@ public class CodeGenerator implements ParserVisitor{
                     node.jjtGetChild(i).jjtAccept(this, data);
                 }
 
-                int index = Integer.parseInt(variableInfo.get(0)); //The index in the variable table
-                String type = convertInstructionType(variableInfo.get(1)); //the type of the variable
-
                 //assign the variable assuming the value to be assigned is on top of the stack
-                if (index > 3) {
-                    bufferInstruction(type + "store " + index);
-                } else {
-                    bufferInstruction(type + "store_" + index);
-                }
+                bufferLocalInstruction(variable.getType().getInstructionPrefix() + "store", variable.getSlot());
                 this.decrementStack(1);
             }
         }
@@ -802,7 +1432,7 @@ public class CodeGenerator implements ParserVisitor{
                     }
 
                     //store in the field
-                    bufferInstruction("putfield "+ symbolTable.getClassName() + "/" + identifier + " " + convertType(fieldDescriptor.getType()));
+                    bufferInstruction("putfield "+ symbolTable.getClassName() + "/" + identifier + " " + fieldDescriptor.getJmmType().getDescriptor());
                     // objectref + value
                     this.decrementStack(2);
                 }
@@ -821,25 +1451,14 @@ public class CodeGenerator implements ParserVisitor{
     public Object visit(ASTIdentifier node, Object data) {
         //Check if the identifier exists
         String id = (String) node.jjtGetValue();
-        if (this.variableMap.containsKey(id)) {
-            //get the identifier information
-            ArrayList<String> variableInfo = this.variableMap.get(id);
-            int index = Integer.parseInt(variableInfo.get(0)); //The index in the variable table
-            String type = convertInstructionType(variableInfo.get(1)); //the type of the variable
-
-            if (variableInfo.size() == 3) { //The variable is a constant
-                String value = variableInfo.get(2);
-
-                loadInteger(Integer.parseInt(value));
+        LocalVariable variable = this.getLocal(node);
+        if (variable != null) {
+            if (variable.isConstant()) { //The variable is a constant
+                loadInteger(variable.getConstantValue());
             }
             else {
                 // load variable
-                if (index > 3) {
-                    bufferInstruction(type + "load " + index);
-                }
-                else {
-                    bufferInstruction(type + "load_" + index);
-                }
+                bufferLocalInstruction(variable.getType().getInstructionPrefix() + "load", variable.getSlot());
             }
 
             this.incrementStack();
@@ -852,7 +1471,7 @@ public class CodeGenerator implements ParserVisitor{
 
                 bufferInstruction("aload_0"); //load the this pointer
                 this.incrementStack();
-                bufferInstruction("getfield " + symbolTable.getClassName() + "/" + id + " " + convertType(fieldDescriptor.getType()));
+                bufferInstruction("getfield " + symbolTable.getClassName() + "/" + id + " " + fieldDescriptor.getJmmType().getDescriptor());
                 this.decrementStack(0);
 
             }
@@ -900,7 +1519,7 @@ public class CodeGenerator implements ParserVisitor{
         // object instance or an array
         String type = (String) node.jjtGetValue();
         // new int[n]
-        if (type.equals("int[]")) {
+        if (node.resolvedType == JmmType.INT_ARRAY) {
             // visit child for size of array
             node.childrenAccept(this, data);
             // create array instance
@@ -911,7 +1530,7 @@ public class CodeGenerator implements ParserVisitor{
         }
         // new Object()
         else {
-            bufferInstruction("new " + type);
+            bufferInstruction("new", type);
             this.incrementStack();
             bufferInstruction("dup");
             this.incrementStack();
@@ -924,45 +1543,124 @@ public class CodeGenerator implements ParserVisitor{
 
     @Override
     public Object visit(ASTsum node, Object data) {
-        //Accept children
-        node.childrenAccept(this,data);
-
-        bufferInstruction("iadd");
-        this.decrementStack(1);
+        this.writeOperatorChain(node, data);
         return null;
     }
 
     @Override
     public Object visit(ASTsub node, Object data) {
-        //Accept children
-        node.childrenAccept(this,data);
-
-        bufferInstruction("isub");
-        this.decrementStack(1);
-
+        this.writeOperatorChain(node, data);
         return null;
     }
 
     @Override
     public Object visit(ASTmult node, Object data) {
-        //Accept children
-        node.childrenAccept(this,data);
-
-        bufferInstruction("imul");
-        this.decrementStack(1);
-
+        this.writeOperatorChain(node, data);
         return null;
     }
 
     @Override
     public Object visit(ASTdiv node, Object data) {
-        //Accept children
-        node.childrenAccept(this,data);
+        this.writeOperatorChain(node, data);
+        return null;
+    }
 
-        bufferInstruction("idiv");
-        this.decrementStack(1);
+    /**
+     * Writes a chain of binary operators, i.e 'a + b - c * d', whose
+     * left operands are binary operators too. The parser builds long
+     * chains like 'a + b + c + ...' left-deep, so the chain is walked
+     * down its left operands with a loop and written back up from the
+     * innermost operator: the stack depth does not grow with its length.
+     * The code (and label numbering) is the same a recursive visit writes.
+     * @param node outermost operator of the chain
+     * @param data method descriptor
+     */
+    private void writeOperatorChain(SimpleNode node, Object data) {
+        ArrayList<SimpleNode> chain = new ArrayList<>();
+        SimpleNode current = node;
+        while (current.isBinaryOperator()) {
+            chain.add(current);
+            current = (SimpleNode) current.jjtGetChild(0);
+        }
+        // labels are numbered from the outermost operator in
+        int[] labels = new int[chain.size()];
+        for (int i = 0; i < chain.size(); i++) {
+            if (chain.get(i) instanceof ASTand || chain.get(i) instanceof ASTlt)
+                labels[i] = logic_operation_counter++;
+        }
+        // innermost left operand
+        current.jjtAccept(this, data);
+        for (int i = chain.size() - 1; i >= 0; i--)
+            this.writeOperator(chain.get(i), labels[i], data);
+    }
 
-        return null;
+    /**
+     * Writes a binary operator whose left operand is already on the stack
+     * @param node operator node
+     * @param label jump label number of '&&' and '<'
+     * @param data method descriptor
+     */
+    private void writeOperator(SimpleNode node, int label, Object data) {
+        SimpleNode rightChild = (SimpleNode) node.jjtGetChild(1);
+        if (node instanceof ASTand) {
+            String trueLabel = "true_and_" + label;
+            String falseLabel = "false_and_" + label;
+
+            bufferInstruction("ifeq", falseLabel);
+            this.decrementStack(1);
+            // visit second child children
+            rightChild.jjtAccept(this, data);
+            bufferInstruction("ifeq", falseLabel);
+            this.decrementStack(1);
+            bufferInstruction("iconst_1");
+            bufferInstruction("goto", trueLabel);
+            // compare
+            bufferInstruction(falseLabel + ":");
+            bufferInstruction("iconst_0");
+            bufferInstruction(trueLabel + ":");
+
+            // place result on stack
+            this.incrementStack();
+        }
+        else if (node instanceof ASTlt) {
+            String trueLabel = "true_lt_" + label;
+            String falseLabel = "false_lt_" + label;
+
+            // (x < 0): iload x > iflt
+            if (rightChild instanceof ASTinteger && rightChild.jjtGetValue().equals("0")) {
+                // compare
+                bufferInstruction("iflt", trueLabel);
+                this.decrementStack(1);
+            }
+            // (x < 1): iload x > iconst_0 > if_icmplt
+            else {
+                rightChild.jjtAccept(this, data);
+                // compare
+                bufferInstruction("if_icmplt", trueLabel);
+                this.decrementStack(2);
+            }
+
+            bufferInstruction("iconst_0");
+            bufferInstruction("goto", falseLabel);
+            bufferInstruction(trueLabel + ":");
+            bufferInstruction("iconst_1");
+            bufferInstruction(falseLabel + ":");
+
+            // place result on stack
+            this.incrementStack();
+        }
+        else {
+            rightChild.jjtAccept(this, data);
+            if (node instanceof ASTsum)
+                bufferInstruction("iadd");
+            else if (node instanceof ASTsub)
+                bufferInstruction("isub");
+            else if (node instanceof ASTmult)
+                bufferInstruction("imul");
+            else
+                bufferInstruction("idiv");
+            this.decrementStack(1);
+        }
     }
 
     @Override
@@ -970,9 +1668,10 @@ public class CodeGenerator implements ParserVisitor{
         //visit the child
         node.childrenAccept(this,data);
 
-        String returnType = ((MethodDescriptor) data).getType();
+        JmmType returnType = ((MethodDescriptor) data).getJmmType();
 
-        bufferInstruction(convertInstructionType(returnType) + "return");
+        this.bufferMethodExit();
+        bufferInstruction(returnType.getInstructionPrefix() + "return");
         // return cleans the stack
         this.currentStack = 0;
         return null;
@@ -1022,19 +1721,38 @@ public class CodeGenerator implements ParserVisitor{
     @Override
     public Object visit(ASTIfElseBlock node, Object data) {
 
+        String thenLabel = "then_" + if_counter;
         String elseLabel = "else_" + if_counter;
         String endIfLabel = "endif_" + if_counter;
         if_counter++;
 
         node.jjtGetChild(0).jjtAccept(this, data);
 
-        bufferInstruction("ifeq " + elseLabel);
+        // the profile says the else branch is the hot one: make it the fall-through
+        if (!this.instrumented && this.branchProfile != null && this.getBranchCount(elseLabel) > this.getBranchCount(thenLabel)) {
+            bufferInstruction("ifne", thenLabel);
+            this.decrementStack(1);
+
+            node.jjtGetChild(2).jjtAccept(this, data);
+
+            bufferInstruction("goto", endIfLabel);
+            bufferInstruction(thenLabel + ":");
+
+            node.jjtGetChild(1).jjtAccept(this, data);
+
+            bufferInstruction(endIfLabel + ":");
+            return null;
+        }
+
+        bufferInstruction("ifeq", elseLabel);
         this.decrementStack(1);
 
+        this.bufferBranchCounter(thenLabel);
         node.jjtGetChild(1).jjtAccept(this, data);
 
-        bufferInstruction("goto " + endIfLabel);
+        bufferInstruction("goto", endIfLabel);
         bufferInstruction(elseLabel + ":");
+        this.bufferBranchCounter(elseLabel);
 
         node.jjtGetChild(2).jjtAccept(this, data);
 
@@ -1079,12 +1797,20 @@ public class CodeGenerator implements ParserVisitor{
         String endWhileLabel = "end_while_" + while_counter;
         while_counter++;
 
+        // while (i < a.length): emit a counted loop with the length hoisted
+        ASTObjectCall lengthCall = this.getCountedLoopLength(node);
+        if (lengthCall != null) {
+            this.writeCountedLoop(node, lengthCall, whileLabel, endWhileLabel, data);
+            return null;
+        }
+
         node.jjtGetChild(0).jjtAccept(this, data);      // accept condition
-        bufferInstruction("ifeq " + endWhileLabel);
+        bufferInstruction("ifeq", endWhileLabel);
         this.decrementStack(1);
         this.clearStack();
 
         bufferInstruction(whileLabel + ":");
+        this.bufferBranchCounter(whileLabel);
         for (int i = 1; i < node.jjtGetNumChildren(); i++) {    // accept statements
             // visit child statements
             node.jjtGetChild(i).jjtAccept(this, data);
@@ -1092,7 +1818,7 @@ public class CodeGenerator implements ParserVisitor{
             this.clearStack();
         }
         node.jjtGetChild(0).jjtAccept(this, data);      // test after statements
-        bufferInstruction("ifne " + whileLabel);
+        bufferInstruction("ifne", whileLabel);
         this.decrementStack(1);
         this.clearStack();
         bufferInstruction(endWhileLabel + ":");
@@ -1103,65 +1829,13 @@ public class CodeGenerator implements ParserVisitor{
 
     @Override
     public Object visit(ASTand node, Object data) {
-
-        String trueLabel = "true_and_" + logic_operation_counter;
-        String falseLabel = "false_and_" + logic_operation_counter;
-        logic_operation_counter++;
-
-        // visit first child children
-        node.jjtGetChild(0).jjtAccept(this, data);
-        bufferInstruction("ifeq " + falseLabel);
-        this.decrementStack(1);
-        // visit second child children
-        node.jjtGetChild(1).jjtAccept(this, data);
-        bufferInstruction("ifeq " + falseLabel);
-        this.decrementStack(1);
-        bufferInstruction("iconst_1");
-        bufferInstruction("goto " + trueLabel);
-        // compare
-        bufferInstruction(falseLabel + ":");
-        bufferInstruction("iconst_0");
-        bufferInstruction(trueLabel + ":");
-
-        // place result on stack
-        this.incrementStack();
+        this.writeOperatorChain(node, data);
         return null;
     }
 
     @Override
     public Object visit(ASTlt node, Object data) {
-
-        String trueLabel = "true_lt_" + logic_operation_counter;
-        String falseLabel = "false_lt_" + logic_operation_counter;
-        logic_operation_counter++;
-
-        // (x < 0): iload x > iflt
-        // get right hand child
-        SimpleNode rightChild = (SimpleNode) node.jjtGetChild(1);
-        if (rightChild instanceof ASTinteger && rightChild.jjtGetValue().equals("0")) {
-            // visit first child
-            node.jjtGetChild(0).jjtAccept(this, data);
-            // compare
-            bufferInstruction("iflt " + trueLabel);
-            this.decrementStack(1);
-        }
-        // (x < 1): iload x > iconst_0 > if_icmplt
-        else {
-            // visit 2 children
-            node.childrenAccept(this, data);
-            // compare
-            bufferInstruction("if_icmplt " + trueLabel);
-            this.decrementStack(2);
-        }
-
-        bufferInstruction("iconst_0");
-        bufferInstruction("goto " + falseLabel);
-        bufferInstruction(trueLabel + ":");
-        bufferInstruction("iconst_1");
-        bufferInstruction(falseLabel + ":");
-
-        // place result on stack
-        this.incrementStack();
+        this.writeOperatorChain(node, data);
         return null;
     }
 
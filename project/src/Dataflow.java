@@ -0,0 +1,158 @@
+import java.util.BitSet;
+
+/**
+ * <h1>Dataflow Solver</h1>
+ * <p>Worklist solver of dataflow problems over a FlowGraph,
+ * with one bit per local variable. A problem is given by its
+ * direction, its meet operator (union for "on some path"
+ * problems, intersection for "on every path" ones), the value
+ * at the boundary nodes and a transfer function which updates
+ * the value of a node in place.</p>
+ * <p>Nodes are first visited in flow order (source order for
+ * forward problems, reverse source order for backward ones),
+ * which is a reverse postorder of the structured graphs of
+ * J--, and afterwards only when one of the values flowing
+ * into them changes. Nodes not computed yet are left out of
+ * the meet, which makes them the top of the lattice.</p>
+ * @see FlowGraph
+ */
+public class Dataflow {
+
+    /**
+     * Direction of a dataflow problem
+     */
+    public enum Direction {
+        /**
+         * Values flow from predecessors to successors (i.e definite assignment)
+         */
+        FORWARD,
+        /**
+         * Values flow from successors to predecessors (i.e liveness)
+         */
+        BACKWARD
+    }
+
+    /**
+     * Meet operator of a dataflow problem
+     */
+    public enum Meet {
+        /**
+         * Bit set on some path
+         */
+        UNION,
+        /**
+         * Bit set on every path
+         */
+        INTERSECTION
+    }
+
+    /**
+     * Transfer function of a dataflow problem
+     */
+    public interface Transfer {
+        /**
+         * Applies the effect of a node to a value
+         * @param node flow graph node
+         * @param value value flowing into the node, updated in place
+         */
+        void apply(int node, BitSet value);
+    }
+
+    /**
+     * Utility class
+     */
+    private Dataflow() {
+    }
+
+    /**
+     * Solves a dataflow problem
+     * @param graph flow graph
+     * @param direction problem direction
+     * @param meet meet operator
+     * @param boundary value flowing into the entry node (forward) or out of the exit node (backward)
+     * @param transfer transfer function
+     * @return value flowing into each node: before the node for forward
+     *         problems, after the node for backward problems
+     */
+    public static BitSet[] solve(FlowGraph graph, Direction direction, Meet meet, BitSet boundary, Transfer transfer) {
+        int size = graph.size();
+        boolean forward = direction == Direction.FORWARD;
+        BitSet[] in = new BitSet[size];
+        BitSet[] out = new BitSet[size];
+
+        // circular worklist, each node is queued at most once
+        int[] queue = new int[size];
+        boolean[] queued = new boolean[size];
+        int head = 0;
+        int count = size;
+        for (int i = 0; i < size; i++) {
+            queue[i] = forward ? i : size - 1 - i;
+            queued[i] = true;
+        }
+
+        while (count > 0) {
+            int node = queue[head];
+            head = (head + 1) % size;
+            count--;
+            queued[node] = false;
+
+            BitSet value = meet(graph, forward, meet, node, out, boundary);
+            in[node] = (BitSet) value.clone();
+            transfer.apply(node, value);
+            if (value.equals(out[node]))
+                continue;
+            out[node] = value;
+
+            // the nodes this value flows into must be computed again
+            int next = forward ? graph.getSuccessorCount(node) : graph.getPredecessorCount(node);
+            for (int i = 0; i < next; i++) {
+                int target = forward ? graph.getSuccessor(node, i) : graph.getPredecessor(node, i);
+                if (!queued[target]) {
+                    queue[(head + count) % size] = target;
+                    queued[target] = true;
+                    count++;
+                }
+            }
+        }
+        return in;
+    }
+
+    /**
+     * Computes the value flowing into a node from the values
+     * out of its predecessors (forward) or successors (backward)
+     * @param graph flow graph
+     * @param forward true for forward problems
+     * @param meet meet operator
+     * @param node flow graph node
+     * @param out value out of every node, null if not computed yet
+     * @param boundary value flowing into the entry or exit node
+     * @return value flowing into the node, a new BitSet
+     */
+    private static BitSet meet(FlowGraph graph, boolean forward, Meet meet, int node, BitSet[] out, BitSet boundary) {
+        int sources = forward ? graph.getPredecessorCount(node) : graph.getSuccessorCount(node);
+        // entry node (forward) or exit node (backward)
+        if (sources == 0)
+            return (BitSet) boundary.clone();
+
+        BitSet value = null;
+        for (int i = 0; i < sources; i++) {
+            BitSet source = out[forward ? graph.getPredecessor(node, i) : graph.getSuccessor(node, i)];
+            // not computed yet: top of the lattice
+            if (source == null)
+                continue;
+            if (value == null)
+                value = (BitSet) source.clone();
+            else if (meet == Meet.UNION)
+                value.or(source);
+            else
+                value.and(source);
+        }
+        if (value != null)
+            return value;
+        // no source computed yet
+        value = new BitSet();
+        if (meet == Meet.INTERSECTION)
+            value.set(0, graph.getLocalCount());
+        return value;
+    }
+}
@@ -0,0 +1,584 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * <h1>Flat AST</h1>
+ * <p>Compact storage of an Abstract Syntax Tree. Instead of
+ * one object per node (with its children array, parent and
+ * parser references and boxed values) every node is an index
+ * into parallel primitive arrays: kind, first child, next
+ * sibling, line, column, value id, symbol id and flags.</p>
+ * <p>Node values (identifiers, integer literals, booleans...)
+ * are interned in a value pool and referenced by id. The few
+ * nodes with a second name (a method import, an extended
+ * class) keep it in an auxiliary record.</p>
+ * <p>With -flat the parser hands every method to methodParsed as
+ * soon as it is parsed, so the node graph of the whole file is
+ * never built. The ParserVisitor API is preserved by
+ * materializing: the symbol table is built from the signatures
+ * of the methods, and each method is turned back into SimpleNode
+ * objects only while it is analysed and generated.</p>
+ * <p>Both conversions use an explicit stack, so very deep
+ * expressions do not overflow the call stack.</p>
+ * @see SimpleNode
+ * @see StreamingCompiler#compile(FlatAST)
+ */
+public class FlatAST implements Parser.MethodListener {
+
+    /**
+     * No node (first child, next sibling) or no value
+     */
+    public static final int NONE = -1;
+
+    /**
+     * Flag: array type (Type, ReturnType) or array assignment
+     */
+    private static final byte ARRAY = 1;
+    /**
+     * Flag: static import
+     */
+    private static final byte STATIC = 2;
+    /**
+     * Flag: method import
+     */
+    private static final byte METHOD = 4;
+
+    /**
+     * Node kind, as in ParserTreeConstants
+     */
+    private byte[] kinds;
+    /**
+     * Node flags
+     */
+    private byte[] flags;
+    /**
+     * Index of the first child of each node
+     */
+    private int[] firstChildren;
+    /**
+     * Index of the next sibling of each node
+     */
+    private int[] nextSiblings;
+    /**
+     * Source line of each node
+     */
+    private int[] lines;
+    /**
+     * Source column of each node
+     */
+    private int[] columns;
+    /**
+     * Value id of each node (import or class name for those nodes)
+     */
+    private int[] values;
+    /**
+     * Symbol id of each node
+     */
+    private int[] symbols;
+    /**
+     * Auxiliary record of each node (method import, extended class)
+     */
+    private int[] auxiliaries;
+    /**
+     * Number of nodes
+     */
+    private int size = 0;
+
+    /**
+     * Index of each method added with methodParsed, in source order
+     */
+    private int[] methods = new int[16];
+    /**
+     * Number of methods
+     */
+    private int methodCount = 0;
+
+    /**
+     * Auxiliary records: value id, line and column
+     */
+    private int[] auxiliaryData = new int[3 * 4];
+    /**
+     * Number of auxiliary records
+     */
+    private int auxiliaryCount = 0;
+
+    /**
+     * Value pool, indexed by value id
+     */
+    private final ArrayList<Object> valuePool = new ArrayList<>();
+    /**
+     * Value -> value id
+     */
+    private final HashMap<Object, Integer> valueIds = new HashMap<>();
+
+    /**
+     * Constructor
+     * @param capacity expected number of nodes
+     */
+    public FlatAST(int capacity) {
+        capacity = Math.max(capacity, 16);
+        this.kinds = new byte[capacity];
+        this.flags = new byte[capacity];
+        this.firstChildren = new int[capacity];
+        this.nextSiblings = new int[capacity];
+        this.lines = new int[capacity];
+        this.columns = new int[capacity];
+        this.values = new int[capacity];
+        this.symbols = new int[capacity];
+        this.auxiliaries = new int[capacity];
+    }
+
+    /**
+     * Builds the flat representation of a tree. The root is node 0.
+     * @param root AST root node
+     * @return flat AST
+     */
+    public static FlatAST flatten(SimpleNode root) {
+        FlatAST ast = new FlatAST(1024);
+        ast.addTree(root);
+        ast.trim();
+        return ast;
+    }
+
+    /**
+     * Appends a method parsed apart from the tree (a method handed
+     * to a Parser.MethodListener), which can then be released
+     * @param method RegularMethod or MainMethod node
+     */
+    @Override
+    public void methodParsed(SimpleNode method) {
+        if (this.methodCount == this.methods.length)
+            this.methods = Arrays.copyOf(this.methods, this.methodCount * 2);
+        this.methods[this.methodCount++] = this.addTree(method);
+    }
+
+    /**
+     * Appends a tree
+     * @param root tree root node
+     * @return index of the tree root
+     */
+    private int addTree(SimpleNode root) {
+        ArrayDeque<SimpleNode> nodes = new ArrayDeque<>();
+        ArrayDeque<Integer> indices = new ArrayDeque<>();
+        int rootIndex = this.add(root);
+        nodes.push(root);
+        indices.push(rootIndex);
+        while (!nodes.isEmpty()) {
+            SimpleNode node = nodes.pop();
+            int index = indices.pop();
+            int previous = NONE;
+            for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+                SimpleNode child = (SimpleNode) node.jjtGetChild(i);
+                int childIndex = this.add(child);
+                if (previous == NONE)
+                    this.firstChildren[index] = childIndex;
+                else
+                    this.nextSiblings[previous] = childIndex;
+                previous = childIndex;
+                nodes.push(child);
+                indices.push(childIndex);
+            }
+        }
+        return rootIndex;
+    }
+
+    /**
+     * Appends a node, without children
+     * @param node node to store
+     * @return node index
+     */
+    private int add(SimpleNode node) {
+        if (this.size == this.kinds.length)
+            this.grow(this.size * 2);
+        int index = this.size++;
+        this.kinds[index] = (byte) node.getId();
+        this.firstChildren[index] = NONE;
+        this.nextSiblings[index] = NONE;
+        this.lines[index] = node.line;
+        this.columns[index] = node.column;
+        this.symbols[index] = node.symbol;
+        this.auxiliaries[index] = NONE;
+
+        byte nodeFlags = 0;
+        Object value = node.value;
+        if (node instanceof ASTImport) {
+            ASTImport importNode = (ASTImport) node;
+            value = importNode.importId;
+            if (importNode.isStatic)
+                nodeFlags |= STATIC;
+            if (importNode.isMethod) {
+                nodeFlags |= METHOD;
+                this.auxiliaries[index] = this.addAuxiliary(importNode.methodId, importNode.methodLine, importNode.methodColumn);
+            }
+        }
+        else if (node instanceof ASTClassDeclaration) {
+            ASTClassDeclaration classNode = (ASTClassDeclaration) node;
+            value = classNode.classId;
+            if (classNode.extId != null)
+                this.auxiliaries[index] = this.addAuxiliary(classNode.extId, classNode.extLine, classNode.extColumn);
+        }
+        else if ((node instanceof ASTType && ((ASTType) node).array)
+                || (node instanceof ASTReturnType && ((ASTReturnType) node).array)
+                || (node instanceof ASTAssignment && ((ASTAssignment) node).array)) {
+            nodeFlags |= ARRAY;
+        }
+        this.flags[index] = nodeFlags;
+        this.values[index] = this.valueId(value);
+        return index;
+    }
+
+    /**
+     * Appends an auxiliary record
+     * @param value record value
+     * @param line record line
+     * @param column record column
+     * @return record index
+     */
+    private int addAuxiliary(Object value, int line, int column) {
+        if (3 * (this.auxiliaryCount + 1) > this.auxiliaryData.length)
+            this.auxiliaryData = Arrays.copyOf(this.auxiliaryData, this.auxiliaryData.length * 2);
+        int record = this.auxiliaryCount++;
+        this.auxiliaryData[3 * record] = this.valueId(value);
+        this.auxiliaryData[3 * record + 1] = line;
+        this.auxiliaryData[3 * record + 2] = column;
+        return record;
+    }
+
+    /**
+     * Get the id of a value, adding it to the pool if not present
+     * @param value node value
+     * @return value id, NONE for null
+     */
+    private int valueId(Object value) {
+        if (value == null)
+            return NONE;
+        Integer id = this.valueIds.get(value);
+        if (id == null) {
+            id = this.valuePool.size();
+            this.valuePool.add(value);
+            this.valueIds.put(value, id);
+        }
+        return id;
+    }
+
+    /**
+     * Resizes the node arrays
+     * @param capacity new capacity
+     */
+    private void grow(int capacity) {
+        this.kinds = Arrays.copyOf(this.kinds, capacity);
+        this.flags = Arrays.copyOf(this.flags, capacity);
+        this.firstChildren = Arrays.copyOf(this.firstChildren, capacity);
+        this.nextSiblings = Arrays.copyOf(this.nextSiblings, capacity);
+        this.lines = Arrays.copyOf(this.lines, capacity);
+        this.columns = Arrays.copyOf(this.columns, capacity);
+        this.values = Arrays.copyOf(this.values, capacity);
+        this.symbols = Arrays.copyOf(this.symbols, capacity);
+        this.auxiliaries = Arrays.copyOf(this.auxiliaries, capacity);
+    }
+
+    /**
+     * Releases the unused capacity once the tree is complete
+     */
+    public void trim() {
+        if (this.size < this.kinds.length)
+            this.grow(this.size);
+        this.auxiliaryData = Arrays.copyOf(this.auxiliaryData, 3 * this.auxiliaryCount);
+        this.methods = Arrays.copyOf(this.methods, this.methodCount);
+    }
+
+    /**
+     * Rebuilds the whole tree as SimpleNode objects
+     * @return AST root node
+     */
+    public SimpleNode materialize() {
+        return this.materialize(0);
+    }
+
+    /**
+     * Rebuilds a subtree as SimpleNode objects, to be visited
+     * with a ParserVisitor
+     * @param index subtree root index
+     * @return subtree root node (without parent)
+     */
+    public SimpleNode materialize(int index) {
+        SimpleNode root = this.createNode(index);
+        ArrayDeque<SimpleNode> nodes = new ArrayDeque<>();
+        ArrayDeque<Integer> indices = new ArrayDeque<>();
+        nodes.push(root);
+        indices.push(index);
+        while (!nodes.isEmpty()) {
+            SimpleNode node = nodes.pop();
+            int nodeIndex = indices.pop();
+            int childCount = this.getNumChildren(nodeIndex);
+            int child = this.firstChildren[nodeIndex];
+            // add the last child first, so the children array is allocated once
+            SimpleNode[] children = new SimpleNode[childCount];
+            for (int i = 0; i < childCount; i++, child = this.nextSiblings[child]) {
+                children[i] = this.createNode(child);
+                nodes.push(children[i]);
+                indices.push(child);
+            }
+            for (int i = childCount - 1; i >= 0; i--) {
+                children[i].jjtSetParent(node);
+                node.jjtAddChild(children[i], i);
+            }
+        }
+        return root;
+    }
+
+    /**
+     * Rebuilds the signature of a method: the method node with its
+     * return type, parameters and variable declarations, but not
+     * its statements (the tree Parser#scanSignatures builds)
+     * @param index method index
+     * @return method node (without parent)
+     */
+    public SimpleNode materializeSignature(int index) {
+        SimpleNode method = this.createNode(index);
+        int count = 0;
+        for (int child = this.firstChildren[index]; child != NONE; child = this.nextSiblings[child]) {
+            int kind = this.kinds[child];
+            if (kind != ParserTreeConstants.JJTTYPE && kind != ParserTreeConstants.JJTMETHODPARAMS
+                    && kind != ParserTreeConstants.JJTMAINPARAMS && kind != ParserTreeConstants.JJTVARDECLARATION)
+                continue;
+            SimpleNode node = this.materialize(child);
+            node.jjtSetParent(method);
+            method.jjtAddChild(node, count++);
+        }
+        method.jjtClose();
+        return method;
+    }
+
+    /**
+     * Adds the signatures of the methods to the class declaration of
+     * the tree they were left out of, which becomes the tree
+     * Parser#scanSignatures builds
+     * @param root root node of a tree parsed with this listener
+     */
+    public void addSignatures(SimpleNode root) {
+        for (int i = 0; i < root.jjtGetNumChildren(); i++) {
+            SimpleNode child = (SimpleNode) root.jjtGetChild(i);
+            if (!(child instanceof ASTClassDeclaration))
+                continue;
+            for (int j = 0; j < this.methodCount; j++) {
+                SimpleNode method = this.materializeSignature(this.methods[j]);
+                method.jjtSetParent(child);
+                child.jjtAddChild(method, child.jjtGetNumChildren());
+            }
+            child.jjtClose();
+        }
+    }
+
+    /**
+     * Creates the node of an index, without children
+     * @param index node index
+     * @return new node
+     */
+    private SimpleNode createNode(int index) {
+        int kind = this.kinds[index];
+        SimpleNode node = newNode(kind);
+        node.line = this.lines[index];
+        node.column = this.columns[index];
+        node.symbol = this.symbols[index];
+        Object value = this.getValue(index);
+        boolean array = (this.flags[index] & ARRAY) != 0;
+        int auxiliary = this.auxiliaries[index];
+
+        if (node instanceof ASTImport) {
+            ASTImport importNode = (ASTImport) node;
+            importNode.importId = (String) value;
+            importNode.isStatic = (this.flags[index] & STATIC) != 0;
+            importNode.isMethod = (this.flags[index] & METHOD) != 0;
+            if (auxiliary != NONE) {
+                importNode.methodId = (String) this.valuePool.get(this.auxiliaryData[3 * auxiliary]);
+                importNode.methodLine = this.auxiliaryData[3 * auxiliary + 1];
+                importNode.methodColumn = this.auxiliaryData[3 * auxiliary + 2];
+            }
+        }
+        else if (node instanceof ASTClassDeclaration) {
+            ASTClassDeclaration classNode = (ASTClassDeclaration) node;
+            classNode.classId = (String) value;
+            if (auxiliary != NONE) {
+                classNode.extId = (String) this.valuePool.get(this.auxiliaryData[3 * auxiliary]);
+                classNode.extLine = this.auxiliaryData[3 * auxiliary + 1];
+                classNode.extColumn = this.auxiliaryData[3 * auxiliary + 2];
+            }
+        }
+        else {
+            node.jjtSetValue(value);
+            if (node instanceof ASTType)
+                ((ASTType) node).array = array;
+            else if (node instanceof ASTReturnType)
+                ((ASTReturnType) node).array = array;
+            else if (node instanceof ASTAssignment)
+                ((ASTAssignment) node).array = array;
+        }
+        return node;
+    }
+
+    /**
+     * Creates an empty node of a kind
+     * @param kind node kind, as in ParserTreeConstants
+     * @return new node
+     */
+    private static SimpleNode newNode(int kind) {
+        switch (kind) {
+            case ParserTreeConstants.JJTPROGRAM: return new ASTProgram(kind);
+            case ParserTreeConstants.JJTIMPORTDECLARATION: return new ASTImportDeclaration(kind);
+            case ParserTreeConstants.JJTIMPORT: return new ASTImport(kind);
+            case ParserTreeConstants.JJTCLASSDECLARATION: return new ASTClassDeclaration(kind);
+            case ParserTreeConstants.JJTVARDECLARATION: return new ASTVarDeclaration(kind);
+            case ParserTreeConstants.JJTREGULARMETHOD: return new ASTRegularMethod(kind);
+            case ParserTreeConstants.JJTRETURN: return new ASTReturn(kind);
+            case ParserTreeConstants.JJTMETHODPARAMS: return new ASTMethodParams(kind);
+            case ParserTreeConstants.JJTMETHODPARAM: return new ASTMethodParam(kind);
+            case ParserTreeConstants.JJTMAINMETHOD: return new ASTMainMethod(kind);
+            case ParserTreeConstants.JJTMAINPARAMS: return new ASTMainParams(kind);
+            case ParserTreeConstants.JJTTYPE: return new ASTType(kind);
+            case ParserTreeConstants.JJTRETURNTYPE: return new ASTReturnType(kind);
+            case ParserTreeConstants.JJTASSIGNMENT: return new ASTAssignment(kind);
+            case ParserTreeConstants.JJT_THIS: return new AST_this(kind);
+            case ParserTreeConstants.JJTOBJECTCALL: return new ASTObjectCall(kind);
+            case ParserTreeConstants.JJTIDENTIFIER: return new ASTIdentifier(kind);
+            case ParserTreeConstants.JJTIFELSEBLOCK: return new ASTIfElseBlock(kind);
+            case ParserTreeConstants.JJTIFBLOCK: return new ASTIfBlock(kind);
+            case ParserTreeConstants.JJTELSEBLOCK: return new ASTElseBlock(kind);
+            case ParserTreeConstants.JJTWHILEBLOCK: return new ASTWhileBlock(kind);
+            case ParserTreeConstants.JJTAND: return new ASTand(kind);
+            case ParserTreeConstants.JJTNOT: return new ASTnot(kind);
+            case ParserTreeConstants.JJTLT: return new ASTlt(kind);
+            case ParserTreeConstants.JJTSUM: return new ASTsum(kind);
+            case ParserTreeConstants.JJTSUB: return new ASTsub(kind);
+            case ParserTreeConstants.JJTMULT: return new ASTmult(kind);
+            case ParserTreeConstants.JJTDIV: return new ASTdiv(kind);
+            case ParserTreeConstants.JJTGETLENGTH: return new ASTGetLength(kind);
+            case ParserTreeConstants.JJTCALLMETHOD: return new ASTCallMethod(kind);
+            case ParserTreeConstants.JJTINTEGER: return new ASTinteger(kind);
+            case ParserTreeConstants.JJTBOOL: return new ASTbool(kind);
+            case ParserTreeConstants.JJT_NEW: return new AST_new(kind);
+            default: return new SimpleNode(kind);
+        }
+    }
+
+    /**
+     * Getter method for size
+     * @return number of nodes
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Getter method for the number of methods added with methodParsed
+     * @return number of methods
+     */
+    public int getMethodCount() {
+        return this.methodCount;
+    }
+
+    /**
+     * Get the index of a method added with methodParsed
+     * @param i method number, in source order
+     * @return method node index
+     */
+    public int getMethod(int i) {
+        return this.methods[i];
+    }
+
+    /**
+     * Get the kind of a node
+     * @param index node index
+     * @return node kind, as in ParserTreeConstants
+     */
+    public int getKind(int index) {
+        return this.kinds[index];
+    }
+
+    /**
+     * Get the first child of a node
+     * @param index node index
+     * @return first child index, NONE if the node has no children
+     */
+    public int getFirstChild(int index) {
+        return this.firstChildren[index];
+    }
+
+    /**
+     * Get the next sibling of a node
+     * @param index node index
+     * @return next sibling index, NONE if the node is the last child
+     */
+    public int getNextSibling(int index) {
+        return this.nextSiblings[index];
+    }
+
+    /**
+     * Counts the children of a node
+     * @param index node index
+     * @return number of children
+     */
+    public int getNumChildren(int index) {
+        int count = 0;
+        for (int child = this.firstChildren[index]; child != NONE; child = this.nextSiblings[child])
+            count++;
+        return count;
+    }
+
+    /**
+     * Get the source line of a node
+     * @param index node index
+     * @return line
+     */
+    public int getLine(int index) {
+        return this.lines[index];
+    }
+
+    /**
+     * Get the source column of a node
+     * @param index node index
+     * @return column
+     */
+    public int getColumn(int index) {
+        return this.columns[index];
+    }
+
+    /**
+     * Get the value id of a node
+     * @param index node index
+     * @return value id, NONE if the node has no value
+     */
+    public int getValueId(int index) {
+        return this.values[index];
+    }
+
+    /**
+     * Get the value of a node (the import or class name for those nodes)
+     * @param index node index
+     * @return value, null if the node has no value
+     */
+    public Object getValue(int index) {
+        int id = this.values[index];
+        return id == NONE ? null : this.valuePool.get(id);
+    }
+
+    /**
+     * Get the symbol id of a node
+     * @param index node index
+     * @return symbol id, -1 if the node has no identifier
+     */
+    public int getSymbol(int index) {
+        return this.symbols[index];
+    }
+
+    /**
+     * Checks if a node has an array type
+     * @param index node index
+     * @return true for array Type, ReturnType and Assignment nodes
+     */
+    public boolean isArray(int index) {
+        return (this.flags[index] & ARRAY) != 0;
+    }
+}
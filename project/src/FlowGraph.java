@@ -0,0 +1,376 @@
+import SymbolTable.MethodDescriptor;
+import SymbolTable.SymbolMap;
+import SymbolTable.VariableDescriptor;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * <h1>Flow Graph</h1>
+ * <p>Control flow graph of a method, used by the dataflow
+ * analyses. Every simple statement (assignment, expression
+ * statement or return) and every if and while condition is a
+ * node; the method entry, the method exit and the end of every
+ * if-else block are empty nodes. Nodes are numbered in source
+ * order, so the entry is the first node and the exit the last.</p>
+ * <p>The local variables of the method are numbered too: the
+ * declared variables first, then the parameters. Each node
+ * records the locals it reads and the local it assigns (a
+ * statement assigns at most one local, after reading the
+ * others). Attributes are not tracked.</p>
+ * <p>Expressions are walked with an explicit stack and edges
+ * are stored in flat arrays, so building the graph is linear
+ * in the size of the method.</p>
+ * @see Dataflow
+ */
+public class FlowGraph {
+
+    /**
+     * No local variable or no node
+     */
+    public static final int NONE = -1;
+
+    /**
+     * Shared empty use list
+     */
+    private static final SimpleNode[] NO_USES = new SimpleNode[0];
+
+    /**
+     * Declared variables of the method
+     */
+    private final SymbolMap<VariableDescriptor> variables;
+    /**
+     * Parameters of the method
+     */
+    private final SymbolMap<VariableDescriptor> parameters;
+
+    /**
+     * Number of nodes
+     */
+    private int size = 0;
+    /**
+     * Statement or condition of each node, null for empty nodes
+     */
+    private SimpleNode[] statements = new SimpleNode[16];
+    /**
+     * Local assigned by each node, NONE if none
+     */
+    private int[] defs = new int[16];
+    /**
+     * Identifier nodes of the locals read by each node, in source order
+     */
+    private SimpleNode[][] useIdentifiers = new SimpleNode[16][];
+    /**
+     * Locals read by each node
+     */
+    private BitSet[] uses = new BitSet[16];
+
+    /**
+     * Number of edges
+     */
+    private int edgeCount = 0;
+    /**
+     * Source and target node of each edge
+     */
+    private int[] edgeSources = new int[16];
+    private int[] edgeTargets = new int[16];
+
+    /**
+     * Successors and predecessors of each node: the successors of
+     * node n are successors[successorStart[n] .. successorStart[n + 1]]
+     */
+    private int[] successorStart;
+    private int[] successors;
+    private int[] predecessorStart;
+    private int[] predecessors;
+
+    /**
+     * Builds the flow graph of a method
+     * @param method RegularMethod or MainMethod node
+     * @param descriptor method descriptor
+     */
+    public FlowGraph(SimpleNode method, MethodDescriptor descriptor) {
+        this.variables = descriptor.getVariableDescriptors();
+        this.parameters = descriptor.getParameters();
+        // method entry
+        int last = this.addNode(null);
+        for (int i = 0; i < method.jjtGetNumChildren(); i++) {
+            SimpleNode child = (SimpleNode) method.jjtGetChild(i);
+            // declarations are not executed
+            if (child instanceof ASTType || child instanceof ASTMethodParams
+                    || child instanceof ASTMainParams || child instanceof ASTVarDeclaration)
+                continue;
+            last = this.addStatement(child, last);
+        }
+        // method exit
+        this.addEdge(last, this.addNode(null));
+        this.link();
+    }
+
+    /**
+     * Adds a statement and its nested statements after a node
+     * @param statement statement node
+     * @param predecessor node executed before the statement
+     * @return last node of the statement, executed before the next one
+     */
+    private int addStatement(SimpleNode statement, int predecessor) {
+        if (statement instanceof ASTIfElseBlock) {
+            // condition, then both blocks, joined by an empty node
+            int condition = this.addNode((SimpleNode) statement.jjtGetChild(0));
+            this.addEdge(predecessor, condition);
+            int ifEnd = this.addBlock((SimpleNode) statement.jjtGetChild(1), 0, condition);
+            int elseEnd = this.addBlock((SimpleNode) statement.jjtGetChild(2), 0, condition);
+            int join = this.addNode(null);
+            this.addEdge(ifEnd, join);
+            this.addEdge(elseEnd, join);
+            return join;
+        }
+        if (statement instanceof ASTWhileBlock) {
+            // condition, then the body back to the condition
+            // the loop is left from the condition
+            int condition = this.addNode((SimpleNode) statement.jjtGetChild(0));
+            this.addEdge(predecessor, condition);
+            int bodyEnd = this.addBlock(statement, 1, condition);
+            this.addEdge(bodyEnd, condition);
+            return condition;
+        }
+        // assignment, expression statement or return
+        int node = this.addNode(statement);
+        this.addEdge(predecessor, node);
+        return node;
+    }
+
+    /**
+     * Adds the statements of a block in sequence
+     * @param block IfBlock, ElseBlock or WhileBlock node
+     * @param first index of the first statement child
+     * @param predecessor node executed before the block
+     * @return last node of the block, the predecessor if it is empty
+     */
+    private int addBlock(SimpleNode block, int first, int predecessor) {
+        int last = predecessor;
+        for (int i = first; i < block.jjtGetNumChildren(); i++)
+            last = this.addStatement((SimpleNode) block.jjtGetChild(i), last);
+        return last;
+    }
+
+    /**
+     * Adds a node, with the locals its statement reads and assigns
+     * @param statement statement or condition, null for an empty node
+     * @return new node
+     */
+    private int addNode(SimpleNode statement) {
+        if (this.size == this.statements.length) {
+            int capacity = this.size * 2;
+            this.statements = Arrays.copyOf(this.statements, capacity);
+            this.defs = Arrays.copyOf(this.defs, capacity);
+            this.useIdentifiers = Arrays.copyOf(this.useIdentifiers, capacity);
+            this.uses = Arrays.copyOf(this.uses, capacity);
+        }
+        int node = this.size++;
+        this.statements[node] = statement;
+        this.defs[node] = NONE;
+        this.useIdentifiers[node] = NO_USES;
+        this.uses[node] = new BitSet();
+        if (statement == null)
+            return node;
+
+        SimpleNode expression = statement;
+        if (statement instanceof ASTAssignment) {
+            SimpleNode assignee = (SimpleNode) statement.jjtGetChild(0);
+            // 'a[i] = x' reads 'a', 'x = ...' assigns 'x'
+            if (assignee.jjtGetNumChildren() == 0) {
+                this.defs[node] = this.localIndex(assignee.symbol);
+                expression = (SimpleNode) statement.jjtGetChild(1);
+            }
+        }
+        this.collectUses(node, expression);
+        return node;
+    }
+
+    /**
+     * Collects the locals read by an expression, in source order
+     * @param node flow graph node
+     * @param expression expression (or array assignment) node
+     */
+    private void collectUses(int node, SimpleNode expression) {
+        SimpleNode[] identifiers = new SimpleNode[4];
+        int count = 0;
+        // explicit stack, so deep expressions do not overflow the call stack
+        ArrayDeque<SimpleNode> stack = new ArrayDeque<>();
+        stack.push(expression);
+        while (!stack.isEmpty()) {
+            SimpleNode current = stack.pop();
+            if (current instanceof ASTIdentifier) {
+                int local = this.localIndex(current.symbol);
+                if (local != NONE) {
+                    if (count == identifiers.length)
+                        identifiers = Arrays.copyOf(identifiers, count * 2);
+                    identifiers[count++] = current;
+                    this.uses[node].set(local);
+                }
+            }
+            // push in reverse, so children are visited left to right
+            for (int i = current.jjtGetNumChildren() - 1; i >= 0; i--)
+                stack.push((SimpleNode) current.jjtGetChild(i));
+        }
+        if (count > 0)
+            this.useIdentifiers[node] = Arrays.copyOf(identifiers, count);
+    }
+
+    /**
+     * Adds an edge between two nodes
+     * @param source source node
+     * @param target target node
+     */
+    private void addEdge(int source, int target) {
+        if (this.edgeCount == this.edgeSources.length) {
+            this.edgeSources = Arrays.copyOf(this.edgeSources, this.edgeCount * 2);
+            this.edgeTargets = Arrays.copyOf(this.edgeTargets, this.edgeCount * 2);
+        }
+        this.edgeSources[this.edgeCount] = source;
+        this.edgeTargets[this.edgeCount] = target;
+        this.edgeCount++;
+    }
+
+    /**
+     * Builds the successor and predecessor arrays from the edge list
+     */
+    private void link() {
+        this.successorStart = new int[this.size + 1];
+        this.predecessorStart = new int[this.size + 1];
+        for (int edge = 0; edge < this.edgeCount; edge++) {
+            this.successorStart[this.edgeSources[edge] + 1]++;
+            this.predecessorStart[this.edgeTargets[edge] + 1]++;
+        }
+        for (int node = 0; node < this.size; node++) {
+            this.successorStart[node + 1] += this.successorStart[node];
+            this.predecessorStart[node + 1] += this.predecessorStart[node];
+        }
+        this.successors = new int[this.edgeCount];
+        this.predecessors = new int[this.edgeCount];
+        int[] successorNext = Arrays.copyOf(this.successorStart, this.size);
+        int[] predecessorNext = Arrays.copyOf(this.predecessorStart, this.size);
+        for (int edge = 0; edge < this.edgeCount; edge++) {
+            int source = this.edgeSources[edge];
+            int target = this.edgeTargets[edge];
+            this.successors[successorNext[source]++] = target;
+            this.predecessors[predecessorNext[target]++] = source;
+        }
+    }
+
+    /**
+     * Get the local variable index of a symbol
+     * @param symbol identifier symbol id
+     * @return local index, NONE if the symbol is not a local of the method
+     */
+    public int localIndex(int symbol) {
+        // declared variables hide parameters, like MethodDescriptor.findVariable
+        int variable = this.variables.indexOf(symbol);
+        if (variable != -1)
+            return variable;
+        int parameter = this.parameters.indexOf(symbol);
+        return parameter == -1 ? NONE : this.variables.size() + parameter;
+    }
+
+    /**
+     * Get the locals assigned when the method is entered
+     * @return parameter locals
+     */
+    public BitSet getParameterLocals() {
+        BitSet locals = new BitSet();
+        locals.set(this.variables.size(), this.getLocalCount());
+        return locals;
+    }
+
+    /**
+     * Getter method for the number of locals
+     * @return number of declared variables and parameters
+     */
+    public int getLocalCount() {
+        return this.variables.size() + this.parameters.size();
+    }
+
+    /**
+     * Getter method for the number of nodes
+     * @return number of nodes
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Get the statement of a node
+     * @param node node
+     * @return assignment, expression statement, return or condition node, null for empty nodes
+     */
+    public SimpleNode getStatement(int node) {
+        return this.statements[node];
+    }
+
+    /**
+     * Get the local assigned by a node
+     * @param node node
+     * @return local index, NONE if none
+     */
+    public int getDef(int node) {
+        return this.defs[node];
+    }
+
+    /**
+     * Get the locals read by a node (must not be modified)
+     * @param node node
+     * @return local indexes
+     */
+    public BitSet getUses(int node) {
+        return this.uses[node];
+    }
+
+    /**
+     * Get the identifier nodes of the locals read by a node
+     * @param node node
+     * @return identifier nodes, in source order (must not be modified)
+     */
+    public SimpleNode[] getUseIdentifiers(int node) {
+        return this.useIdentifiers[node];
+    }
+
+    /**
+     * Get the number of successors of a node
+     * @param node node
+     * @return number of successors
+     */
+    public int getSuccessorCount(int node) {
+        return this.successorStart[node + 1] - this.successorStart[node];
+    }
+
+    /**
+     * Get a successor of a node
+     * @param node node
+     * @param index successor index
+     * @return successor node
+     */
+    public int getSuccessor(int node, int index) {
+        return this.successors[this.successorStart[node] + index];
+    }
+
+    /**
+     * Get the number of predecessors of a node
+     * @param node node
+     * @return number of predecessors
+     */
+    public int getPredecessorCount(int node) {
+        return this.predecessorStart[node + 1] - this.predecessorStart[node];
+    }
+
+    /**
+     * Get a predecessor of a node
+     * @param node node
+     * @param index predecessor index
+     * @return predecessor node
+     */
+    public int getPredecessor(int node, int index) {
+        return this.predecessors[this.predecessorStart[node] + index];
+    }
+}
@@ -0,0 +1,516 @@
+import SymbolTable.SymbolMap;
+import SymbolTable.SymbolTable;
+import SymbolTable.VariableDescriptor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * <h1>Incremental Compiler</h1>
+ * <p>Analyses and generates code for a class one method at a time,
+ * reusing the results of the previous compilation of the class
+ * for the methods that did not change.</p>
+ * <p>Each method is fingerprinted by hashing its subtree (signature
+ * and body, without positions). The rest of the class (imports,
+ * class header and fields) is hashed as the class context, and a
+ * change of context compiles the whole class again.</p>
+ * <p>A method is analysed and generated again if its fingerprint
+ * changed or if it calls a method whose signatures changed: the
+ * call graph is built from the object calls of each method. A
+ * method is also analysed again, but its code reused, if the
+ * attributes initialised before it changed. The attributes
+ * initialised by skipped methods are replayed, so the analysis
+ * of the other methods sees the same state as a full compile.</p>
+ * <p>The state of the last compilation of each class (fingerprints
+ * and Jasmin code of every method) is stored in the cache directory.
+ * Only successful compilations are stored.</p>
+ * @see SemanticAnalyser
+ * @see CodeGenerator
+ */
+public class IncrementalCompiler {
+
+    /**
+     * First int of every state file
+     */
+    private static final int MAGIC = 0x4A4D4D49;
+    /**
+     * State file extension
+     */
+    private static final String EXTENSION = ".methods";
+
+    /**
+     * Compiled method, as stored between compilations
+     */
+    private static class MethodState {
+        /**
+         * Name and parameter types, i.e 'foo(int,boolean)'
+         */
+        String key;
+        /**
+         * Hash of the method subtree
+         */
+        String fingerprint;
+        /**
+         * Return type
+         */
+        String returnType;
+        /**
+         * Attributes initialised when the method is analysed
+         */
+        String initialisedBefore;
+        /**
+         * Attributes initialised by the method
+         */
+        String initialisedByMethod;
+        /**
+         * Jasmin code of the method
+         */
+        String code;
+        /**
+         * Names of the methods invoked by the method (not stored)
+         */
+        HashSet<String> callees = new HashSet<>();
+    }
+
+    /**
+     * Symbol Table
+     */
+    private final SymbolTable table;
+    /**
+     * AST root node
+     */
+    private final SimpleNode root;
+    /**
+     * Class declaration node
+     */
+    private final SimpleNode classNode;
+    /**
+     * Attributes and methods of the class
+     */
+    private final Node[] members;
+    /**
+     * State file of the class
+     */
+    private final File stateFile;
+    /**
+     * Hash of the class context
+     */
+    private final String context;
+    /**
+     * Methods of the previous compilation, empty if the
+     * context changed
+     * method key -> method
+     */
+    private final HashMap<String, MethodState> previous = new HashMap<>();
+    /**
+     * Methods of this compilation
+     * method node -> method
+     */
+    private final HashMap<SimpleNode, MethodState> methods = new HashMap<>();
+    /**
+     * Methods whose code is reused
+     * method node -> Jasmin code
+     */
+    private final HashMap<SimpleNode, String> reused = new HashMap<>();
+    /**
+     * Number of methods analysed again
+     */
+    private int analysed = 0;
+
+    /**
+     * Constructor, loads the state of the previous compilation
+     * @param directory state directory
+     * @param table symbol table
+     * @param root AST root node
+     */
+    public IncrementalCompiler(File directory, SymbolTable table, SimpleNode root) {
+        this.table = table;
+        this.root = root;
+        this.classNode = findClass(root);
+        this.members = new Node[this.classNode.jjtGetNumChildren()];
+        for (int i = 0; i < this.members.length; i++)
+            this.members[i] = this.classNode.jjtGetChild(i);
+        this.stateFile = new File(directory, table.getClassName() + EXTENSION);
+        this.context = this.hashContext(root);
+        this.load();
+    }
+
+    /**
+     * Analyses the changed methods and their dependents, in class order
+     * @param analyser semantic analyser
+     * @return true if no errors were found
+     */
+    public boolean analise(SemanticAnalyser analyser) {
+        // fingerprint every method
+        for (Node child : this.members) {
+            if (!isMethod(child))
+                continue;
+            SimpleNode node = (SimpleNode) child;
+            MethodState method = new MethodState();
+            method.key = methodKey(node);
+            method.returnType = (node instanceof ASTMainMethod) ? "void" : (String) ((SimpleNode) node.jjtGetChild(0)).jjtGetValue();
+            method.fingerprint = fingerprint(node, method.callees);
+            this.methods.put(node, method);
+        }
+        HashMap<String, String> previousSignatures = signatures(this.previous.values());
+        HashMap<String, String> currentSignatures = signatures(this.methods.values());
+
+        // analyse imports, attributes and methods in tree order
+        for (int i = 0; i < this.root.jjtGetNumChildren(); i++) {
+            if (this.root.jjtGetChild(i) != this.classNode)
+                this.root.jjtGetChild(i).jjtAccept(analyser, null);
+        }
+        for (Node child : this.members) {
+            MethodState method = this.methods.get(child);
+            if (method == null) {
+                child.jjtAccept(analyser, null);
+                continue;
+            }
+            SimpleNode node = (SimpleNode) child;
+            MethodState last = this.previous.get(method.key);
+            method.initialisedBefore = this.initialisedAttributes();
+
+            // generate again if the body or the signatures of a callee changed
+            boolean changed = last == null || !last.fingerprint.equals(method.fingerprint)
+                    || calleeChanged(method, previousSignatures, currentSignatures);
+            // analyse again if the attributes initialised before the method changed
+            if (changed || !last.initialisedBefore.equals(method.initialisedBefore)) {
+                node.jjtAccept(analyser, null);
+                method.initialisedByMethod = this.initialisedSince(method.initialisedBefore);
+                this.analysed++;
+            }
+            else {
+                // replay the attributes initialised by the method
+                this.replayInitialised(last.initialisedByMethod);
+                method.initialisedByMethod = last.initialisedByMethod;
+            }
+            if (!changed)
+                this.reused.put(node, last.code);
+        }
+
+        return !analyser.hasErrors();
+    }
+
+    /**
+     * Makes the code generator reuse the code of the unchanged methods
+     * @param generator code generator
+     */
+    public void prepare(CodeGenerator generator) {
+        generator.reuseMethods(this.reused);
+    }
+
+    /**
+     * Stores the state of the compilation, for the next one
+     * @param methodCode method node -> Jasmin code of the method
+     */
+    public void store(HashMap<SimpleNode, String> methodCode) {
+        // nothing to update if every method was reused
+        if (this.analysed == 0 && this.previous.size() == this.methods.size())
+            return;
+        this.stateFile.getParentFile().mkdirs();
+        // write to a temporary file first, so readers never see a partial state
+        File temporary = new File(this.stateFile.getPath() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+            output.writeInt(MAGIC);
+            output.writeUTF(this.context);
+            output.writeInt(this.methods.size());
+            for (Node child : this.members) {
+                MethodState method = this.methods.get(child);
+                if (method == null)
+                    continue;
+                output.writeUTF(method.key);
+                output.writeUTF(method.fingerprint);
+                output.writeUTF(method.returnType);
+                output.writeUTF(method.initialisedBefore);
+                output.writeUTF(method.initialisedByMethod);
+                byte[] code = methodCode.get(child).getBytes(StandardCharsets.UTF_8);
+                output.writeInt(code.length);
+                output.write(code);
+            }
+        } catch (IOException e) {
+            System.err.println("WARNING: could not write incremental state: " + e.getMessage());
+            temporary.delete();
+            return;
+        }
+        this.stateFile.delete();
+        if (!temporary.renameTo(this.stateFile))
+            temporary.delete();
+    }
+
+    /**
+     * Get the number of methods analysed again
+     * @return number of analysed methods
+     */
+    public int getAnalysedCount() {
+        return this.analysed;
+    }
+
+    /**
+     * Get the number of methods whose code is reused
+     * @return number of reused methods
+     */
+    public int getReusedCount() {
+        return this.reused.size();
+    }
+
+    /**
+     * Loads the methods of the previous compilation, if its
+     * context is the same as this one
+     */
+    private void load() {
+        if (!this.stateFile.isFile())
+            return;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(this.stateFile)))) {
+            if (input.readInt() != MAGIC || !input.readUTF().equals(this.context))
+                return;
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                MethodState method = new MethodState();
+                method.key = input.readUTF();
+                method.fingerprint = input.readUTF();
+                method.returnType = input.readUTF();
+                method.initialisedBefore = input.readUTF();
+                method.initialisedByMethod = input.readUTF();
+                byte[] code = new byte[input.readInt()];
+                input.readFully(code);
+                method.code = new String(code, StandardCharsets.UTF_8);
+                this.previous.put(method.key, method);
+            }
+        } catch (IOException e) {
+            // unreadable state, the whole class is compiled again
+            this.previous.clear();
+        }
+    }
+
+    /**
+     * Check if a method calls a method whose signatures changed
+     * since the previous compilation (added, removed or retyped)
+     * @param method method
+     * @param previous method name -> signatures of the previous compilation
+     * @param current method name -> signatures of this compilation
+     * @return true if a callee changed
+     */
+    private static boolean calleeChanged(MethodState method, HashMap<String, String> previous, HashMap<String, String> current) {
+        for (String callee : method.callees) {
+            if (!String.valueOf(previous.get(callee)).equals(String.valueOf(current.get(callee))))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Groups method signatures by method name
+     * @param methods methods
+     * @return method name -> signatures of the methods with that name
+     */
+    private static HashMap<String, String> signatures(Iterable<MethodState> methods) {
+        HashMap<String, String> signatures = new HashMap<>();
+        for (MethodState method : methods)
+            signatures.merge(methodName(method.key), method.key + method.returnType, (a, b) -> a + ";" + b);
+        return signatures;
+    }
+
+    /**
+     * Get the names of the initialised attributes
+     * @return names separated by ','
+     */
+    private String initialisedAttributes() {
+        StringBuilder names = new StringBuilder();
+        SymbolMap<VariableDescriptor> attributes = this.table.getVariableDescriptors();
+        for (int i = 0; i < attributes.size(); i++) {
+            if (attributes.valueAt(i).isInitialised())
+                names.append(this.table.getSymbols().name(attributes.keyAt(i))).append(',');
+        }
+        return names.toString();
+    }
+
+    /**
+     * Get the names of the attributes initialised since a previous state
+     * @param before names of the attributes initialised before
+     * @return names separated by ','
+     */
+    private String initialisedSince(String before) {
+        StringBuilder names = new StringBuilder();
+        for (String name : this.initialisedAttributes().split(",")) {
+            if (!name.isEmpty() && !("," + before).contains("," + name + ","))
+                names.append(name).append(',');
+        }
+        return names.toString();
+    }
+
+    /**
+     * Marks attributes as initialised
+     * @param names names separated by ','
+     */
+    private void replayInitialised(String names) {
+        for (String name : names.split(",")) {
+            VariableDescriptor attribute = name.isEmpty() ? null : this.table.findAttribute(name);
+            if (attribute != null)
+                attribute.setInitialised(true);
+        }
+    }
+
+    /**
+     * Hashes everything but the methods: compiler build, imports,
+     * class header and attributes
+     * @param root AST root node
+     * @return hex hash
+     */
+    private String hashContext(SimpleNode root) {
+        long[] hash = newHash();
+        update(hash, JmmCache.compilerBuild());
+        update(hash, this.table.getClassName() + ' ' + this.table.getExtendedClassName());
+        for (int i = 0; i < root.jjtGetNumChildren(); i++) {
+            if (root.jjtGetChild(i) != this.classNode)
+                hashTree(hash, (SimpleNode) root.jjtGetChild(i), null);
+        }
+        for (Node child : this.members) {
+            if (!isMethod(child))
+                hashTree(hash, (SimpleNode) child, null);
+        }
+        return toHex(hash);
+    }
+
+    /**
+     * Hashes a method subtree and collects the names of the methods
+     * invoked by its object calls
+     * @param node method node
+     * @param callees set of method names
+     * @return hex hash
+     */
+    private static String fingerprint(SimpleNode node, HashSet<String> callees) {
+        long[] hash = newHash();
+        hashTree(hash, node, callees);
+        return toHex(hash);
+    }
+
+    /**
+     * Hashes the kind, value and children of every node of a subtree.
+     * Positions are not hashed, so moving a method does not change it.
+     * @param hash hash to update
+     * @param node subtree root
+     * @param callees set of invoked method names, null if not collected
+     */
+    private static void hashTree(long[] hash, SimpleNode node, HashSet<String> callees) {
+        // pre-order walk with an explicit stack, so deep expressions do not overflow the call stack
+        ArrayDeque<SimpleNode> stack = new ArrayDeque<>();
+        stack.push(node);
+        while (!stack.isEmpty()) {
+            SimpleNode current = stack.pop();
+            // the value (types include their array flag), or the node string
+            // for nodes without one (it has the assignment array flag)
+            Object value = current.jjtGetValue();
+            update(hash, current.getId());
+            update(hash, (value != null) ? value.toString() : current.toString());
+            update(hash, current.jjtGetNumChildren());
+            if (callees != null && current instanceof ASTObjectCall && current.jjtGetChild(1) instanceof ASTCallMethod)
+                callees.add((String) ((SimpleNode) current.jjtGetChild(1)).jjtGetValue());
+            // push in reverse, so children are hashed left to right
+            for (int i = current.jjtGetNumChildren() - 1; i >= 0; i--)
+                stack.push((SimpleNode) current.jjtGetChild(i));
+        }
+    }
+
+    /**
+     * Get the key of a method: name and parameter types
+     * @param node method node
+     * @return method key, i.e 'foo(int,boolean)'
+     */
+    private static String methodKey(SimpleNode node) {
+        if (node instanceof ASTMainMethod)
+            return "main(String[])";
+        StringBuilder key = new StringBuilder().append(node.jjtGetValue()).append('(');
+        if (node.jjtGetNumChildren() > 1 && node.jjtGetChild(1) instanceof ASTMethodParams) {
+            Node params = node.jjtGetChild(1);
+            for (int i = 0; i < params.jjtGetNumChildren(); i++) {
+                if (i > 0)
+                    key.append(',');
+                key.append(((SimpleNode) params.jjtGetChild(i).jjtGetChild(0)).jjtGetValue());
+            }
+        }
+        return key.append(')').toString();
+    }
+
+    /**
+     * Get the name of a method from its key
+     * @param key method key
+     * @return method name
+     */
+    private static String methodName(String key) {
+        return key.substring(0, key.indexOf('('));
+    }
+
+    /**
+     * Check if a class child is a method
+     * @param node class child
+     * @return true for regular and main methods
+     */
+    private static boolean isMethod(Node node) {
+        return node instanceof ASTRegularMethod || node instanceof ASTMainMethod;
+    }
+
+    /**
+     * Get the class declaration of the tree
+     * @param root AST root node
+     * @return class declaration node
+     */
+    private static SimpleNode findClass(SimpleNode root) {
+        for (int i = 0; i < root.jjtGetNumChildren(); i++) {
+            if (root.jjtGetChild(i) instanceof ASTClassDeclaration)
+                return (SimpleNode) root.jjtGetChild(i);
+        }
+        return root;
+    }
+
+    /**
+     * Creates a 128 bit hash, as two independent 64 bit lanes.
+     * Fingerprints are computed on every compilation, so a cheap
+     * hash is used instead of a message digest.
+     * @return initial hash
+     */
+    private static long[] newHash() {
+        return new long[] { 0xCBF29CE484222325L, 0x9E3779B97F4A7C15L };
+    }
+
+    /**
+     * Hashes a string, followed by a separator
+     * @param hash hash to update
+     * @param text string to hash
+     */
+    private static void update(long[] hash, String text) {
+        for (int i = 0; i < text.length(); i++)
+            update(hash, text.charAt(i));
+        update(hash, -1);
+    }
+
+    /**
+     * Hashes a value
+     * @param hash hash to update
+     * @param value value to hash
+     */
+    private static void update(long[] hash, int value) {
+        // FNV-1a and a multiply-xorshift lane
+        hash[0] = (hash[0] ^ value) * 0x100000001B3L;
+        hash[1] = (hash[1] + value) * 0xBF58476D1CE4E5B9L;
+        hash[1] ^= hash[1] >>> 31;
+    }
+
+    /**
+     * Converts a hash to hex
+     * @param hash hash
+     * @return hex string
+     */
+    private static String toHex(long[] hash) {
+        return Long.toHexString(hash[0]) + ":" + Long.toHexString(hash[1]);
+    }
+}
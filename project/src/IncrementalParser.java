@@ -0,0 +1,487 @@
+import SymbolTable.SymbolInterner;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * <h1>Incremental Parser</h1>
+ * <p>Keeps the tree of a document being edited up to date, reparsing
+ * only the method an edit falls in. The document is kept split at
+ * its methods (the text before the first method, then each method and
+ * the text after it), with the line and column state before each
+ * method and the position of the '}' closing it, so an edit given by
+ * line and column is mapped to its method by a binary search and its
+ * bytes found by scanning only that method.</p>
+ * <p>The edited method is parsed on its own and its node replaces the
+ * old one in the class declaration, so the time of an edit depends on
+ * the size of the method, not of the file. If the edit adds or removes
+ * lines, the nodes of the following methods are moved to their lines
+ * when the whole tree is read again. Statements are not reparsed on
+ * their own: blocks have no node, and the method variables have to be
+ * parsed with them anyway.</p>
+ * <p>Edits outside a method, or which leave something other than a
+ * single method in its place (unbalanced braces, a new method, a syntax
+ * error), reparse the whole document, which reports the syntax errors
+ * as usual.</p>
+ * <p>The names of the reparsed methods are added to the symbols of the
+ * compilation, so symbol ids stay valid but may not be the ids a new
+ * parse of the document would give.</p>
+ * @see MethodScanner
+ */
+public class IncrementalParser {
+
+    /**
+     * Use the generated token manager instead of JmmLexer
+     */
+    private final boolean javaccLexer;
+
+    /**
+     * Names of the compilation
+     */
+    private final SymbolInterner symbols;
+
+    /**
+     * Text before the first method (the whole document if
+     * its methods are not known)
+     */
+    private byte[] head;
+
+    /**
+     * Methods of the document, in source order
+     */
+    private final ArrayList<Method> methods = new ArrayList<>();
+
+    /**
+     * Root node of the tree, null if the last parse failed
+     */
+    private SimpleNode root = null;
+
+    /**
+     * Class declaration node, parent of the method nodes
+     */
+    private SimpleNode classNode = null;
+
+    /**
+     * Number of bytes parsed by the last parse or edit
+     */
+    private int reparsedLength = 0;
+
+    /**
+     * Method of the document
+     */
+    private static class Method {
+        /**
+         * Text of the method, from 'public' to the '}' closing it
+         */
+        byte[] text;
+        /**
+         * Text after the method, up to the next method or the end of the document
+         */
+        byte[] after;
+        /**
+         * Region of the whole text, with the line and column state before the method
+         */
+        MappedCharStream.Region region;
+        /**
+         * Line and column of the '}' closing the method
+         */
+        int endLine;
+        int endColumn;
+        /**
+         * RegularMethod or MainMethod node
+         */
+        SimpleNode node;
+        /**
+         * Lines added by edits before the method, not yet added to its nodes
+         */
+        int pendingLines;
+    }
+
+    /**
+     * Constructor
+     * @param text document
+     * @param javaccLexer use the generated token manager instead of JmmLexer
+     * @param symbols names of the compilation, filled while parsing
+     */
+    public IncrementalParser(String text, boolean javaccLexer, SymbolInterner symbols) {
+        this.javaccLexer = javaccLexer;
+        this.symbols = symbols;
+        this.head = text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Getter method for root, moving the nodes of the methods after
+     * the edited ones to their lines
+     * @return root node of the tree, null if the last parse failed
+     */
+    public SimpleNode getRoot() {
+        for (Method method : this.methods) {
+            if (method.pendingLines != 0)
+                moveNodes(method, 0, 0, 0);
+        }
+        return this.root;
+    }
+
+    /**
+     * Getter method for the number of bytes parsed by the last parse or edit
+     * @return size of the reparsed method, or of the document
+     */
+    public int getReparsedLength() {
+        return this.reparsedLength;
+    }
+
+    /**
+     * Get the document
+     * @return text of the document, with every edit applied
+     */
+    public String getText() {
+        return new String(this.getBytes(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses the whole document
+     * @return root node of the tree
+     * @throws ParseException
+     */
+    public SimpleNode parse() throws ParseException {
+        byte[] text = this.getBytes();
+        ByteBuffer source = ByteBuffer.wrap(text);
+        MappedCharStream.Region document = new MappedCharStream.Region(0, text.length, 1, 0, false, false);
+
+        this.root = null;
+        this.classNode = null;
+        this.methods.clear();
+        this.head = text;
+        this.reparsedLength = text.length;
+        SimpleNode root = this.newParser(new MappedCharStream(source, document)).parse((Parser.MethodListener) null);
+
+        ArrayList<SimpleNode> methodNodes = new ArrayList<>();
+        for (int i = 0; i < root.jjtGetNumChildren(); i++) {
+            SimpleNode child = (SimpleNode) root.jjtGetChild(i);
+            if (!(child instanceof ASTClassDeclaration))
+                continue;
+            this.classNode = child;
+            for (int j = 0; j < child.jjtGetNumChildren(); j++) {
+                SimpleNode member = (SimpleNode) child.jjtGetChild(j);
+                if (member instanceof ASTRegularMethod || member instanceof ASTMainMethod)
+                    methodNodes.add(member);
+            }
+        }
+
+        // split the document at its methods
+        MethodScanner scanner = new MethodScanner(source);
+        scanner.scan(document, 0);
+        ArrayList<MappedCharStream.Region> regions = scanner.getMethods();
+        if (regions.size() == methodNodes.size() && !regions.isEmpty()) {
+            this.head = Arrays.copyOfRange(text, 0, regions.get(0).start);
+            for (int i = 0; i < regions.size(); i++) {
+                MappedCharStream.Region region = regions.get(i);
+                int next = i + 1 < regions.size() ? regions.get(i + 1).start : text.length;
+                MappedCharStream.Region end = scanner.getRegionAfter(i);
+
+                Method method = new Method();
+                method.text = Arrays.copyOfRange(text, region.start, region.end);
+                method.after = Arrays.copyOfRange(text, region.end, next);
+                method.region = new MappedCharStream.Region(0, method.text.length, region.line, region.column, region.afterCR, region.afterLF);
+                method.endLine = end.line;
+                method.endColumn = end.column;
+                method.node = methodNodes.get(i);
+                this.methods.add(method);
+            }
+        }
+
+        this.root = root;
+        return root;
+    }
+
+    /**
+     * Replaces a part of the document and updates the tree. Positions
+     * are the lines and columns of the tokens of the document before
+     * the edit.
+     * @param beginLine line of the first character replaced
+     * @param beginColumn column of the first character replaced
+     * @param endLine line of the first character after the ones replaced
+     * @param endColumn column of the first character after the ones replaced
+     * @param text new text
+     * @return node of the reparsed method, or root node of the tree if the
+     * whole document was reparsed
+     * @throws ParseException
+     */
+    public SimpleNode edit(int beginLine, int beginColumn, int endLine, int endColumn, String text) throws ParseException {
+        byte[] replacement = text.getBytes(StandardCharsets.UTF_8);
+
+        if (this.root != null) {
+            int index = this.methodAt(beginLine, beginColumn);
+            if (index != -1) {
+                Method method = this.methods.get(index);
+                // the character after the '}' is the last an edit of the method can end at
+                if (compare(endLine, endColumn, method.endLine, method.endColumn + 1) <= 0) {
+                    SimpleNode node = this.reparseMethod(index, beginLine, beginColumn, endLine, endColumn, replacement);
+                    if (node != null)
+                        return node;
+                }
+            }
+        }
+
+        // edit of the whole document
+        byte[] document = this.getBytes();
+        MappedCharStream.Region region = new MappedCharStream.Region(0, document.length, 1, 0, false, false);
+        MethodScanner scanner = new MethodScanner(ByteBuffer.wrap(document));
+        int begin = scanner.offsetOf(region, beginLine, beginColumn);
+        int end = scanner.offsetOf(region, endLine, endColumn);
+        this.methods.clear();
+        this.head = replace(document, begin, end, replacement);
+        return this.parse();
+    }
+
+    /**
+     * Replaces a part of a method and reparses it
+     * @param index index of the method
+     * @param beginLine line of the first character replaced
+     * @param beginColumn column of the first character replaced
+     * @param endLine line of the first character after the ones replaced
+     * @param endColumn column of the first character after the ones replaced
+     * @param replacement new text
+     * @return new method node, null if the new text is not a single method
+     */
+    private SimpleNode reparseMethod(int index, int beginLine, int beginColumn, int endLine, int endColumn, byte[] replacement) {
+        Method method = this.methods.get(index);
+        MethodScanner scanner = new MethodScanner(ByteBuffer.wrap(method.text));
+        int begin = scanner.offsetOf(method.region, beginLine, beginColumn);
+        int end = scanner.offsetOf(method.region, endLine, endColumn);
+        byte[] text = replace(method.text, begin, end, replacement);
+
+        // the new text must still be a single method, followed by blanks at most
+        ByteBuffer source = ByteBuffer.wrap(text);
+        MappedCharStream.Region region = new MappedCharStream.Region(0, text.length,
+                method.region.line, method.region.column, method.region.afterCR, method.region.afterLF);
+        scanner = new MethodScanner(source);
+        scanner.scan(region, 1);
+        if (scanner.getMethods().size() != 1)
+            return null;
+        MappedCharStream.Region methodRegion = scanner.getMethods().get(0);
+        if (methodRegion.start != 0 || !isBlank(text, methodRegion.end))
+            return null;
+
+        SimpleNode node;
+        try {
+            node = this.newParser(new MappedCharStream(source, methodRegion)).parseMethod();
+        } catch (ParseException | TokenMgrError e) {
+            return null;
+        }
+
+        // position of the first character after the edited text, before and after the edit
+        // (a line feed after a carriage return is in the same line)
+        MappedCharStream.Region last = scanner.regionAfter(region);
+        boolean nextIsLF = method.after.length > 0 && method.after[0] == '\n';
+        boolean newLine = last.afterLF || (last.afterCR && !nextIsLF);
+        int oldEndLine = method.endLine;
+        int lineDelta = (newLine ? last.line + 1 : last.line) - method.endLine;
+        int columnDelta = (newLine ? 1 : last.column + 1) - (method.endColumn + 1);
+        boolean adjacent = method.after.length == 0;
+
+        // blanks after the '}' go to the text after the method
+        if (methodRegion.end < text.length) {
+            method.after = replace(method.after, 0, 0, Arrays.copyOfRange(text, methodRegion.end, text.length));
+            text = Arrays.copyOf(text, methodRegion.end);
+        }
+        MappedCharStream.Region closing = scanner.getRegionAfter(0);
+
+        method.text = text;
+        method.region = new MappedCharStream.Region(0, text.length,
+                method.region.line, method.region.column, method.region.afterCR, method.region.afterLF);
+        method.endLine = closing.line;
+        method.endColumn = closing.column;
+        for (int i = 0; i < this.classNode.jjtGetNumChildren(); i++) {
+            if (this.classNode.jjtGetChild(i) == method.node)
+                this.classNode.jjtAddChild(node, i);
+        }
+        node.jjtSetParent(this.classNode);
+        method.node = node;
+        this.reparsedLength = text.length;
+
+        this.shiftMethods(index + 1, oldEndLine, lineDelta, columnDelta);
+        // the next method started right after the '}', so now after the edited text
+        if (adjacent && index + 1 < this.methods.size()) {
+            Method next = this.methods.get(index + 1);
+            next.region = new MappedCharStream.Region(0, next.text.length, last.line, last.column, last.afterCR, last.afterLF);
+        }
+        return node;
+    }
+
+    /**
+     * Shifts the positions of the methods after an edited one. The
+     * nodes of a method are only moved now if it starts in the line
+     * the edit ended at, the lines of the others are moved when the
+     * tree is read.
+     * @param first index of the first method after the edited one
+     * @param oldEndLine line the edited method ended at before the edit
+     * @param lineDelta lines added by the edit
+     * @param columnDelta columns added by the edit to the characters of
+     *                    that line after the method
+     */
+    private void shiftMethods(int first, int oldEndLine, int lineDelta, int columnDelta) {
+        if (lineDelta == 0 && columnDelta == 0)
+            return;
+
+        for (int i = first; i < this.methods.size(); i++) {
+            Method method = this.methods.get(i);
+            // without new lines, only the line the edit ended at moves
+            MappedCharStream.Region region = method.region;
+            if (lineDelta == 0 && region.line != oldEndLine)
+                return;
+
+            if (startLine(region) == oldEndLine)
+                moveNodes(method, oldEndLine, lineDelta, columnDelta);
+            else
+                method.pendingLines += lineDelta;
+
+            method.region = new MappedCharStream.Region(region.start, region.end, region.line + lineDelta,
+                    region.line == oldEndLine ? region.column + columnDelta : region.column, region.afterCR, region.afterLF);
+            if (method.endLine == oldEndLine)
+                method.endColumn += columnDelta;
+            method.endLine += lineDelta;
+        }
+    }
+
+    /**
+     * Moves the nodes of a method by its pending lines, then by an edit
+     * @param method method
+     * @param line line the edit ended at, whose nodes also move columns
+     * @param lineDelta lines added by the edit
+     * @param columnDelta columns added by the edit to the nodes of the line
+     */
+    private static void moveNodes(Method method, int line, int lineDelta, int columnDelta) {
+        int pendingLines = method.pendingLines;
+        method.pendingLines = 0;
+
+        // explicit stack, so deep expressions do not overflow the call stack
+        ArrayDeque<SimpleNode> stack = new ArrayDeque<>();
+        stack.push(method.node);
+        while (!stack.isEmpty()) {
+            SimpleNode node = stack.pop();
+            // nodes without a position have line 0
+            if (node.line > 0) {
+                node.line += pendingLines;
+                if (node.line == line)
+                    node.column += columnDelta;
+                node.line += lineDelta;
+            }
+            for (int j = 0; j < node.jjtGetNumChildren(); j++)
+                stack.push((SimpleNode) node.jjtGetChild(j));
+        }
+    }
+
+    /**
+     * Finds the method a position is in
+     * @param line line of the position
+     * @param column column of the position
+     * @return index of the last method starting at or before the position, -1 if none
+     */
+    private int methodAt(int line, int column) {
+        int low = 0, high = this.methods.size() - 1;
+        int found = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            MappedCharStream.Region region = this.methods.get(middle).region;
+            if (compare(startLine(region), startColumn(region), line, column) <= 0) {
+                found = middle;
+                low = middle + 1;
+            }
+            else
+                high = middle - 1;
+        }
+        return found;
+    }
+
+    /**
+     * Get the document
+     * @return bytes of the document
+     */
+    private byte[] getBytes() {
+        int size = this.head.length;
+        for (Method method : this.methods)
+            size += method.text.length + method.after.length;
+
+        byte[] document = Arrays.copyOf(this.head, size);
+        int offset = this.head.length;
+        for (Method method : this.methods) {
+            System.arraycopy(method.text, 0, document, offset, method.text.length);
+            offset += method.text.length;
+            System.arraycopy(method.after, 0, document, offset, method.after.length);
+            offset += method.after.length;
+        }
+        return document;
+    }
+
+    /**
+     * Creates a parser of a stream
+     * @param stream char stream
+     * @return parser
+     */
+    private Parser newParser(MappedCharStream stream) {
+        Parser parser = new Parser(this.javaccLexer ? new ParserTokenManager(stream) : new JmmLexer(stream, this.symbols));
+        parser.setSymbols(this.symbols);
+        return parser;
+    }
+
+    /**
+     * Replaces a part of some bytes
+     * @param bytes bytes
+     * @param begin first byte replaced
+     * @param end end byte replaced, exclusive
+     * @param replacement new bytes
+     * @return new bytes
+     */
+    private static byte[] replace(byte[] bytes, int begin, int end, byte[] replacement) {
+        byte[] result = new byte[bytes.length - (end - begin) + replacement.length];
+        System.arraycopy(bytes, 0, result, 0, begin);
+        System.arraycopy(replacement, 0, result, begin, replacement.length);
+        System.arraycopy(bytes, end, result, begin + replacement.length, bytes.length - end);
+        return result;
+    }
+
+    /**
+     * Check if the end of some bytes is blank
+     * @param bytes bytes
+     * @param start first byte checked
+     * @return true if every byte from start is a space, tab or new line, the blanks the lexer skips
+     */
+    private static boolean isBlank(byte[] bytes, int start) {
+        for (int i = start; i < bytes.length; i++) {
+            byte b = bytes[i];
+            if (b != ' ' && b != '\t' && b != '\r' && b != '\n')
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Get the line of the first character of a method
+     * @param region region of the method
+     * @return line of its 'p', which is never a new line
+     */
+    private static int startLine(MappedCharStream.Region region) {
+        return region.afterCR || region.afterLF ? region.line + 1 : region.line;
+    }
+
+    /**
+     * Get the column of the first character of a method
+     * @param region region of the method
+     * @return column of its 'p', which is never a new line
+     */
+    private static int startColumn(MappedCharStream.Region region) {
+        return region.afterCR || region.afterLF ? 1 : region.column + 1;
+    }
+
+    /**
+     * Compares two positions
+     * @return negative, zero or positive if the first position is before, at or after the second
+     */
+    private static int compare(int line1, int column1, int line2, int column2) {
+        return line1 != line2 ? Integer.compare(line1, line2) : Integer.compare(column1, column2);
+    }
+}
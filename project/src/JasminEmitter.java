@@ -0,0 +1,240 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * <h1>Jasmin Emitter</h1>
+ * <p>Collects the Jasmin code of a class in memory. Class
+ * level directives are appended to the class buffer, method
+ * instructions to a method buffer which is appended to the
+ * class buffer when the method is complete.</p>
+ * <p>Both buffers are reused for the whole compilation and
+ * instruction fragments (opcode and operand) are appended
+ * one by one, without building an intermediate string.</p>
+ * <p>The class buffer can be written to a file, in bulk
+ * through a FileChannel, or read as a CharSequence. A class
+ * can also be streamed: the class buffer is then drained to
+ * the output file as each method is completed, so only the
+ * code of one method is kept in memory.</p>
+ * @see CodeGenerator
+ */
+public class JasminEmitter {
+
+    /**
+     * Size of the byte buffer used to write the output file
+     */
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Jasmin code of the class
+     */
+    private final StringBuilder classBuffer;
+    /**
+     * Instructions of the method being generated
+     */
+    private final StringBuilder methodBuffer;
+    /**
+     * Output file of a streamed class, null unless streaming
+     */
+    private FileChannel stream = null;
+    /**
+     * Byte buffer used to write the output file, allocated on the first write
+     */
+    private ByteBuffer writeBuffer = null;
+
+    /**
+     * Constructor
+     * @param initialCapacity expected size of the class code, in chars
+     */
+    public JasminEmitter(int initialCapacity) {
+        this.classBuffer = new StringBuilder(initialCapacity);
+        this.methodBuffer = new StringBuilder(Math.max(initialCapacity / 4, 16));
+    }
+
+    /**
+     * Appends a class level line (directive, method header...)
+     * @param line line to append
+     */
+    public void directive(String line) {
+        this.classBuffer.append(line).append('\n');
+    }
+
+    /**
+     * Appends an instruction to the method being generated
+     * @param instruction instruction (i.e 'iadd')
+     */
+    public void instruction(String instruction) {
+        this.methodBuffer.append("   ").append(instruction).append('\n');
+    }
+
+    /**
+     * Appends an instruction with a string operand
+     * @param opcode instruction opcode (i.e 'goto')
+     * @param operand instruction operand (i.e a label)
+     */
+    public void instruction(String opcode, String operand) {
+        this.methodBuffer.append("   ").append(opcode).append(' ').append(operand).append('\n');
+    }
+
+    /**
+     * Appends an instruction with an integer operand
+     * @param opcode instruction opcode (i.e 'bipush')
+     * @param operand instruction operand
+     */
+    public void instruction(String opcode, int operand) {
+        this.methodBuffer.append("   ").append(opcode).append(' ').append(operand).append('\n');
+    }
+
+    /**
+     * Appends a short form instruction (i.e 'iload_1')
+     * @param opcode instruction opcode (i.e 'iload')
+     * @param index short form index
+     */
+    public void shortInstruction(String opcode, int index) {
+        this.methodBuffer.append("   ").append(opcode).append('_').append(index).append('\n');
+    }
+
+    /**
+     * Appends the instructions of the method being generated
+     * to the class code and clears the method buffer
+     */
+    public void flushMethod() {
+        this.classBuffer.append(this.methodBuffer);
+        this.methodBuffer.setLength(0);
+    }
+
+    /**
+     * Appends previously generated code (a whole method) to the class code
+     * @param code Jasmin code to append
+     */
+    public void append(CharSequence code) {
+        this.classBuffer.append(code);
+    }
+
+    /**
+     * Get the length of the class code
+     * @return number of chars appended so far
+     */
+    public int length() {
+        return this.classBuffer.length();
+    }
+
+    /**
+     * Getter method for the class code
+     * @return Jasmin code appended so far
+     */
+    public CharSequence getOutput() {
+        return this.classBuffer;
+    }
+
+    /**
+     * Writes the class code to a file, replacing its contents
+     * @param file output file
+     * @throws IOException if the file cannot be written
+     */
+    public void writeTo(File file) throws IOException {
+        try (FileChannel channel = open(file)) {
+            this.encode(this.classBuffer, channel);
+        }
+    }
+
+    /**
+     * Starts streaming the class code to a file, replacing its contents
+     * @param file output file
+     * @throws IOException if the file cannot be opened
+     */
+    public void openStream(File file) throws IOException {
+        this.stream = open(file);
+    }
+
+    /**
+     * Writes the class code appended so far to the streamed
+     * file and clears the class buffer
+     * @throws IOException if the file cannot be written
+     */
+    public void drain() throws IOException {
+        this.encode(this.classBuffer, this.stream);
+        this.classBuffer.setLength(0);
+    }
+
+    /**
+     * Drains the class code and closes the streamed file
+     * @throws IOException if the file cannot be written
+     */
+    public void closeStream() throws IOException {
+        try {
+            this.drain();
+        } finally {
+            this.stream.close();
+            this.stream = null;
+        }
+    }
+
+    /**
+     * Closes the streamed file without draining the class code
+     */
+    public void abortStream() {
+        if (this.stream == null)
+            return;
+        try {
+            this.stream.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        this.stream = null;
+        this.classBuffer.setLength(0);
+    }
+
+    /**
+     * Opens a file for writing, replacing its contents
+     * @param file output file
+     * @return file channel
+     * @throws IOException if the file cannot be opened
+     */
+    private static FileChannel open(File file) throws IOException {
+        return FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Encodes code as UTF-8 and writes it to a channel
+     * @param code Jasmin code
+     * @param channel output channel
+     * @throws IOException if the channel cannot be written
+     */
+    private void encode(CharSequence code, FileChannel channel) throws IOException {
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        CharBuffer chars = CharBuffer.wrap(code);
+        if (this.writeBuffer == null)
+            this.writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+        ByteBuffer bytes = this.writeBuffer;
+        CoderResult result;
+        do {
+            result = encoder.encode(chars, bytes, true);
+            writeFully(channel, bytes);
+        } while (result.isOverflow());
+        do {
+            result = encoder.flush(bytes);
+            writeFully(channel, bytes);
+        } while (result.isOverflow());
+    }
+
+    /**
+     * Writes the contents of a byte buffer to a channel and clears it
+     * @param channel output channel
+     * @param bytes buffer in write mode
+     * @throws IOException if the channel cannot be written
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer bytes) throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining())
+            channel.write(bytes);
+        bytes.clear();
+    }
+}
@@ -0,0 +1,253 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * <h1>Compilation Cache</h1>
+ * <p>On-disk cache of compiled classes. Each entry is keyed by
+ * a SHA-256 hash of the source file, the compiler version and
+ * the code generation options (instrumentation, timing and the
+ * branch profile contents), and stores the class name, its Jasmin
+ * code and the warnings of the compilation.</p>
+ * <p>On a hit the warnings are printed again and the Jasmin file
+ * is written directly, skipping parsing, semantic analysis and
+ * code generation. Only successful compilations are stored. The
+ * cache is only used with the -cache option.</p>
+ * <p>The cache is bounded in number of entries and bytes. The
+ * least recently used entries (by modification time, which is
+ * updated on every hit) are evicted first.</p>
+ * @see Main
+ */
+public class JmmCache {
+
+    /**
+     * Compiler version, part of every key
+     */
+    private static final String COMPILER_VERSION = "jmm-2";
+    /**
+     * Entry file extension
+     */
+    private static final String EXTENSION = ".jmmcache";
+    /**
+     * First int of every entry file
+     */
+    private static final int MAGIC = 0x4A4D4D43;
+    /**
+     * Default maximum number of entries
+     */
+    private static final int MAX_ENTRIES = 256;
+    /**
+     * Default maximum total size of the entries, in bytes
+     */
+    private static final long MAX_BYTES = 64L * 1024 * 1024;
+
+    /**
+     * Cache directory
+     */
+    private final File directory;
+    /**
+     * Hex key of the compilation
+     */
+    private final String key;
+    /**
+     * Maximum number of entries
+     */
+    private final int maxEntries;
+    /**
+     * Maximum total size of the entries, in bytes
+     */
+    private final long maxBytes;
+
+    /**
+     * Constructor
+     * @param directory cache directory
+     * @param source source file
+     * @param options code generation options
+     * @throws IOException if the source file cannot be read
+     */
+    public JmmCache(File directory, File source, String options) throws IOException {
+        this(directory, source, options, MAX_ENTRIES, MAX_BYTES);
+    }
+
+    /**
+     * Constructor
+     * @param directory cache directory
+     * @param source source file
+     * @param options code generation options
+     * @param maxEntries maximum number of entries
+     * @param maxBytes maximum total size of the entries, in bytes
+     * @throws IOException if the source file cannot be read
+     */
+    public JmmCache(File directory, File source, String options, int maxEntries, long maxBytes) throws IOException {
+        this.directory = directory;
+        this.key = computeKey(Files.readAllBytes(source.toPath()), options);
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Writes the cached Jasmin file of the compilation, if any,
+     * and prints the warnings of the compilation again
+     * @param outputDirectory directory of the Jasmin files
+     * @return true on a hit
+     */
+    public boolean restore(File outputDirectory) {
+        File entry = this.entryFile();
+        if (!entry.isFile())
+            return false;
+        try (DataInputStream input = new DataInputStream(new FileInputStream(entry))) {
+            if (input.readInt() != MAGIC)
+                throw new IOException("Bad cache entry " + entry.getName());
+            String className = input.readUTF();
+            byte[] code = new byte[input.readInt()];
+            input.readFully(code);
+            String[] warnings = new String[input.readInt()];
+            for (int i = 0; i < warnings.length; i++)
+                warnings[i] = input.readUTF();
+
+            for (String warning : warnings)
+                System.out.println(warning);
+            outputDirectory.mkdirs();
+            Files.write(new File(outputDirectory, className + ".j").toPath(), code);
+            // mark as recently used
+            entry.setLastModified(System.currentTimeMillis());
+            return true;
+        } catch (IOException e) {
+            // unreadable entries are compiled again
+            entry.delete();
+            return false;
+        }
+    }
+
+    /**
+     * Stores the result of the compilation and evicts the least
+     * recently used entries above the cache bounds
+     * @param className compiled class name
+     * @param code Jasmin code of the class
+     * @param warnings warnings printed by the compilation, in order
+     */
+    public void store(String className, CharSequence code, List<String> warnings) {
+        byte[] bytes = code.toString().getBytes(StandardCharsets.UTF_8);
+        this.directory.mkdirs();
+        // write to a temporary file first, so readers never see a partial entry
+        File temporary = new File(this.directory, this.key + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new FileOutputStream(temporary))) {
+            output.writeInt(MAGIC);
+            output.writeUTF(className);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+            output.writeInt(warnings.size());
+            for (String warning : warnings)
+                output.writeUTF(warning);
+        } catch (IOException e) {
+            System.err.println("WARNING: could not write cache entry: " + e.getMessage());
+            temporary.delete();
+            return;
+        }
+        File entry = this.entryFile();
+        entry.delete();
+        if (!temporary.renameTo(entry)) {
+            temporary.delete();
+            return;
+        }
+        this.evict();
+    }
+
+    /**
+     * Deletes the least recently used entries until the cache is
+     * within maxEntries and maxBytes
+     */
+    private void evict() {
+        File[] entries = this.directory.listFiles((dir, name) -> name.endsWith(EXTENSION));
+        if (entries == null)
+            return;
+        long totalBytes = 0;
+        for (File entry : entries)
+            totalBytes += entry.length();
+        if (entries.length <= this.maxEntries && totalBytes <= this.maxBytes)
+            return;
+
+        Arrays.sort(entries, Comparator.comparingLong(File::lastModified));
+        int count = entries.length;
+        for (File entry : entries) {
+            if (count <= this.maxEntries && totalBytes <= this.maxBytes)
+                break;
+            long length = entry.length();
+            if (entry.delete()) {
+                count--;
+                totalBytes -= length;
+            }
+        }
+    }
+
+    /**
+     * Get the entry file of the compilation
+     * @return entry file
+     */
+    private File entryFile() {
+        return new File(this.directory, this.key + EXTENSION);
+    }
+
+    /**
+     * Hashes the source, the compiler version and the options
+     * @param source source file contents
+     * @param options code generation options
+     * @return hex SHA-256 key
+     */
+    private static String computeKey(byte[] source, String options) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        String header = COMPILER_VERSION + '\0' + compilerBuild() + '\0' + options + '\0';
+        digest.update(header.getBytes(StandardCharsets.UTF_8));
+        digest.update(source);
+
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest())
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        return hex.toString();
+    }
+
+    /**
+     * Identifies the build of the compiler, so entries written by
+     * an older build are not used after the compiler is rebuilt
+     * @return modification time of the code generator class
+     */
+    static String compilerBuild() {
+        URL classFile = JmmCache.class.getResource("CodeGenerator.class");
+        if (classFile == null)
+            return "";
+        try {
+            return Long.toString(classFile.openConnection().getLastModified());
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    /**
+     * Reads a profile file, to be part of the options
+     * @param filename profile file
+     * @return profile contents, empty if it cannot be read
+     */
+    public static String readProfile(String filename) {
+        try {
+            return new String(Files.readAllBytes(new File(filename).toPath()), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return "";
+        }
+    }
+}
@@ -0,0 +1,335 @@
+import SymbolTable.SymbolInterner;
+
+import java.io.IOException;
+
+/**
+ * <h1>J-- Lexer</h1>
+ * <p>Hand written lexer for the tokens of Grammar.jjt. It
+ * replaces the state machine of the generated token manager
+ * with a switch on the first character of each token and a
+ * simple loop for identifiers, integers and comments.</p>
+ * <p>Keywords and punctuation use the shared images of the
+ * generated token manager. Identifiers are interned by their
+ * characters in the symbols of the compilation, so each
+ * distinct name is only turned into a String once, and their
+ * tokens carry the symbol id to the parser.</p>
+ * <p>Anything the lexer does not recognize (invalid
+ * characters, unterminated comments, a single '&') is
+ * backed up and handed to the generated token manager, so
+ * lexical errors are reported exactly as before.</p>
+ * @see ParserTokenManager
+ */
+public class JmmLexer extends ParserTokenManager {
+
+    /**
+     * Token kind of each single character symbol, 0 if none
+     */
+    private static final int[] SYMBOL_KINDS = new int[128];
+
+    static {
+        SYMBOL_KINDS['='] = ASSIGNMENT;
+        SYMBOL_KINDS['<'] = LT;
+        SYMBOL_KINDS['+'] = SUM;
+        SYMBOL_KINDS['-'] = SUB;
+        SYMBOL_KINDS['*'] = MULT;
+        SYMBOL_KINDS['!'] = NOT;
+        SYMBOL_KINDS[','] = COMMA;
+        SYMBOL_KINDS['.'] = DOT;
+        SYMBOL_KINDS[';'] = SEMI_COLON;
+        SYMBOL_KINDS['{'] = OPEN_BLOCK;
+        SYMBOL_KINDS['}'] = CLOSE_BLOCK;
+        SYMBOL_KINDS['['] = OPEN_ARRAY;
+        SYMBOL_KINDS[']'] = CLOSE_ARRAY;
+        SYMBOL_KINDS['('] = OPEN_PAR;
+        SYMBOL_KINDS[')'] = CLOSE_PAR;
+    }
+
+    /**
+     * Characters of the current identifier or integer
+     */
+    private char[] text = new char[64];
+    /**
+     * Number of characters read since the current token began
+     */
+    private int tokenLength;
+
+    /**
+     * Names of the compilation
+     */
+    private final SymbolInterner symbols;
+    /**
+     * Token kind of each keyword symbol id, 0 for other ids
+     */
+    private final int[] keywordKinds;
+
+    /**
+     * Constructor
+     * @param stream source character stream
+     * @param symbols names of the compilation, shared with the parser
+     */
+    public JmmLexer(SimpleCharStream stream, SymbolInterner symbols) {
+        super(stream);
+        this.symbols = symbols;
+        // keywords are interned too, so a single lookup tells them apart
+        int[] keywordSymbols = new int[STRING + 1];
+        int maxSymbol = 0;
+        for (int kind = IMPORT; kind <= STRING; kind++) {
+            keywordSymbols[kind] = symbols.intern(jjstrLiteralImages[kind]);
+            maxSymbol = Math.max(maxSymbol, keywordSymbols[kind]);
+        }
+        this.keywordKinds = new int[maxSymbol + 1];
+        for (int kind = IMPORT; kind <= STRING; kind++)
+            this.keywordKinds[keywordSymbols[kind]] = kind;
+    }
+
+    @Override
+    public Token getNextToken() {
+        for (;;) {
+            // skip whitespace
+            char c;
+            try {
+                do {
+                    c = this.input_stream.BeginToken();
+                } while (c == ' ' || c == '\t' || c == '\r' || c == '\n');
+            } catch (IOException e) {
+                return this.newToken(EOF, jjstrLiteralImages[EOF]);
+            }
+            this.tokenLength = 1;
+
+            if (isIdentifierStart(c))
+                return this.identifier(c);
+            if (c >= '0' && c <= '9')
+                return this.integer(c);
+
+            switch (c) {
+                case '/':
+                    int next = this.next();
+                    if (next == '/') {
+                        if (this.skipInlineComment())
+                            continue;
+                        return this.fallback();
+                    }
+                    if (next == '*') {
+                        if (this.skipBlockComment())
+                            continue;
+                        return this.fallback();
+                    }
+                    this.back(next);
+                    return this.newToken(DIV, jjstrLiteralImages[DIV]);
+                case '&':
+                    if (this.next() == '&')
+                        return this.newToken(AND, jjstrLiteralImages[AND]);
+                    return this.fallback();
+                default:
+                    int kind = c < SYMBOL_KINDS.length ? SYMBOL_KINDS[c] : 0;
+                    if (kind != 0)
+                        return this.newToken(kind, jjstrLiteralImages[kind]);
+                    return this.fallback();
+            }
+        }
+    }
+
+    /**
+     * Reads an identifier or keyword
+     * @param first first character
+     * @return IDENTIFIER or keyword token
+     */
+    private Token identifier(char first) {
+        int length = 0;
+        int hash = 0;
+        int c = first;
+        do {
+            if (length == this.text.length)
+                this.growText();
+            this.text[length++] = (char) c;
+            hash = 31 * hash + c;
+            c = this.next();
+        } while (c >= 0 && (isIdentifierStart((char) c) || (c >= '0' && c <= '9')));
+        this.back(c);
+
+        int symbol = this.symbols.intern(this.text, length, hash);
+        int kind = symbol < this.keywordKinds.length ? this.keywordKinds[symbol] : 0;
+        if (kind != 0)
+            return this.newToken(kind, jjstrLiteralImages[kind]);
+        // the parser reads the symbol id from the token
+        return this.setPosition(new SymbolToken(this.symbols.name(symbol), symbol));
+    }
+
+    /**
+     * Reads a binary, octal, decimal or hexadecimal integer
+     * @param first first digit
+     * @return INTEGER token
+     */
+    private Token integer(char first) {
+        int length = 0;
+        this.text[length++] = first;
+        int c = this.next();
+
+        if (first == '0' && (c == 'b' || c == 'B' || c == 'x' || c == 'X')) {
+            boolean binary = c == 'b' || c == 'B';
+            int digit = this.next();
+            // a prefix without digits is the octal 0 followed by an identifier
+            if (!(binary ? isBinaryDigit(digit) : isHexDigit(digit))) {
+                this.back(digit);
+                this.back(c);
+                return this.newToken(INTEGER, "0");
+            }
+            this.text[length++] = (char) c;
+            c = digit;
+            do {
+                if (length == this.text.length)
+                    this.growText();
+                this.text[length++] = (char) c;
+                c = this.next();
+            } while (binary ? isBinaryDigit(c) : isHexDigit(c));
+        }
+        else {
+            // octal digits after a leading 0, decimal digits otherwise
+            char last = first == '0' ? '7' : '9';
+            while (c >= '0' && c <= last) {
+                if (length == this.text.length)
+                    this.growText();
+                this.text[length++] = (char) c;
+                c = this.next();
+            }
+        }
+        this.back(c);
+        return this.newToken(INTEGER, new String(this.text, 0, length));
+    }
+
+    /**
+     * Skips an inline comment, after its '//'
+     * @return false if the file ends before the end of the line
+     */
+    private boolean skipInlineComment() {
+        int c;
+        do {
+            c = this.next();
+            if (c < 0)
+                return false;
+        } while (c != '\n' && c != '\r');
+        // "\r\n" ends the comment as a single line break
+        if (c == '\r') {
+            int next = this.next();
+            if (next != '\n')
+                this.back(next);
+        }
+        return true;
+    }
+
+    /**
+     * Skips a block comment, after its '/*'
+     * @return false if the file ends before the comment is closed
+     */
+    private boolean skipBlockComment() {
+        // the grammar only closes a comment on a '/' right after
+        // the first '*' of a run, i.e '**/' does not close it
+        boolean afterStar = false;
+        for (;;) {
+            int c = this.next();
+            if (c < 0)
+                return false;
+            if (afterStar) {
+                if (c == '/')
+                    return true;
+                afterStar = false;
+            }
+            else if (c == '*') {
+                afterStar = true;
+            }
+        }
+    }
+
+    /**
+     * Backs up the current token and reads it with the generated token manager
+     * @return token (or TokenMgrError) of the generated token manager
+     */
+    private Token fallback() {
+        this.input_stream.backup(this.tokenLength);
+        return super.getNextToken();
+    }
+
+    /**
+     * Reads the next character of the current token
+     * @return next character, -1 at the end of the file
+     */
+    private int next() {
+        try {
+            char c = this.input_stream.readChar();
+            this.tokenLength++;
+            return c;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Backs up a character read by next, unless it is the end of the file
+     * @param c character returned by next
+     */
+    private void back(int c) {
+        if (c >= 0) {
+            this.input_stream.backup(1);
+            this.tokenLength--;
+        }
+    }
+
+    /**
+     * Builds a token with the position of the current token
+     * @param kind token kind
+     * @param image token image
+     * @return new token
+     */
+    private Token newToken(int kind, String image) {
+        return this.setPosition(Token.newToken(kind, image));
+    }
+
+    /**
+     * Sets the position of a token to the position of the current token
+     * @param token new token
+     * @return the token
+     */
+    private Token setPosition(Token token) {
+        token.beginLine = this.input_stream.getBeginLine();
+        token.beginColumn = this.input_stream.getBeginColumn();
+        token.endLine = this.input_stream.getEndLine();
+        token.endColumn = this.input_stream.getEndColumn();
+        return token;
+    }
+
+    /**
+     * Doubles the size of the text buffer
+     */
+    private void growText() {
+        char[] newText = new char[this.text.length * 2];
+        System.arraycopy(this.text, 0, newText, 0, this.text.length);
+        this.text = newText;
+    }
+
+    /**
+     * Checks if a character can start an identifier
+     * @param c character
+     * @return true for '$', '_' and ASCII letters
+     */
+    private static boolean isIdentifierStart(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == '$';
+    }
+
+    /**
+     * Checks if a character is a binary digit
+     * @param c character, -1 at the end of the file
+     * @return true for '0' and '1'
+     */
+    private static boolean isBinaryDigit(int c) {
+        return c == '0' || c == '1';
+    }
+
+    /**
+     * Checks if a character is a hexadecimal digit
+     * @param c character, -1 at the end of the file
+     * @return true for digits and 'a'-'f' in either case
+     */
+    private static boolean isHexDigit(int c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+}
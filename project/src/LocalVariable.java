@@ -0,0 +1,79 @@
+import SymbolTable.JmmType;
+
+/**
+ * <h1>Local Variable</h1>
+ * <p>A local variable (or parameter) of the method being
+ * generated: its JVM local variable slot, its type and,
+ * if it only holds an integer literal, its constant value.</p>
+ * @see CodeGenerator
+ */
+public class LocalVariable {
+
+    /**
+     * JVM local variable index
+     */
+    private final int slot;
+    /**
+     * Variable type
+     */
+    private final JmmType type;
+    /**
+     * True if loads can be replaced by the constant value
+     */
+    private boolean constant = false;
+    /**
+     * Constant value, only valid if constant is true
+     */
+    private int constantValue;
+
+    /**
+     * Constructor
+     * @param slot JVM local variable index
+     * @param type variable type
+     */
+    public LocalVariable(int slot, JmmType type) {
+        this.slot = slot;
+        this.type = type;
+    }
+
+    /**
+     * Getter method for slot
+     * @return JVM local variable index
+     */
+    public int getSlot() {
+        return slot;
+    }
+
+    /**
+     * Getter method for type
+     * @return variable type
+     */
+    public JmmType getType() {
+        return type;
+    }
+
+    /**
+     * Returns true if the variable holds a constant value
+     * @return constant flag
+     */
+    public boolean isConstant() {
+        return constant;
+    }
+
+    /**
+     * Getter method for constant value
+     * @return constant value
+     */
+    public int getConstantValue() {
+        return constantValue;
+    }
+
+    /**
+     * Sets the constant value of the variable
+     * @param value constant value
+     */
+    public void setConstantValue(int value) {
+        this.constant = true;
+        this.constantValue = value;
+    }
+}
@@ -1,6 +1,9 @@
 import Exceptions.SemanticErrorException;
+import SymbolTable.SymbolInterner;
 import SymbolTable.SymbolTable;
 
+import java.util.ArrayList;
+
 /**
  * <h1>J-- Compiler</h1>
  *
@@ -21,6 +24,15 @@ import SymbolTable.SymbolTable;
  */
 public class Main {
 
+	/**
+	 * Directory of the generated Jasmin files
+	 */
+	private static final String OUTPUT_DIRECTORY = "out/";
+	/**
+	 * Directory of the compilation cache
+	 */
+	private static final String CACHE_DIRECTORY = ".jmmcache/";
+
 	/**
 	 * J-- Compiler main method
 	 * @param args command line arguments
@@ -28,16 +40,80 @@ public class Main {
 	 */
 	public static void main(String[] args) throws Exception {
 		// validate arguments
-		if (args.length > 2) {
-			System.err.println("Wrong number of arguments, expected: <file.jmm> [ <debug> ]");
+		if (args.length < 1) {
+			System.err.println("Wrong number of arguments, expected: <file.jmm> [ <debug> ] [ -instrument ] [ -branch-profile=<file.prof> ] [ -time ] [ -javacc-lexer ] [ -cache ] [ -incremental ] [ -parallel ] [ -stream ] [ -flat ]");
 		}
 		boolean debug = false;
-		if (args.length == 2)
-			debug = Boolean.parseBoolean(args[1]);
+		boolean instrument = false;
+		String branchProfile = null;
+		boolean time = false;
+		boolean javaccLexer = false;
+		boolean useCache = false;
+		boolean incremental = false;
+		boolean parallel = false;
+		boolean stream = false;
+		boolean flat = false;
+		for (int i = 1; i < args.length; i++) {
+			if (args[i].equals("-instrument"))
+				instrument = true;
+			else if (args[i].equals("-time"))
+				time = true;
+			else if (args[i].equals("-javacc-lexer"))
+				javaccLexer = true;
+			else if (args[i].equals("-cache"))
+				useCache = true;
+			else if (args[i].equals("-incremental"))
+				incremental = true;
+			else if (args[i].equals("-parallel"))
+				parallel = true;
+			else if (args[i].equals("-stream"))
+				stream = true;
+			else if (args[i].equals("-flat"))
+				flat = true;
+			else if (args[i].startsWith("-branch-profile="))
+				branchProfile = args[i].substring("-branch-profile=".length());
+			else
+				debug = Boolean.parseBoolean(args[i]);
+		}
+
+		// ***** Compilation Cache
+		// with -cache, unchanged sources compiled with the same options are not compiled again
+		// (debug mode always compiles, to dump the tree and table)
+		JmmCache cache = null;
+		if (useCache && !debug) {
+			String options = "instrument=" + instrument + ";time=" + time
+					+ ";branch-profile=" + (branchProfile == null ? "" : JmmCache.readProfile(branchProfile));
+			try {
+				cache = new JmmCache(new java.io.File(CACHE_DIRECTORY), new java.io.File(args[0]), options);
+				if (cache.restore(new java.io.File(OUTPUT_DIRECTORY)))
+					return;
+			}
+			catch (java.io.IOException e) {
+				// unreadable source, reported by the parser
+				cache = null;
+			}
+		}
+
+		// ***** Streaming Compilation
+		// compile one method at a time instead of keeping the whole tree
+		// (methods are compiled in order, not incrementally or in parallel)
+		if (stream) {
+			compileStreaming(args[0], javaccLexer, debug, instrument, time, branchProfile);
+			return;
+		}
+
+		// ***** Flat Compilation
+		// parse once into a flat AST, materializing one method at a time
+		if (flat) {
+			compileFlat(args[0], javaccLexer, debug, instrument, time, branchProfile);
+			return;
+		}
 
 		// ***** Syntactical Analysis
+		// names of the compilation, shared by every phase
+		SymbolInterner symbols = new SymbolInterner();
 		// get root of Syntax Tree
-		SimpleNode root = parse(args[0]);
+		SimpleNode root = parse(args[0], javaccLexer, parallel, symbols);
 		// Print tree to console
 		if (debug) {
 			System.out.println("\n==== Dumping Syntax Tree ====\n");
@@ -46,7 +122,7 @@ public class Main {
 
 		// ***** Semantic Analysis
 		// build symbol table
-		SymbolTableBuilder tableBuilder = new SymbolTableBuilder(root);
+		SymbolTableBuilder tableBuilder = new SymbolTableBuilder(root, symbols);
 		SymbolTable symbolTable = tableBuilder.buildSymbolTable();
 		// dump table in debug mode
 		if (debug) {
@@ -55,33 +131,201 @@ public class Main {
 		}
 		// analyse
 		SemanticAnalyser semanticAnalyser = new SemanticAnalyser(symbolTable, tableBuilder.getNumErrors());
-		boolean noErrors = semanticAnalyser.analise(root);
+		// only analyse and generate the methods changed since the last compilation
+		// (counters and timing tables are numbered across methods, so not with those)
+		IncrementalCompiler incrementalCompiler = null;
+		if (incremental && !instrument && !time && branchProfile == null)
+			incrementalCompiler = new IncrementalCompiler(new java.io.File(CACHE_DIRECTORY), symbolTable, root);
+		boolean noErrors;
+		if (incrementalCompiler != null)
+			noErrors = incrementalCompiler.analise(semanticAnalyser);
+		// analyse the methods on all cores
+		else if (parallel)
+			noErrors = semanticAnalyser.analiseInParallel(root);
+		else
+			noErrors = semanticAnalyser.analise(root);
 		if (!noErrors)
 			throw new SemanticErrorException("Semantic Errors found");
 
 		// ***** Code Generation
 		//generate code
 		CodeGenerator codeGenerator = new CodeGenerator(symbolTable,root);
+		// count branch executions in the generated code
+		codeGenerator.setInstrumented(instrument);
+		// time every method and print a profile when main exits
+		codeGenerator.setTimed(time);
+		// lay out branches using the counts of an instrumented run
+		if (branchProfile != null)
+			codeGenerator.useBranchProfile(branchProfile);
+		// generate the methods on all cores
+		codeGenerator.setParallel(parallel);
+		if (incrementalCompiler != null)
+			incrementalCompiler.prepare(codeGenerator);
 		codeGenerator.generateCode();
+		if (cache != null) {
+			ArrayList<String> warnings = new ArrayList<>(tableBuilder.getWarnings());
+			warnings.addAll(semanticAnalyser.getWarnings());
+			cache.store(symbolTable.getClassName(), codeGenerator.getOutput(), warnings);
+		}
+		if (incrementalCompiler != null) {
+			incrementalCompiler.store(codeGenerator.getMethodCode());
+			if (debug)
+				System.out.println("\n==== Incremental: " + incrementalCompiler.getAnalysedCount() + " methods analysed, "
+						+ incrementalCompiler.getReusedCount() + " reused ====\n");
+		}
+	}
+
+	/**
+	 * Compiles a file one method at a time: the signatures are scanned
+	 * first to build the symbol table, then each method is parsed,
+	 * analysed, generated and released before the next one is parsed.
+	 * The code is not kept in memory, so it is not stored in the cache.
+	 * @param filename name of the .jmm file
+	 * @param javaccLexer use the generated token manager instead of JmmLexer
+	 * @param debug dump the signature tree and the symbol table
+	 * @param instrument count branch executions
+	 * @param time time every method
+	 * @param branchProfile branch counts of an instrumented run, null if none
+	 * @throws Exception
+	 */
+	private static void compileStreaming(String filename, boolean javaccLexer, boolean debug,
+										 boolean instrument, boolean time, String branchProfile) throws Exception {
+		// ***** Signature Scan
+		SymbolInterner symbols = new SymbolInterner();
+		Parser scanner = newParser(filename, javaccLexer, symbols);
+		if (scanner == null)
+			return;
+		// imports, attributes and method signatures, without the method statements
+		SimpleNode signatures;
+		try {
+			signatures = scanner.scanSignatures();
+		}
+		catch (ParseException e) {
+			// statements were skipped by matching braces: parse the
+			// whole file to report the syntax errors where they are
+			newParser(filename, javaccLexer, symbols).parse((Parser.MethodListener) null);
+			throw e;
+		}
+		if (debug) {
+			System.out.println("\n==== Dumping Signature Tree ====\n");
+			signatures.dump("");
+		}
+		SymbolTableBuilder tableBuilder = new SymbolTableBuilder(signatures, symbols);
+		SymbolTable symbolTable = tableBuilder.buildSymbolTable();
+		if (debug) {
+			System.out.println("\n==== Dumping SymbolTable ====\n");
+			symbolTable.dump();
+		}
+
+		// ***** Method Pipeline
+		SemanticAnalyser semanticAnalyser = new SemanticAnalyser(symbolTable, tableBuilder.getNumErrors());
+		CodeGenerator codeGenerator = new CodeGenerator(symbolTable, signatures);
+		codeGenerator.setInstrumented(instrument);
+		codeGenerator.setTimed(time);
+		if (branchProfile != null)
+			codeGenerator.useBranchProfile(branchProfile);
+		StreamingCompiler compiler = new StreamingCompiler(signatures, semanticAnalyser, codeGenerator);
+		if (!compiler.compile(newParser(filename, javaccLexer, symbols)))
+			throw new SemanticErrorException("Semantic Errors found");
+		if (debug)
+			System.out.println("\n==== Streaming: " + compiler.getMethodCount() + " methods compiled ====\n");
+	}
+
+	/**
+	 * Compiles a file parsed into a flat AST: every method is flattened
+	 * as soon as it is parsed, the symbol table is built from the
+	 * method signatures, and each method is materialized, analysed,
+	 * generated and released before the next one. The code is not
+	 * kept in memory, so it is not stored in the cache.
+	 * @param filename name of the .jmm file
+	 * @param javaccLexer use the generated token manager instead of JmmLexer
+	 * @param debug dump the signature tree and the symbol table
+	 * @param instrument count branch executions
+	 * @param time time every method
+	 * @param branchProfile branch counts of an instrumented run, null if none
+	 * @throws Exception
+	 */
+	private static void compileFlat(String filename, boolean javaccLexer, boolean debug,
+									boolean instrument, boolean time, String branchProfile) throws Exception {
+		// ***** Syntactical Analysis
+		SymbolInterner symbols = new SymbolInterner();
+		Parser parser = newParser(filename, javaccLexer, symbols);
+		if (parser == null)
+			return;
+		FlatAST ast = new FlatAST(1024);
+		SimpleNode signatures = parser.parseFlat(ast);
+		ast.trim();
+		// the methods were left out of the tree: add their signatures back
+		ast.addSignatures(signatures);
+		if (debug) {
+			System.out.println("\n==== Dumping Signature Tree ====\n");
+			signatures.dump("");
+		}
+
+		// ***** Semantic Analysis and Code Generation
+		SymbolTableBuilder tableBuilder = new SymbolTableBuilder(signatures, symbols);
+		SymbolTable symbolTable = tableBuilder.buildSymbolTable();
+		if (debug) {
+			System.out.println("\n==== Dumping SymbolTable ====\n");
+			symbolTable.dump();
+		}
+		SemanticAnalyser semanticAnalyser = new SemanticAnalyser(symbolTable, tableBuilder.getNumErrors());
+		CodeGenerator codeGenerator = new CodeGenerator(symbolTable, signatures);
+		codeGenerator.setInstrumented(instrument);
+		codeGenerator.setTimed(time);
+		if (branchProfile != null)
+			codeGenerator.useBranchProfile(branchProfile);
+		if (!new StreamingCompiler(signatures, semanticAnalyser, codeGenerator).compile(ast))
+			throw new SemanticErrorException("Semantic Errors found");
+		if (debug)
+			System.out.println("\n==== Flat: " + ast.size() + " nodes, " + ast.getMethodCount() + " methods compiled ====\n");
 	}
 
 	/**
 	 * Parses the file whose name is passed as argument
 	 * @param filename name of the .jmm file
+	 * @param javaccLexer use the generated token manager instead of JmmLexer
+	 * @param parallel parse the methods of the class on all cores
+	 * @param symbols names of the compilation, filled while parsing
 	 * @return Root node of the built Abstract Syntax Tree (AST)
 	 * @throws ParseException
 	 */
-	private static SimpleNode parse(String filename) throws ParseException {
+	private static SimpleNode parse(String filename, boolean javaccLexer, boolean parallel, SymbolInterner symbols) throws ParseException {
+		if (parallel) {
+			try {
+				return new ParallelParser(new java.io.File(filename), javaccLexer, symbols).parse();
+			}
+			catch (java.io.IOException e) {
+				System.out.println("ERROR: file " + filename + " not found.");
+				return null;
+			}
+		}
+		Parser parser = newParser(filename, javaccLexer, symbols);
+		if (parser == null)
+			return null;
+		// parse and return root node
+		return parser.parse();
+	}
+
+	/**
+	 * Creates a parser of the file whose name is passed as argument
+	 * @param filename name of the .jmm file
+	 * @param javaccLexer use the generated token manager instead of JmmLexer
+	 * @param symbols names of the compilation, filled while parsing
+	 * @return parser, null if the file cannot be read
+	 */
+	private static Parser newParser(String filename, boolean javaccLexer, SymbolInterner symbols) {
 		Parser parser;
-		// open file as input stream
+		// map file into memory
 		try {
-			parser = new Parser(new java.io.FileInputStream(filename));
+			MappedCharStream stream = new MappedCharStream(new java.io.File(filename));
+			parser = new Parser(javaccLexer ? new ParserTokenManager(stream) : new JmmLexer(stream, symbols));
+			parser.setSymbols(symbols);
 		}
-		catch (java.io.FileNotFoundException e) {
+		catch (java.io.IOException e) {
 			System.out.println("ERROR: file " + filename + " not found.");
 			return null;
 		}
-		// parse and return root node
-		return parser.parse();
+		return parser;
 	}
-}
\ No newline at end of file
+}
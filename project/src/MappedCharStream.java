@@ -0,0 +1,397 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * <h1>Mapped Char Stream</h1>
+ * <p>Character stream for the token manager which reads the
+ * source file through a memory mapped buffer instead of a
+ * Reader, so the file is not copied into intermediate char
+ * buffers.</p>
+ * <p>Characters are decoded from UTF-8 one at a time, as the
+ * token manager reads them (ASCII takes a single comparison).
+ * Only the characters of the current token are kept, with
+ * their line and column, so they can be backed up and turned
+ * into the token image. The arrays are compacted each time a
+ * new token begins.</p>
+ * <p>A stream can also read some regions of a file only (i.e
+ * a single method), keeping the positions of the whole file.</p>
+ * @see SimpleCharStream
+ */
+public class MappedCharStream extends SimpleCharStream {
+
+    /**
+     * Initial size of the token character arrays
+     */
+    private static final int INITIAL_TOKEN_SIZE = 256;
+
+    /**
+     * Source file contents, or the region being read
+     */
+    private ByteBuffer source;
+    /**
+     * Regions of the file to read after the current one, null if
+     * the whole file is read
+     */
+    private Region[] regions = null;
+    /**
+     * Index of the next region to read
+     */
+    private int nextRegion = 0;
+    /**
+     * Characters read since the current token began
+     */
+    private char[] chars = new char[INITIAL_TOKEN_SIZE];
+    /**
+     * Line of each character in chars
+     */
+    private int[] lines = new int[INITIAL_TOKEN_SIZE];
+    /**
+     * Column of each character in chars
+     */
+    private int[] columns = new int[INITIAL_TOKEN_SIZE];
+    /**
+     * Number of characters in chars (read, or read and backed up)
+     */
+    private int count = 0;
+    /**
+     * Index of the last character returned by readChar
+     */
+    private int index = -1;
+    /**
+     * Index of the first character of the current token
+     */
+    private int begin = 0;
+    /**
+     * Low surrogate of a 4 byte UTF-8 character, returned by the next read
+     */
+    private char pendingLowSurrogate = 0;
+
+    /**
+     * Part of a source file, with the line and column state of
+     * the stream before its first byte, so its tokens get their
+     * positions in the whole file
+     */
+    public static final class Region {
+        /**
+         * First byte and end (exclusive) byte of the region
+         */
+        final int start;
+        final int end;
+        /**
+         * Line and column of the character before the region
+         */
+        final int line;
+        final int column;
+        /**
+         * True if the character before the region is a carriage return
+         */
+        final boolean afterCR;
+        /**
+         * True if the character before the region is a line feed
+         */
+        final boolean afterLF;
+
+        /**
+         * Constructor
+         * @param start first byte of the region
+         * @param end end byte of the region, exclusive
+         * @param line line of the character before the region (1 at the start of the file)
+         * @param column column of the character before the region (0 at the start of the file)
+         * @param afterCR true if the character before the region is a carriage return
+         * @param afterLF true if the character before the region is a line feed
+         */
+        public Region(int start, int end, int line, int column, boolean afterCR, boolean afterLF) {
+            this.start = start;
+            this.end = end;
+            this.line = line;
+            this.column = column;
+            this.afterCR = afterCR;
+            this.afterLF = afterLF;
+        }
+    }
+
+    /**
+     * Constructor
+     * @param file source file
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public MappedCharStream(File file) throws IOException {
+        // the Reader based buffers of SimpleCharStream are not used
+        super(new StringReader(""), 1, 1, 1);
+        this.source = map(file);
+    }
+
+    /**
+     * Constructor of a stream which reads some regions of a file,
+     * one after the other
+     * @param file source file contents, see map
+     * @param regions regions to read, in order
+     */
+    public MappedCharStream(ByteBuffer file, Region... regions) {
+        super(new StringReader(""), 1, 1, 1);
+        // each stream reads its own view of the contents, starting empty
+        this.source = file.duplicate();
+        this.source.limit(0);
+        this.regions = regions;
+    }
+
+    /**
+     * Maps a source file into memory
+     * @param file source file
+     * @return file contents
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public static MappedByteBuffer map(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Starts reading the next region of the file
+     */
+    private void nextRegion() {
+        Region region = this.regions[this.nextRegion++];
+        this.source.limit(region.end);
+        this.source.position(region.start);
+        this.line = region.line;
+        this.column = region.column;
+        this.prevCharIsCR = region.afterCR;
+        this.prevCharIsLF = region.afterLF;
+    }
+
+    @Override
+    public char BeginToken() throws IOException {
+        // drop the characters of the previous tokens, keeping those backed up
+        int unread = this.count - this.index - 1;
+        if (this.index >= 0 && unread > 0) {
+            System.arraycopy(this.chars, this.index + 1, this.chars, 0, unread);
+            System.arraycopy(this.lines, this.index + 1, this.lines, 0, unread);
+            System.arraycopy(this.columns, this.index + 1, this.columns, 0, unread);
+        }
+        // keep the last character, it holds the position reported at end of file
+        if (this.index >= 0 && unread == 0) {
+            this.chars[0] = this.chars[this.index];
+            this.lines[0] = this.lines[this.index];
+            this.columns[0] = this.columns[this.index];
+            this.count = 1;
+            this.index = 0;
+        }
+        else {
+            this.count = Math.max(unread, 0);
+            this.index = -1;
+        }
+        this.begin = this.index + 1;
+
+        try {
+            return this.readChar();
+        } catch (IOException e) {
+            // end of file: the token is the last character
+            this.begin = Math.max(this.index, 0);
+            throw e;
+        }
+    }
+
+    @Override
+    public char readChar() throws IOException {
+        // backed up character
+        if (this.index + 1 < this.count)
+            return this.chars[++this.index];
+
+        char c = this.decodeChar();
+        if (this.count == this.chars.length)
+            this.grow();
+        this.chars[this.count] = c;
+        this.updateLineColumn(c);
+        this.lines[this.count] = this.line;
+        this.columns[this.count] = this.column;
+        this.index = this.count++;
+        return c;
+    }
+
+    /**
+     * Advances the line and column to a character, the same way
+     * SimpleCharStream does (its version also writes the Reader buffers)
+     * @param c character read
+     */
+    private void updateLineColumn(char c) {
+        this.column++;
+
+        if (this.prevCharIsLF) {
+            this.prevCharIsLF = false;
+            this.line += (this.column = 1);
+        }
+        else if (this.prevCharIsCR) {
+            this.prevCharIsCR = false;
+            if (c == '\n')
+                this.prevCharIsLF = true;
+            else
+                this.line += (this.column = 1);
+        }
+
+        switch (c) {
+            case '\r':
+                this.prevCharIsCR = true;
+                break;
+            case '\n':
+                this.prevCharIsLF = true;
+                break;
+            case '\t':
+                this.column--;
+                this.column += (this.tabSize - (this.column % this.tabSize));
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Decodes the next character of the source file
+     * @return next character
+     * @throws IOException at the end of the file
+     */
+    private char decodeChar() throws IOException {
+        if (this.pendingLowSurrogate != 0) {
+            char c = this.pendingLowSurrogate;
+            this.pendingLowSurrogate = 0;
+            return c;
+        }
+        if (this.source == null)
+            throw new IOException("End of file");
+        while (!this.source.hasRemaining() && this.regions != null && this.nextRegion < this.regions.length)
+            this.nextRegion();
+        if (!this.source.hasRemaining())
+            throw new IOException("End of file");
+
+        int b = this.source.get();
+        // ASCII
+        if (b >= 0)
+            return (char) b;
+
+        // multi byte UTF-8 sequence
+        int length;
+        int codePoint;
+        if ((b & 0xE0) == 0xC0) {
+            length = 1;
+            codePoint = b & 0x1F;
+        }
+        else if ((b & 0xF0) == 0xE0) {
+            length = 2;
+            codePoint = b & 0x0F;
+        }
+        else if ((b & 0xF8) == 0xF0) {
+            length = 3;
+            codePoint = b & 0x07;
+        }
+        else {
+            return '\uFFFD';
+        }
+        for (int i = 0; i < length; i++) {
+            if (!this.source.hasRemaining())
+                return '\uFFFD';
+            int next = this.source.get();
+            if ((next & 0xC0) != 0x80)
+                return '\uFFFD';
+            codePoint = (codePoint << 6) | (next & 0x3F);
+        }
+        if (Character.isBmpCodePoint(codePoint))
+            return (char) codePoint;
+        this.pendingLowSurrogate = Character.lowSurrogate(codePoint);
+        return Character.highSurrogate(codePoint);
+    }
+
+    /**
+     * Doubles the size of the token character arrays
+     */
+    private void grow() {
+        int size = this.chars.length * 2;
+        char[] newChars = new char[size];
+        int[] newLines = new int[size];
+        int[] newColumns = new int[size];
+        System.arraycopy(this.chars, 0, newChars, 0, this.count);
+        System.arraycopy(this.lines, 0, newLines, 0, this.count);
+        System.arraycopy(this.columns, 0, newColumns, 0, this.count);
+        this.chars = newChars;
+        this.lines = newLines;
+        this.columns = newColumns;
+    }
+
+    @Override
+    public void backup(int amount) {
+        this.index -= amount;
+    }
+
+    @Override
+    public String GetImage() {
+        return new String(this.chars, this.begin, this.index - this.begin + 1);
+    }
+
+    @Override
+    public char[] GetSuffix(int len) {
+        char[] suffix = new char[len];
+        System.arraycopy(this.chars, this.index - len + 1, suffix, 0, len);
+        return suffix;
+    }
+
+    @Override
+    @Deprecated
+    public int getColumn() {
+        return this.getEndColumn();
+    }
+
+    @Override
+    @Deprecated
+    public int getLine() {
+        return this.getEndLine();
+    }
+
+    @Override
+    public int getEndColumn() {
+        return this.index < 0 ? this.column : this.columns[this.index];
+    }
+
+    @Override
+    public int getEndLine() {
+        return this.index < 0 ? this.line : this.lines[this.index];
+    }
+
+    @Override
+    public int getBeginColumn() {
+        return this.begin >= this.count ? this.column : this.columns[this.begin];
+    }
+
+    @Override
+    public int getBeginLine() {
+        return this.begin >= this.count ? this.line : this.lines[this.begin];
+    }
+
+    @Override
+    public void adjustBeginLineColumn(int newLine, int newCol) {
+        if (this.begin >= this.count)
+            return;
+        int lineShift = newLine - this.lines[this.begin];
+        int columnShift = newCol - this.columns[this.begin];
+        int firstLine = this.lines[this.begin];
+        for (int i = this.begin; i < this.count; i++) {
+            // columns only move on the first line of the token
+            if (this.lines[i] == firstLine)
+                this.columns[i] += columnShift;
+            this.lines[i] += lineShift;
+        }
+        this.line = this.lines[this.count - 1];
+        this.column = this.columns[this.count - 1];
+    }
+
+    @Override
+    public void Done() {
+        this.source = null;
+        this.chars = null;
+        this.lines = null;
+        this.columns = null;
+    }
+}
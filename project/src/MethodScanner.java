@@ -0,0 +1,330 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+/**
+ * <h1>Method Scanner</h1>
+ * <p>Finds the methods of a class body in the bytes of a source, without
+ * tokenizing it: each 'public' at brace depth 1 up to the '}' closing its
+ * body, skipping the inline and block comments. While scanning it keeps
+ * the line and column state a char stream would have, so each region
+ * found can be parsed on its own with the positions of the whole file.</p>
+ * @see MappedCharStream.Region
+ */
+public class MethodScanner {
+
+    /**
+     * Source contents
+     */
+    private final ByteBuffer source;
+
+    /**
+     * Tab size of the char streams
+     */
+    private final int tabSize;
+
+    /**
+     * Regions of the methods found by the last scan, in source order
+     */
+    private final ArrayList<MappedCharStream.Region> methods = new ArrayList<>();
+
+    /**
+     * Region after each method, up to the end of the scan, with the
+     * line and column state of the '}' closing the method
+     */
+    private final ArrayList<MappedCharStream.Region> regionsAfter = new ArrayList<>();
+
+    /**
+     * Line and column state of the scan, the same
+     * SimpleCharStream keeps (of the last character read)
+     */
+    private int line = 1;
+    private int column = 0;
+    private boolean prevCharIsCR = false;
+    private boolean prevCharIsLF = false;
+
+    /**
+     * Constructor
+     * @param source source contents
+     */
+    public MethodScanner(ByteBuffer source) {
+        this.source = source;
+        this.tabSize = new MappedCharStream(source).getTabSize();
+    }
+
+    /**
+     * Getter method for the methods found
+     * @return regions of the methods found by the last scan, empty if the braces are not balanced
+     */
+    public ArrayList<MappedCharStream.Region> getMethods() {
+        return this.methods;
+    }
+
+    /**
+     * Get the region after a method
+     * @param method index of the method
+     * @return region from the end of the method to the end of the scan,
+     * with the line and column of the '}' closing the method
+     */
+    public MappedCharStream.Region getRegionAfter(int method) {
+        return this.regionsAfter.get(method);
+    }
+
+    /**
+     * Finds the methods of a region: from each 'public' at brace depth 1
+     * to the '}' that closes the method body. Braces in comments are
+     * skipped. Nothing is found if the braces of the region are not
+     * balanced.
+     * @param region region scanned, with the line and column state before it
+     * @param depth brace depth at the start of the region (0 for a whole
+     *              file, 1 for a part of a class body)
+     */
+    public void scan(MappedCharStream.Region region, int depth) {
+        this.methods.clear();
+        this.regionsAfter.clear();
+        this.setState(region);
+
+        int size = region.end;
+        int initialDepth = depth;
+        int methodStart = -1;
+        int methodLine = 0, methodColumn = 0;
+        boolean methodAfterCR = false, methodAfterLF = false;
+
+        int i = region.start;
+        while (i < size) {
+            byte b = this.source.get(i);
+            // inline comment, up to the end of the line
+            if (b == '/' && i + 1 < size && this.source.get(i + 1) == '/') {
+                while (i < size && this.source.get(i) != '\n' && this.source.get(i) != '\r')
+                    i = this.advance(i);
+                continue;
+            }
+            // block comment
+            if (b == '/' && i + 1 < size && this.source.get(i + 1) == '*') {
+                i = this.skipBlockComment(i, size);
+                // unterminated comment
+                if (i < 0) {
+                    depth = -1;
+                    break;
+                }
+                continue;
+            }
+            if (b == '{') {
+                depth++;
+            }
+            else if (b == '}') {
+                depth--;
+                // end of a method body
+                if (depth == 1 && methodStart != -1) {
+                    i = this.advance(i);
+                    this.methods.add(new MappedCharStream.Region(methodStart, i, methodLine, methodColumn, methodAfterCR, methodAfterLF));
+                    this.regionsAfter.add(new MappedCharStream.Region(i, size, this.line, this.column, this.prevCharIsCR, this.prevCharIsLF));
+                    methodStart = -1;
+                    continue;
+                }
+                if (depth < 0)
+                    break;
+            }
+            else if (depth == 1 && methodStart == -1 && this.isKeyword(i, "public", region)) {
+                methodStart = i;
+                methodLine = this.line;
+                methodColumn = this.column;
+                methodAfterCR = this.prevCharIsCR;
+                methodAfterLF = this.prevCharIsLF;
+            }
+            i = this.advance(i);
+        }
+
+        // every method must be closed, and every block too
+        if (depth != initialDepth || methodStart != -1) {
+            this.methods.clear();
+            this.regionsAfter.clear();
+        }
+    }
+
+    /**
+     * Check if a region only has blanks and comments, the
+     * text the lexer skips
+     * @param region region
+     * @return true if the region has no tokens
+     */
+    public boolean isBlank(MappedCharStream.Region region) {
+        int size = region.end;
+        int i = region.start;
+        while (i < size) {
+            byte b = this.source.get(i);
+            if (b == ' ' || b == '\t' || b == '\r' || b == '\n') {
+                i++;
+            }
+            // inline comment, which has to end with a new line
+            else if (b == '/' && i + 1 < size && this.source.get(i + 1) == '/') {
+                while (i < size && this.source.get(i) != '\n' && this.source.get(i) != '\r')
+                    i++;
+                if (i == size)
+                    return false;
+            }
+            else if (b == '/' && i + 1 < size && this.source.get(i + 1) == '*') {
+                i = this.skipBlockComment(i, size);
+                if (i < 0)
+                    return false;
+            }
+            else {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the byte of a position in a region
+     * @param region region, with the line and column state before it
+     * @param line line of the position
+     * @param column column of the position
+     * @return index of the first byte of the first character at or after
+     * the position, the end of the region if there is none
+     */
+    public int offsetOf(MappedCharStream.Region region, int line, int column) {
+        this.setState(region);
+        int i = region.start;
+        while (i < region.end) {
+            // position of the character starting at i
+            int start = i;
+            i = this.advance(i);
+            if (this.line > line || (this.line == line && this.column >= column))
+                return start;
+            // rest of the character
+            while (i < region.end && (this.source.get(i) & 0xC0) == 0x80)
+                i++;
+        }
+        return region.end;
+    }
+
+    /**
+     * Get the line and column state after a region
+     * @param region region, with the line and column state before it
+     * @return empty region at the end of the given one, with the state of its last character
+     */
+    public MappedCharStream.Region regionAfter(MappedCharStream.Region region) {
+        this.setState(region);
+        for (int i = region.start; i < region.end; )
+            i = this.advance(i);
+        return new MappedCharStream.Region(region.end, region.end, this.line, this.column, this.prevCharIsCR, this.prevCharIsLF);
+    }
+
+    /**
+     * Skips a block comment, advancing the line and column state
+     * @param i index of the '/' starting the comment
+     * @param size end of the scanned bytes
+     * @return index of the byte after the comment, -1 if it is not closed
+     */
+    private int skipBlockComment(int i, int size) {
+        i = this.advance(this.advance(i));
+        // the grammar only closes a comment on a '/' right after
+        // the first '*' of a run, i.e '**/' does not close it
+        boolean afterStar = false;
+        while (i < size) {
+            byte b = this.source.get(i);
+            i = this.advance(i);
+            if (afterStar) {
+                if (b == '/')
+                    return i;
+                afterStar = false;
+            }
+            else if (b == '*') {
+                afterStar = true;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Sets the line and column state to the state before a region
+     * @param region region
+     */
+    private void setState(MappedCharStream.Region region) {
+        this.line = region.line;
+        this.column = region.column;
+        this.prevCharIsCR = region.afterCR;
+        this.prevCharIsLF = region.afterLF;
+    }
+
+    /**
+     * Advances the line and column state past a byte, the same way
+     * MappedCharStream does for the character it decodes
+     * @param i byte index
+     * @return index of the next byte
+     */
+    private int advance(int i) {
+        byte b = this.source.get(i);
+        // continuation bytes of a UTF-8 sequence are part of its first character
+        if ((b & 0xC0) != 0x80) {
+            this.updateLineColumn((char) (b & 0xFF));
+            // 4 byte sequences are read as two chars (a surrogate pair)
+            if ((b & 0xF8) == 0xF0)
+                this.updateLineColumn(Character.MIN_LOW_SURROGATE);
+        }
+        return i + 1;
+    }
+
+    /**
+     * Advances the line and column to a character, the same
+     * way SimpleCharStream does
+     * @param c character read
+     */
+    private void updateLineColumn(char c) {
+        this.column++;
+
+        if (this.prevCharIsLF) {
+            this.prevCharIsLF = false;
+            this.line += (this.column = 1);
+        }
+        else if (this.prevCharIsCR) {
+            this.prevCharIsCR = false;
+            if (c == '\n')
+                this.prevCharIsLF = true;
+            else
+                this.line += (this.column = 1);
+        }
+
+        switch (c) {
+            case '\r':
+                this.prevCharIsCR = true;
+                break;
+            case '\n':
+                this.prevCharIsLF = true;
+                break;
+            case '\t':
+                this.column--;
+                this.column += (this.tabSize - (this.column % this.tabSize));
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Check if a keyword starts at a byte of a region, as a whole word
+     * @param i byte index
+     * @param keyword keyword
+     * @param region region scanned
+     * @return true if the keyword is at the byte
+     */
+    private boolean isKeyword(int i, String keyword, MappedCharStream.Region region) {
+        int end = i + keyword.length();
+        if (end > region.end || (i > region.start && isIdentifierPart(this.source.get(i - 1))))
+            return false;
+        for (int j = 0; j < keyword.length(); j++) {
+            if (this.source.get(i + j) != keyword.charAt(j))
+                return false;
+        }
+        return end == region.end || !isIdentifierPart(this.source.get(end));
+    }
+
+    /**
+     * Check if a byte can be part of an identifier
+     * @param b byte
+     * @return true for letters, digits, '_' and '$'
+     */
+    private static boolean isIdentifierPart(byte b) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9') || b == '_' || b == '$';
+    }
+}
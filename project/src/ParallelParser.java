@@ -0,0 +1,213 @@
+import SymbolTable.SymbolInterner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * <h1>Parallel Parser</h1>
+ * <p>Parses the methods of a class in parallel. A pre-scan of
+ * the file bytes finds the methods of the class body, and every
+ * method region is parsed by its own Parser on the common ForkJoin pool,
+ * while the rest of the file (imports, class declaration and
+ * attributes) is parsed on the calling thread. The method
+ * subtrees are added to the class declaration in source order.</p>
+ * <p>Region streams start with the line and column state of the
+ * whole file, so node positions are the same as a sequential
+ * parse. Each region is parsed with its own symbol interner, and
+ * its names are added to the shared one in the order they were
+ * read, so symbol ids are the same too.</p>
+ * <p>If the pre-scan finds no method, or tokens between two methods,
+ * or any part fails to parse, the file is parsed sequentially, which
+ * reports the syntax errors in order.</p>
+ * @see MethodScanner
+ */
+public class ParallelParser {
+
+    /**
+     * Use the generated token manager instead of JmmLexer
+     */
+    private final boolean javaccLexer;
+
+    /**
+     * Names of the compilation
+     */
+    private final SymbolInterner symbols;
+
+    /**
+     * Source file contents
+     */
+    private final ByteBuffer source;
+
+    /**
+     * Regions of the methods found by the pre-scan, in source order
+     */
+    private final ArrayList<MappedCharStream.Region> methods = new ArrayList<>();
+
+    /**
+     * Parse result of a method region
+     */
+    private static class MethodParse {
+        /**
+         * Method node
+         */
+        SimpleNode method;
+        /**
+         * Names read by the region parser
+         */
+        SymbolInterner symbols;
+    }
+
+    /**
+     * Constructor
+     * @param file source file
+     * @param javaccLexer use the generated token manager instead of JmmLexer
+     * @param symbols names of the compilation, filled while parsing
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public ParallelParser(File file, boolean javaccLexer, SymbolInterner symbols) throws IOException {
+        this.javaccLexer = javaccLexer;
+        this.symbols = symbols;
+        this.source = MappedCharStream.map(file);
+    }
+
+    /**
+     * Getter method for the number of methods parsed in parallel
+     * @return number of method regions found by the pre-scan
+     */
+    public int getMethodCount() {
+        return this.methods.size();
+    }
+
+    /**
+     * Parses the file
+     * @return root node of the AST
+     * @throws ParseException
+     */
+    public SimpleNode parse() throws ParseException {
+        MethodScanner scanner = new MethodScanner(this.source);
+        scanner.scan(this.wholeFile(), 0);
+        this.methods.addAll(scanner.getMethods());
+        // the text between two methods is parsed by no one, so it must have no tokens
+        for (int i = 0; i + 1 < this.methods.size(); i++) {
+            MappedCharStream.Region gap = new MappedCharStream.Region(this.methods.get(i).end, this.methods.get(i + 1).start, 1, 0, false, false);
+            if (!scanner.isBlank(gap)) {
+                this.methods.clear();
+                break;
+            }
+        }
+        if (this.methods.isEmpty())
+            return this.newParser(new MappedCharStream(this.source, this.wholeFile()), this.symbols).parse();
+
+        // methods on the pool, in source order
+        ArrayList<ForkJoinTask<MethodParse>> tasks = new ArrayList<>();
+        for (MappedCharStream.Region region : this.methods)
+            tasks.add(ForkJoinPool.commonPool().submit(() -> this.parseMethod(region)));
+
+        // the rest of the file on this thread, with the shared names
+        MappedCharStream.Region first = this.methods.get(0);
+        MappedCharStream.Region tail = scanner.getRegionAfter(this.methods.size() - 1);
+        MappedCharStream.Region head = new MappedCharStream.Region(0, first.start, 1, 0, false, false);
+        SimpleNode root;
+        try {
+            root = this.newParser(new MappedCharStream(this.source, head, tail), this.symbols).parse();
+        } catch (ParseException | TokenMgrError e) {
+            return this.parseSequentially(tasks);
+        }
+
+        ASTClassDeclaration classNode = null;
+        for (int i = 0; i < root.jjtGetNumChildren(); i++) {
+            if (root.jjtGetChild(i) instanceof ASTClassDeclaration)
+                classNode = (ASTClassDeclaration) root.jjtGetChild(i);
+        }
+        for (ForkJoinTask<MethodParse> task : tasks) {
+            MethodParse parse;
+            try {
+                parse = task.join();
+            } catch (RuntimeException | TokenMgrError e) {
+                // syntax or lexical error in the method
+                return this.parseSequentially(tasks);
+            }
+            this.internSymbols(parse);
+            classNode.jjtAddChild(parse.method, classNode.jjtGetNumChildren());
+            parse.method.jjtSetParent(classNode);
+        }
+        classNode.jjtClose();
+        return root;
+    }
+
+    /**
+     * Parses a method region, with its own symbol interner
+     * @param region method region
+     * @return method node and the names read
+     * @throws ParseException
+     */
+    private MethodParse parseMethod(MappedCharStream.Region region) throws ParseException {
+        MethodParse parse = new MethodParse();
+        parse.symbols = new SymbolInterner();
+        parse.method = this.newParser(new MappedCharStream(this.source, region), parse.symbols).parseMethod();
+        return parse;
+    }
+
+    /**
+     * Parses the whole file on this thread, after a part of it
+     * failed to parse, to report the syntax errors in order
+     * @param tasks method parses, cancelled
+     * @return root node of the AST
+     * @throws ParseException
+     */
+    private SimpleNode parseSequentially(ArrayList<ForkJoinTask<MethodParse>> tasks) throws ParseException {
+        for (ForkJoinTask<MethodParse> task : tasks)
+            task.cancel(false);
+        // the banner was printed by the parse of the rest of the file
+        return this.newParser(new MappedCharStream(this.source, this.wholeFile()), this.symbols)
+                .parse((Parser.MethodListener) null);
+    }
+
+    /**
+     * Adds the names read by a method parser to the shared symbols,
+     * in the order they were read, and renumbers the symbol ids of
+     * the method nodes
+     * @param parse method parse
+     */
+    private void internSymbols(MethodParse parse) {
+        int[] ids = new int[parse.symbols.size()];
+        for (int id = 0; id < ids.length; id++)
+            ids[id] = this.symbols.intern(parse.symbols.name(id));
+
+        // explicit stack, so deep expressions do not overflow the call stack
+        ArrayDeque<SimpleNode> stack = new ArrayDeque<>();
+        stack.push(parse.method);
+        while (!stack.isEmpty()) {
+            SimpleNode node = stack.pop();
+            if (node.symbol != -1)
+                node.symbol = ids[node.symbol];
+            for (int i = 0; i < node.jjtGetNumChildren(); i++)
+                stack.push((SimpleNode) node.jjtGetChild(i));
+        }
+    }
+
+    /**
+     * Creates a parser of a stream
+     * @param stream char stream
+     * @param symbols names the parser interns
+     * @return parser
+     */
+    private Parser newParser(MappedCharStream stream, SymbolInterner symbols) {
+        Parser parser = new Parser(this.javaccLexer ? new ParserTokenManager(stream) : new JmmLexer(stream, symbols));
+        parser.setSymbols(symbols);
+        return parser;
+    }
+
+    /**
+     * Get the region of the whole file
+     * @return region from the first to the last byte
+     */
+    private MappedCharStream.Region wholeFile() {
+        return new MappedCharStream.Region(0, this.source.limit(), 1, 0, false, false);
+    }
+}
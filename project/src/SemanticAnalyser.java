@@ -1,10 +1,16 @@
 import Exceptions.SemanticErrorException;
 import SymbolTable.MethodDescriptor;
 import SymbolTable.VariableDescriptor;
+import SymbolTable.Descriptor;
 import SymbolTable.ImportDescriptor;
+import SymbolTable.JmmType;
 import SymbolTable.SymbolTable;
 
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.LinkedList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * <h1>Semantic Analyser</h1>
@@ -34,6 +40,67 @@ public class SemanticAnalyser implements ParserVisitor {
      */
     private final SymbolTable table;
 
+    /**
+     * Errors and warnings found by a method analyser, printed in
+     * source order when all methods are analysed
+     * null if they are printed as they are found
+     */
+    private final ArrayList<Diagnostic> diagnostics;
+
+    /**
+     * Attributes initialised by the method of a method analyser
+     * (attribute symbol ids). Attributes are shared by all methods,
+     * so a method analyser records their initialisation here
+     * instead of in the symbol table.
+     * null if attributes are initialised in the symbol table
+     */
+    private final BitSet initialisedAttributes;
+
+    /**
+     * Warnings printed, in order
+     */
+    private final ArrayList<String> warnings = new ArrayList<>();
+
+    /**
+     * Error or warning found by a method analyser
+     */
+    private static class Diagnostic {
+        /**
+         * True for errors, false for warnings
+         */
+        final boolean error;
+        /**
+         * Error or warning message
+         */
+        final String message;
+        /**
+         * Line and column the error occurred
+         */
+        final int line;
+        final int column;
+        /**
+         * Symbol id of the attribute the error is about, if it is only an
+         * error when no previous method initialised the attribute; -1 otherwise
+         */
+        final int attribute;
+
+        /**
+         * Constructor
+         * @param error true for errors, false for warnings
+         * @param message error or warning message
+         * @param line line the error occurred
+         * @param column column the error occurred
+         * @param attribute symbol id of the uninitialised attribute, -1 if none
+         */
+        Diagnostic(boolean error, String message, int line, int column, int attribute) {
+            this.error = error;
+            this.message = message;
+            this.line = line;
+            this.column = column;
+            this.attribute = attribute;
+        }
+    }
+
     /**
      * Constructor
      * @param table symbol table
@@ -42,6 +109,27 @@ public class SemanticAnalyser implements ParserVisitor {
     public SemanticAnalyser(SymbolTable table, int numErrors) {
         this.table = table;
         this.numErrors = numErrors;
+        this.diagnostics = null;
+        this.initialisedAttributes = null;
+    }
+
+    /**
+     * Constructor of a method analyser, which analyses a single method
+     * and keeps its diagnostics and attribute initialisation
+     * @param table symbol table
+     */
+    private SemanticAnalyser(SymbolTable table) {
+        this.table = table;
+        this.diagnostics = new ArrayList<>();
+        this.initialisedAttributes = new BitSet();
+    }
+
+    /**
+     * Getter method for the warnings printed
+     * @return printed warnings, in order
+     */
+    public ArrayList<String> getWarnings() {
+        return this.warnings;
     }
 
     /**
@@ -56,6 +144,73 @@ public class SemanticAnalyser implements ParserVisitor {
         return numErrors == 0;
     }
 
+    /**
+     * Analyses every method on its own method analyser, in parallel on
+     * the common ForkJoin pool. Diagnostics are printed in source order
+     * and attributes are initialised in source order, so the result is
+     * the same as the sequential analysis.
+     * @param root AST root node
+     * @return true if no errors were found
+     */
+    public boolean analiseInParallel(SimpleNode root) {
+        // the method analyses look methods and imports up concurrently
+        this.table.buildIndexes();
+        ArrayList<ForkJoinTask<SemanticAnalyser>> methods = new ArrayList<>();
+        this.forkMethods(root, methods);
+
+        // merge in source order
+        BitSet initialised = new BitSet();
+        for (ForkJoinTask<SemanticAnalyser> task : methods) {
+            SemanticAnalyser method = task.join();
+            for (Diagnostic diagnostic : method.diagnostics) {
+                // attribute initialised by a previous method: not an error
+                if (diagnostic.attribute != -1 && initialised.get(diagnostic.attribute))
+                    continue;
+                if (diagnostic.error)
+                    this.printError(diagnostic.message, diagnostic.line, diagnostic.column);
+                else
+                    this.printWarning(diagnostic.message, diagnostic.line, diagnostic.column);
+            }
+            initialised.or(method.initialisedAttributes);
+        }
+        for (int symbol = initialised.nextSetBit(0); symbol >= 0; symbol = initialised.nextSetBit(symbol + 1))
+            this.table.findAttribute(symbol).setInitialised(true);
+
+        return numErrors == 0;
+    }
+
+    /**
+     * Submits the analysis of every method of a subtree to the common
+     * ForkJoin pool, in source order. Other nodes are analysed directly.
+     * @param node subtree root
+     * @param methods method analyses
+     */
+    private void forkMethods(SimpleNode node, ArrayList<ForkJoinTask<SemanticAnalyser>> methods) {
+        for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+            SimpleNode child = (SimpleNode) node.jjtGetChild(i);
+            if (child instanceof ASTRegularMethod || child instanceof ASTMainMethod) {
+                methods.add(ForkJoinPool.commonPool().submit(() -> {
+                    SemanticAnalyser method = new SemanticAnalyser(this.table);
+                    child.jjtAccept(method, null);
+                    return method;
+                }));
+            }
+            else if (child instanceof ASTClassDeclaration)
+                this.forkMethods(child, methods);
+            else
+                child.jjtAccept(this, null);
+        }
+    }
+
+    /**
+     * Check if errors were found so far, for compilations that
+     * analyse the tree node by node
+     * @return true if errors were found
+     */
+    public boolean hasErrors() {
+        return this.numErrors != 0;
+    }
+
     /**
      * Print to terminal an error message
      * @param message error message
@@ -63,6 +218,22 @@ public class SemanticAnalyser implements ParserVisitor {
      * @param column column the error occurred
      */
     private void printError(String message, int line, int column) {
+        this.printError(message, line, column, -1);
+    }
+
+    /**
+     * Print to terminal an error message, which method analysers
+     * keep to be printed in source order
+     * @param message error message
+     * @param line line the error occurred
+     * @param column column the error occurred
+     * @param attribute symbol id of the uninitialised attribute the error is about, -1 if none
+     */
+    private void printError(String message, int line, int column, int attribute) {
+        if (this.diagnostics != null) {
+            this.diagnostics.add(new Diagnostic(true, message, line, column, attribute));
+            return;
+        }
         this.numErrors++;
         System.out.println("SEMANTIC ERROR: " + message + " at line: " + line + ", column: " + column + ".");
         if (this.numErrors >= MAX_ERRORS) {
@@ -78,7 +249,37 @@ public class SemanticAnalyser implements ParserVisitor {
      * @param column column the error occurred
      */
     private void printWarning(String message, int line, int column) {
-        System.out.println("SEMANTIC WARNING: " + message + " at line: " + line + ", column: " + column + ".");
+        if (this.diagnostics != null) {
+            this.diagnostics.add(new Diagnostic(false, message, line, column, -1));
+            return;
+        }
+        String warning = "SEMANTIC WARNING: " + message + " at line: " + line + ", column: " + column + ".";
+        System.out.println(warning);
+        this.warnings.add(warning);
+    }
+
+    /**
+     * Records the type of an expression node, so code generation
+     * does not need to analyse the expression again
+     * @param node expression node
+     * @param type expression type
+     * @return expression type
+     */
+    private JmmType annotate(SimpleNode node, JmmType type) {
+        node.resolvedType = type;
+        return type;
+    }
+
+    /**
+     * Records the method or import invoked by an object call
+     * and its return type
+     * @param node object call node
+     * @param descriptor invoked method or import
+     * @return object call type
+     */
+    private JmmType annotate(SimpleNode node, Descriptor descriptor) {
+        node.resolvedDescriptor = descriptor;
+        return this.annotate(node, descriptor.getJmmType());
     }
 
     /**
@@ -92,44 +293,85 @@ public class SemanticAnalyser implements ParserVisitor {
         // get variable id
         String variableIdentifier = (String) node.jjtGetValue();
         // lookup variable in method
-        VariableDescriptor descriptor = null;
-        try {
-            descriptor = method.lookupVariable(variableIdentifier);
-        } catch (SemanticErrorException ignored) {
-            // lookup variable in class
-            try {
-                descriptor = table.lookupAttribute(variableIdentifier);
-            } catch (SemanticErrorException e) {
-                this.printError(e.getMessage(), node.line, node.column);
-                return;
-            }
+        VariableDescriptor descriptor = method.findVariable(node.symbol);
+        boolean attribute = false;
+        // lookup variable in class
+        if (descriptor == null) {
+            descriptor = table.findAttribute(node.symbol);
+            attribute = true;
+        }
+        if (descriptor == null) {
+            this.printError("Variable '" + variableIdentifier + "' not defined", node.line, node.column);
+            return;
         }
         // if identifier node has a child then its an array access
         if (node.jjtGetNumChildren() == 1) {
             // check if the whole array was initialised
-            if (!descriptor.isInitialised()) {
-                this.printError("Accessing element of uninitialised array '" + variableIdentifier + "'" ,node.line, node.column);
+            if (!this.isInitialised(descriptor, node.symbol, attribute)) {
+                this.printError("Accessing element of uninitialised array '" + variableIdentifier + "'" ,node.line, node.column,
+                        attribute ? node.symbol : -1);
                 return;
             }
         }
         // set variable as initialised
-        descriptor.setInitialised(true);
+        if (attribute && this.initialisedAttributes != null)
+            this.initialisedAttributes.set(node.symbol);
+        else
+            descriptor.setInitialised(true);
+    }
+
+    /**
+     * Check if a variable is initialised, including the attributes
+     * initialised by the method of a method analyser
+     * @param descriptor variable descriptor
+     * @param symbol variable symbol id
+     * @param attribute true if the variable is an attribute
+     * @return true if the variable is initialised
+     */
+    private boolean isInitialised(VariableDescriptor descriptor, int symbol, boolean attribute) {
+        return descriptor.isInitialised()
+                || (attribute && this.initialisedAttributes != null && this.initialisedAttributes.get(symbol));
+    }
+
+    /**
+     * Warns about local variables read where they may not have been
+     * assigned on every path, i.e only assigned inside an if block or
+     * a while loop. Reads before any assignment in source order are
+     * already errors, so they are not reported again.
+     * @param node RegularMethod or MainMethod node
+     * @param method method descriptor
+     */
+    private void checkDefiniteAssignment(SimpleNode node, MethodDescriptor method) {
+        FlowGraph graph = new FlowGraph(node, method);
+        // parameters are assigned on entry, a local is assigned once assigned on every path
+        BitSet parameters = graph.getParameterLocals();
+        BitSet[] assigned = Dataflow.solve(graph, Dataflow.Direction.FORWARD, Dataflow.Meet.INTERSECTION, parameters,
+                (flowNode, value) -> {
+                    if (graph.getDef(flowNode) != FlowGraph.NONE)
+                        value.set(graph.getDef(flowNode));
+                });
+        // nodes are numbered in source order
+        BitSet assignedInOrder = (BitSet) parameters.clone();
+        for (int flowNode = 0; flowNode < graph.size(); flowNode++) {
+            for (SimpleNode identifier : graph.getUseIdentifiers(flowNode)) {
+                int local = graph.localIndex(identifier.symbol);
+                if (assignedInOrder.get(local) && !assigned[flowNode].get(local))
+                    this.printWarning("Variable '" + identifier.jjtGetValue() + "' may not have been initialized on every path",
+                            identifier.line, identifier.column);
+            }
+            if (graph.getDef(flowNode) != FlowGraph.NONE)
+                assignedInOrder.set(graph.getDef(flowNode));
+        }
     }
 
     private void setNotConstant(ASTIdentifier node, Object data) {
         // get method descriptor
         MethodDescriptor method = (MethodDescriptor) data;
-        // get variable id
-        String variableIdentifier = (String) node.jjtGetValue();
         // lookup variable in method
-        try {
-            VariableDescriptor descriptor = method.lookupVariable(variableIdentifier);
-
+        VariableDescriptor descriptor = method.findVariable(node.symbol);
+        //if it is not a method variable: do nothing
+        if (descriptor != null)
             descriptor.setNotConstant();
-
-        } catch (SemanticErrorException e) {
-            //it is not a class variable: do nothing
-        }
     }
 
     @Override
@@ -178,7 +420,9 @@ public class SemanticAnalyser implements ParserVisitor {
         // for method specific symbol table lookups
         try {
             MethodDescriptor method = this.table.lookupMethod(methodIdentifier, parameterList);
-            return node.childrenAccept(this, method);
+            node.childrenAccept(this, method);
+            this.checkDefiniteAssignment(node, method);
+            return null;
         } catch (SemanticErrorException e) {
             e.printStackTrace();
         }
@@ -187,7 +431,8 @@ public class SemanticAnalyser implements ParserVisitor {
 
     @Override
     public Object visit(ASTReturn node, Object data) {
-        return null;
+        // analyse the returned expression
+        return node.childrenAccept(this, data);
     }
 
     @Override
@@ -198,8 +443,8 @@ public class SemanticAnalyser implements ParserVisitor {
         // for each child node (ASTMethodParam) get type
         LinkedList<String> parameterList = new LinkedList<>();
         for (Node child : children) {
-            String parameterType = (String) child.jjtAccept(this, data);
-            parameterList.add(parameterType);
+            JmmType parameterType = (JmmType) child.jjtAccept(this, data);
+            parameterList.add(parameterType.getName());
         }
         return parameterList;
     }
@@ -223,7 +468,9 @@ public class SemanticAnalyser implements ParserVisitor {
         // for method specific symbol table lookups
         try {
             MethodDescriptor method = this.table.lookupMethod(methodIdentifier, parameterList);
-            return node.childrenAccept(this, method);
+            node.childrenAccept(this, method);
+            this.checkDefiniteAssignment(node, method);
+            return null;
         } catch (SemanticErrorException e) {
             e.printStackTrace();
         }
@@ -238,12 +485,12 @@ public class SemanticAnalyser implements ParserVisitor {
 
     @Override
     public Object visit(ASTType node, Object data) {
-        return node.jjtGetValue();
+        return node.getJmmType();
     }
 
     @Override
     public Object visit(ASTReturnType node, Object data) {
-        return node.jjtGetValue();
+        return node.getJmmType();
     }
 
     @Override
@@ -255,7 +502,7 @@ public class SemanticAnalyser implements ParserVisitor {
         // 3. visit the first child to get the type
 
         // second child is the assigner (right side)
-        String assignerType = (String) node.jjtGetChild(1).jjtAccept(this, data);
+        JmmType assignerType = (JmmType) node.jjtGetChild(1).jjtAccept(this, data);
         // first child is the assignee (left side)
         SimpleNode assigneeNode = (SimpleNode) node.jjtGetChild(0);
         // left side must be a variable
@@ -265,13 +512,13 @@ public class SemanticAnalyser implements ParserVisitor {
         } else {
             this.setAsInitialised((ASTIdentifier) assigneeNode, data);
         }
-        String assigneeType = (String) assigneeNode.jjtAccept(this, data);
+        JmmType assigneeType = (JmmType) assigneeNode.jjtAccept(this, data);
 
         // check for past semantic errors
         if (assigneeType == null || assignerType == null)
             return null;
         // check if types are the same
-        if (!assigneeType.equals(assignerType))
+        if (assigneeType != assignerType)
             this.printError("Assignment of different types '" + assigneeType + "' and '" + assignerType + "'", node.line, node.column);
 
         //check if assignment makes the variable not be constant anymore
@@ -287,7 +534,7 @@ public class SemanticAnalyser implements ParserVisitor {
         // an object call has two child nodes
         // first child is the object (caller)
         SimpleNode identifier = (SimpleNode) node.jjtGetChild(0);
-        String objectType = (String) identifier.jjtGetValue();
+        String objectIdentifier = (String) identifier.jjtGetValue();
         // second child is the method (callee)
         SimpleNode callMethod = (SimpleNode) node.jjtGetChild(1);
         String methodIdentifier = (String) callMethod.jjtGetValue();
@@ -295,37 +542,37 @@ public class SemanticAnalyser implements ParserVisitor {
 
         // special import case
         // lookup 'objectType.methodName' static import
-        try {
-            String importIdentifier = objectType + "." + methodIdentifier;
-            ImportDescriptor descriptor = this.table.lookupImport(importIdentifier, parameterList);
-            if (descriptor.isStatic())
-                return descriptor.getType();
-        } catch (SemanticErrorException ignored) { }
+        ImportDescriptor staticDescriptor = this.table.findImport(objectIdentifier + "." + methodIdentifier, parameterList);
+        if (staticDescriptor != null && staticDescriptor.isStatic())
+            return annotate(node, staticDescriptor);
 
         // normal case
-        objectType = (String) node.jjtGetChild(0).jjtAccept(this, data);
+        JmmType objectType = (JmmType) node.jjtGetChild(0).jjtAccept(this, data);
+        // check for past semantic errors
+        if (objectType == null)
+            return null;
         // int[] case
-        if (objectType.equals("int[]")) {
+        if (objectType == JmmType.INT_ARRAY) {
             if (methodIdentifier.equals("getLen"))
-                return "int";
+                return annotate(node, JmmType.INT);
             else
                 this.printError("'int[]' has no method " + methodIdentifier, identifier.line, identifier.column);
             return null;
         }
         // lookup 'objectType.methodName'
         // 1. objectType = class name
-        if (objectType.contains(this.table.getClassName())) {
+        if (objectType.getName().contains(this.table.getClassName())) {
             // extended class method call
-            if (!this.table.getExtendedClassName().equals(""))
-                try {
-                    String importIdentifier = this.table.getExtendedClassName() + "." + methodIdentifier;
-                    ImportDescriptor descriptor = this.table.lookupImport(importIdentifier, parameterList);
-                    return descriptor.getType();
-                } catch (SemanticErrorException ignored) { }
+            if (!this.table.getExtendedClassName().equals("")) {
+                String importIdentifier = this.table.getExtendedClassName() + "." + methodIdentifier;
+                ImportDescriptor descriptor = this.table.findImport(importIdentifier, parameterList);
+                if (descriptor != null)
+                    return annotate(node, descriptor);
+            }
             // this class method call
             try {
                 MethodDescriptor descriptor = this.table.lookupMethod(methodIdentifier, parameterList);
-                return descriptor.getType();
+                return annotate(node, descriptor);
             } catch (SemanticErrorException e) {
                 printError(e.getMessage(), callMethod.line, callMethod.column);
             }
@@ -333,8 +580,8 @@ public class SemanticAnalyser implements ParserVisitor {
         // 2. objectType = imported class name
         else {
             try {
-                ImportDescriptor descriptor = this.table.lookupImport(objectType + "." + methodIdentifier, parameterList);
-                return descriptor.getType();
+                ImportDescriptor descriptor = this.table.lookupImport(objectType.getName() + "." + methodIdentifier, parameterList);
+                return annotate(node, descriptor);
             } catch (SemanticErrorException e) {
                 printError(e.getMessage(), callMethod.line, callMethod.column);
             }
@@ -346,12 +593,12 @@ public class SemanticAnalyser implements ParserVisitor {
     public Object visit(ASTIfElseBlock node, Object data) {
         // IfElseBlock has 3 children
         // Conditional Expression, IfBlock and ElseBlock
-        String expressionType = (String) node.jjtGetChild(0).jjtAccept(this, data);
+        JmmType expressionType = (JmmType) node.jjtGetChild(0).jjtAccept(this, data);
         // check for past semantic errors
         if (expressionType == null)
             return null;
         //verify data type
-        if(!expressionType.equals("boolean"))
+        if(expressionType != JmmType.BOOLEAN)
             printError("Conditional expression is not of 'boolean' type", node.line, node.column);
         // visit children statements
         return node.childrenAccept(this, data);
@@ -370,139 +617,116 @@ public class SemanticAnalyser implements ParserVisitor {
     @Override
     public Object visit(ASTWhileBlock node, Object data) {
 
-        String expressionType = (String) node.jjtGetChild(0).jjtAccept(this, data);
+        JmmType expressionType = (JmmType) node.jjtGetChild(0).jjtAccept(this, data);
 
         //verify data type
-        if(!expressionType.equals("boolean"))
+        if(expressionType != JmmType.BOOLEAN)
             printError("Conditional expression is not of 'boolean' type", node.line, node.column);
         // visit children statements
         return node.childrenAccept(this, data);
     }
 
-    @Override
-    public Object visit(ASTand node, Object data) {
+    /**
+     * Analyses a chain of binary operators, i.e 'a + b - c * d', whose
+     * left operands are binary operators too. The parser builds long
+     * chains like 'a + b + c + ...' left-deep, so the chain is walked
+     * down its left operands with a loop and analysed back up from the
+     * innermost operator: the stack depth does not grow with its length.
+     * Operands are analysed left to right, as a recursive visit would.
+     * @param node outermost operator of the chain
+     * @param data method descriptor
+     * @return type of the outermost operator, null if errors were found
+     */
+    private JmmType analiseOperatorChain(SimpleNode node, Object data) {
+        ArrayList<SimpleNode> chain = new ArrayList<>();
+        SimpleNode current = node;
+        while (current.isBinaryOperator()) {
+            chain.add(current);
+            current = (SimpleNode) current.jjtGetChild(0);
+        }
+        JmmType leftType = (JmmType) current.jjtAccept(this, data);
+        for (int i = chain.size() - 1; i >= 0; i--) {
+            SimpleNode operator = chain.get(i);
+            JmmType rightType = (JmmType) operator.jjtGetChild(1).jjtAccept(this, data);
+            leftType = this.checkOperator(operator, leftType, rightType);
+        }
+        return leftType;
+    }
+
+    /**
+     * Checks the operand types of a binary operator
+     * @param node operator node
+     * @param leftType left operand type
+     * @param rightType right operand type
+     * @return operator type, null if errors were found
+     */
+    private JmmType checkOperator(SimpleNode node, JmmType leftType, JmmType rightType) {
         SimpleNode leftChild = (SimpleNode) node.jjtGetChild(0);
         SimpleNode rightChild = (SimpleNode) node.jjtGetChild(1);
-
-        String leftChildType = (String) node.jjtGetChild(0).jjtAccept(this, data);
-        String rightChildType = (String) node.jjtGetChild(1).jjtAccept(this, data);
-
         // check for past semantic errors
-        if (leftChildType == null || rightChildType == null)
+        if (leftType == null || rightType == null)
             return null;
+
+        // '&&' takes booleans, the arithmetic operators and '<' take integers
+        String operator;
+        JmmType operandType = JmmType.INT;
+        JmmType type = JmmType.INT;
+        if (node instanceof ASTand) {
+            operator = "&&";
+            operandType = JmmType.BOOLEAN;
+            type = JmmType.BOOLEAN;
+        }
+        else if (node instanceof ASTlt) {
+            operator = "<";
+            type = JmmType.BOOLEAN;
+        }
+        else if (node instanceof ASTsum)
+            operator = "+";
+        else if (node instanceof ASTsub)
+            operator = "-";
+        else if (node instanceof ASTmult)
+            operator = "*";
+        else
+            operator = "/";
+        String operandName = (operandType == JmmType.INT) ? "integer" : "boolean";
+
         // verify data type
-        if (!leftChildType.equals("boolean"))
-            printError("Operand " + leftChild.jjtGetValue() + " of '&&' is not of 'boolean' type", leftChild.line, leftChild.column);
-        else if(!rightChildType.equals("boolean"))
-            printError("Operand " + rightChild.jjtGetValue() + " of '&&' is not of 'boolean' type", rightChild.line, rightChild.column);
+        if (leftType != operandType)
+            printError("Operand " + leftChild.jjtGetValue() + " of '" + operator + "' is not of '" + operandName + "' type", leftChild.line, leftChild.column);
+        else if (rightType != operandType)
+            printError("Operand " + rightChild.jjtGetValue() + " of '" + operator + "' is not of '" + operandName + "' type", rightChild.line, rightChild.column);
 
-        // '&&' operator returns an int
-        return "boolean";
+        return annotate(node, type);
     }
 
     @Override
-    public Object visit(ASTlt node, Object data) {
-        SimpleNode leftChild = (SimpleNode) node.jjtGetChild(0);
-        SimpleNode rightChild = (SimpleNode) node.jjtGetChild(1);
-
-        String leftChildType = (String) node.jjtGetChild(0).jjtAccept(this, data);
-        String rightChildType = (String) node.jjtGetChild(1).jjtAccept(this, data);
-
-        // check for past semantic errors
-        if (leftChildType == null || rightChildType == null)
-            return null;
-        // verify data type
-        if (!leftChildType.equals("int"))
-            printError("Operand " + leftChild.jjtGetValue() + " of '<' is not of 'integer' type", leftChild.line, leftChild.column);
-        else if(!rightChildType.equals("int"))
-            printError("Operand " + rightChild.jjtGetValue() + " of '<' is not of 'integer' type", rightChild.line, rightChild.column);
+    public Object visit(ASTand node, Object data) {
+        return this.analiseOperatorChain(node, data);
+    }
 
-        // '<' operator returns a boolean
-        return "boolean";
+    @Override
+    public Object visit(ASTlt node, Object data) {
+        return this.analiseOperatorChain(node, data);
     }
 
     @Override
     public Object visit(ASTsum node, Object data) {
-        SimpleNode leftChild = (SimpleNode) node.jjtGetChild(0);
-        SimpleNode rightChild = (SimpleNode) node.jjtGetChild(1);
-
-        String leftChildType = (String) node.jjtGetChild(0).jjtAccept(this, data);
-        String rightChildType = (String) node.jjtGetChild(1).jjtAccept(this, data);
-
-        // check for past semantic errors
-        if (leftChildType == null || rightChildType == null)
-            return null;
-        // verify data type
-        if (!leftChildType.equals("int"))
-            printError("Operand " + leftChild.jjtGetValue() + " of '+' is not of 'integer' type", leftChild.line,leftChild.column);
-        else if(!rightChildType.equals("int"))
-            printError("Operand " + rightChild.jjtGetValue() + " of '+' is not of 'integer' type", rightChild.line,rightChild.column);
-
-        // '+' operator returns an int
-        return "int";
+        return this.analiseOperatorChain(node, data);
     }
 
     @Override
     public Object visit(ASTsub node, Object data) {
-        SimpleNode leftChild = (SimpleNode) node.jjtGetChild(0);
-        SimpleNode rightChild = (SimpleNode) node.jjtGetChild(1);
-
-        String leftChildType = (String) node.jjtGetChild(0).jjtAccept(this, data);
-        String rightChildType = (String) node.jjtGetChild(1).jjtAccept(this, data);
-
-        // check for past semantic errors
-        if (leftChildType == null || rightChildType == null)
-            return null;
-        // verify data type
-        if (!leftChildType.equals("int"))
-            printError("Operand " + leftChild.jjtGetValue() + " of '-' is not of 'integer' type", leftChild.line, leftChild.column);
-        else if(!rightChildType.equals("int"))
-            printError("Operand " + rightChild.jjtGetValue() + " of '-' is not of 'integer' type", rightChild.line, rightChild.column);
-
-        // '-' operator returns an int
-        return "int";
+        return this.analiseOperatorChain(node, data);
     }
 
     @Override
     public Object visit(ASTmult node, Object data) {
-        SimpleNode leftChild = (SimpleNode) node.jjtGetChild(0);
-        SimpleNode rightChild = (SimpleNode) node.jjtGetChild(1);
-
-        String leftChildType = (String) node.jjtGetChild(0).jjtAccept(this, data);
-        String rightChildType = (String) node.jjtGetChild(1).jjtAccept(this, data);
-
-        // check for past semantic errors
-        if (leftChildType == null || rightChildType == null)
-            return null;
-        // verify data type
-        if (!leftChildType.equals("int"))
-            printError("Operand " + leftChild.jjtGetValue() + " of '*' is not of 'integer' type", leftChild.line, leftChild.column);
-        else if(!rightChildType.equals("int"))
-            printError("Operand " + rightChild.jjtGetValue() + " of '*' is not of 'integer' type", rightChild.line, rightChild.column);
-
-        // '*' operator returns an int
-        return "int";
+        return this.analiseOperatorChain(node, data);
     }
 
     @Override
     public Object visit(ASTdiv node, Object data) {
-        SimpleNode leftChild = (SimpleNode) node.jjtGetChild(0);
-        SimpleNode rightChild = (SimpleNode) node.jjtGetChild(1);
-
-        String leftChildType = (String) node.jjtGetChild(0).jjtAccept(this, data);
-        String rightChildType = (String) node.jjtGetChild(1).jjtAccept(this, data);
-
-        // check for past semantic errors
-        if (leftChildType == null || rightChildType == null)
-            return null;
-        // verify data type
-        if (!leftChildType.equals("int"))
-            printError("Operand " + leftChild.jjtGetValue() + " of '/' is not of 'integer' type", leftChild.line,leftChild.column);
-        else if(!rightChildType.equals("int"))
-            printError("Operand " + rightChild.jjtGetValue() + " of '/' is not of 'integer' type", rightChild.line, rightChild.column);
-
-        // '/' operator returns an int
-        return "int";
+        return this.analiseOperatorChain(node, data);
     }
 
     @Override
@@ -512,41 +736,39 @@ public class SemanticAnalyser implements ParserVisitor {
         // get variable id
         String variableIdentifier = (String) node.jjtGetValue();
         // lookup variable in method
-        VariableDescriptor descriptor = null;
-        String variableType = null;
-        try {
-            descriptor = method.lookupVariable(variableIdentifier);
-            variableType = descriptor.getType();
-        } catch (SemanticErrorException ignored) {
-            // lookup variable in class
-            try {
-                descriptor = table.lookupAttribute(variableIdentifier);
-                variableType = descriptor.getType();
-            } catch (SemanticErrorException e) {
-                this.printError(e.getMessage(), node.line, node.column);
-                return null;
-            }
+        VariableDescriptor descriptor = method.findVariable(node.symbol);
+        boolean attribute = false;
+        // lookup variable in class
+        if (descriptor == null) {
+            descriptor = table.findAttribute(node.symbol);
+            attribute = true;
+        }
+        if (descriptor == null) {
+            this.printError("Variable '" + variableIdentifier + "' not defined", node.line, node.column);
+            return null;
         }
+        JmmType variableType = descriptor.getJmmType();
         // if identifier node has a child then its an array access
         if (node.jjtGetNumChildren() == 1) {
             // check if identifier is of 'int[]' type
-            if (!variableType.equals("int[]")) {
+            if (variableType != JmmType.INT_ARRAY) {
                 this.printError("Variable '" + variableIdentifier + "' is not of array type", node.line, node.column);
                 return null;
             }
-            String accessType = (String) node.jjtGetChild(0).jjtAccept(this, data);
-            if (!accessType.equals("int")) {
+            JmmType accessType = (JmmType) node.jjtGetChild(0).jjtAccept(this, data);
+            if (accessType != JmmType.INT) {
                 this.printError("Invalid array access of type '" + accessType + "' must be of 'integer' value", node.line, node.column);
                 return null;
             }
             // change variable type top 'int'
-            variableType = "int";
+            variableType = JmmType.INT;
         }
         // check if variable was initialized
-        if (!descriptor.isInitialised())
-            this.printError("Variable '" + variableIdentifier + "' may not have been initialized", node.line, node.column);
+        if (!this.isInitialised(descriptor, node.symbol, attribute))
+            this.printError("Variable '" + variableIdentifier + "' may not have been initialized", node.line, node.column,
+                    attribute ? node.symbol : -1);
         // return identifier type
-        return variableType;
+        return annotate(node, variableType);
     }
 
     @Override
@@ -563,25 +785,26 @@ public class SemanticAnalyser implements ParserVisitor {
         LinkedList<String> parameterList = new LinkedList<>();
         if (children != null)
             for (Node child : children) {
-                String parameterType = (String) child.jjtAccept(this, data);
-                parameterList.add(parameterType);
+                JmmType parameterType = (JmmType) child.jjtAccept(this, data);
+                // unresolved argument types are kept as null
+                parameterList.add(parameterType == null ? null : parameterType.getName());
             }
         return parameterList;
     }
 
     @Override
     public Object visit(ASTinteger node, Object data) {
-        return "int";
+        return annotate(node, JmmType.INT);
     }
 
     @Override
     public Object visit(ASTbool node, Object data) {
-        return "boolean";
+        return annotate(node, JmmType.BOOLEAN);
     }
 
     @Override
     public Object visit(AST_this node, Object data) {
-        return this.table.getClassName();
+        return annotate(node, JmmType.of(this.table.getClassName()));
     }
 
     @Override
@@ -589,31 +812,31 @@ public class SemanticAnalyser implements ParserVisitor {
         // '!' (not) is a unary operator, therefore it only has one child node
         // that child must be of type boolean
         SimpleNode child = (SimpleNode) node.jjtGetChild(0);
-        String childType = (String) node.jjtGetChild(0).jjtAccept(this, data);
+        JmmType childType = (JmmType) node.jjtGetChild(0).jjtAccept(this, data);
 
         // check for past semantic errors
         if (childType == null)
             return null;
         // verify data type
-        if (!childType.equals("boolean"))
+        if (childType != JmmType.BOOLEAN)
             printError("Operand " + child.jjtGetValue() + " of '!' is not of 'boolean' type", child.line, child.column );
         // '!' operator returns a boolean
-        return "boolean";
+        return annotate(node, JmmType.BOOLEAN);
     }
 
     @Override
     public Object visit(AST_new node, Object data) {
         // we can create a new Class Instance or array
         // get new creation name
-        String identifier = (String) node.jjtGetValue();
+        JmmType type = JmmType.of((String) node.jjtGetValue());
         // in case of array we must see if child is of 'integer' type
-        if (identifier.equals("int[]")) {
+        if (type == JmmType.INT_ARRAY) {
             // get child
-            String childType = (String) node.jjtGetChild(0).jjtAccept(this, data);
-            if (!childType.equals("int"))
+            JmmType childType = (JmmType) node.jjtGetChild(0).jjtAccept(this, data);
+            if (childType != JmmType.INT)
                 this.printError("Array creation size of type '" + childType + "', must be of type 'integer'", node.line, node.column);
         }
 
-        return identifier;
+        return annotate(node, type);
     }
 }
@@ -0,0 +1,162 @@
+/**
+ * <h1>Streaming Compiler</h1>
+ * <p>Compiles a class one method at a time, so the memory used
+ * is bounded by the largest method instead of the whole file.</p>
+ * <p>The symbol table is built from a signature tree, scanned
+ * in a first pass which skips the method statements: imports,
+ * attributes, method signatures and method variable declarations.
+ * In a second pass the file is parsed again and every method, as
+ * soon as it is parsed, is analysed, generated, written to the
+ * output file and released before the next one is parsed.</p>
+ * <p>Methods are analysed in source order, so the diagnostics and
+ * the attribute initialisation are the same as when the whole tree
+ * is analysed. Once an error is found the remaining methods are
+ * still analysed, but not generated, and the output file is
+ * left as it was.</p>
+ * <p>Statements are skipped by the first pass, so syntax errors in
+ * method bodies are found by the second one, after the errors of
+ * the declarations and of the methods before them.</p>
+ * <p>The methods can also come from a flat AST, in which case the
+ * file was parsed once and each method is materialized in turn.</p>
+ * @see Parser#scanSignatures()
+ * @see Parser#parse(Parser.MethodListener)
+ * @see FlatAST
+ */
+public class StreamingCompiler {
+
+    /**
+     * Signature tree the symbol table was built from
+     */
+    private final SimpleNode signatures;
+
+    /**
+     * Semantic analyser
+     */
+    private final SemanticAnalyser analyser;
+
+    /**
+     * Code generator, streaming the class to its output file
+     */
+    private final CodeGenerator generator;
+
+    /**
+     * Number of methods compiled so far
+     */
+    private int methodCount = 0;
+
+    /**
+     * Source of the methods of the class
+     */
+    private interface MethodSource {
+        /**
+         * Compiles every method of the class, in source order
+         * @throws ParseException
+         */
+        void compileMethods() throws ParseException;
+    }
+
+    /**
+     * Constructor
+     * @param signatures signature tree the symbol table was built from
+     * @param analyser semantic analyser
+     * @param generator code generator of the signature tree
+     */
+    public StreamingCompiler(SimpleNode signatures, SemanticAnalyser analyser, CodeGenerator generator) {
+        this.signatures = signatures;
+        this.analyser = analyser;
+        this.generator = generator;
+    }
+
+    /**
+     * Getter method for the number of methods compiled
+     * @return number of methods analysed
+     */
+    public int getMethodCount() {
+        return this.methodCount;
+    }
+
+    /**
+     * Analyses the imports and attributes, then parses the file
+     * compiling each method as soon as it is parsed
+     * @param parser parser of the file, not used yet
+     * @return true if no errors were found and the class was written
+     * @throws ParseException
+     */
+    public boolean compile(Parser parser) throws ParseException {
+        return this.compile(() -> parser.parse(this::compileMethod));
+    }
+
+    /**
+     * Analyses the imports and attributes, then compiles each method
+     * of a flat AST, materializing one method at a time
+     * @param ast flat AST holding the methods of the class
+     * @return true if no errors were found and the class was written
+     */
+    public boolean compile(FlatAST ast) {
+        try {
+            return this.compile(() -> {
+                for (int i = 0; i < ast.getMethodCount(); i++)
+                    this.compileMethod(ast.materialize(ast.getMethod(i)));
+            });
+        } catch (ParseException e) {
+            // the file was parsed before it was flattened
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Analyses the imports and attributes, then compiles the methods
+     * @param methods source of the methods
+     * @return true if no errors were found and the class was written
+     * @throws ParseException
+     */
+    private boolean compile(MethodSource methods) throws ParseException {
+        this.analiseDeclarations();
+
+        boolean complete = false;
+        this.generator.beginStream();
+        try {
+            methods.compileMethods();
+            if (!this.analyser.hasErrors()) {
+                this.generator.endStream();
+                complete = true;
+            }
+        } finally {
+            // syntax or semantic errors: no partial class is left behind
+            if (!complete)
+                this.generator.abortStream();
+        }
+        return complete;
+    }
+
+    /**
+     * Analyses the nodes of the signature tree other than the
+     * methods, in tree order
+     */
+    private void analiseDeclarations() {
+        for (int i = 0; i < this.signatures.jjtGetNumChildren(); i++) {
+            SimpleNode child = (SimpleNode) this.signatures.jjtGetChild(i);
+            if (!(child instanceof ASTClassDeclaration)) {
+                child.jjtAccept(this.analyser, null);
+                continue;
+            }
+            for (int j = 0; j < child.jjtGetNumChildren(); j++) {
+                SimpleNode member = (SimpleNode) child.jjtGetChild(j);
+                if (!(member instanceof ASTRegularMethod || member instanceof ASTMainMethod))
+                    member.jjtAccept(this.analyser, null);
+            }
+        }
+    }
+
+    /**
+     * Analyses a method and, if no errors were found so far,
+     * generates it and writes it to the output file
+     * @param method RegularMethod or MainMethod node
+     */
+    private void compileMethod(SimpleNode method) {
+        method.jjtAccept(this.analyser, null);
+        if (!this.analyser.hasErrors())
+            this.generator.streamMethod(method);
+        this.methodCount++;
+    }
+}
@@ -14,13 +14,21 @@ public class Descriptor {
     /**
      * return type used in operations
      */
-    protected String type;
+    protected JmmType type;
 
     /**
      * Getter method for type
-     * @return the type
+     * @return the type name
      */
     public String getType() {
+        return type == null ? null : type.getName();
+    }
+
+    /**
+     * Getter method for the canonical type
+     * @return the type
+     */
+    public JmmType getJmmType() {
         return type;
     }
 
@@ -29,6 +37,6 @@ public class Descriptor {
      * @param type new type
      */
     public void setType(String type) {
-        this.type = type;
+        this.type = JmmType.of(type);
     }
 }
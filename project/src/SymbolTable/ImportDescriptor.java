@@ -2,7 +2,10 @@ package SymbolTable;
 
 import Exceptions.SemanticErrorException;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
+import java.util.List;
 
 /**
  * <h1>Import Descriptor</h1>
@@ -27,7 +30,11 @@ public class ImportDescriptor extends Descriptor{
      * such as [int, int, int] if our import
      * statement has 3 parameters of type int
      */
-    private LinkedList<VariableDescriptor> parameters;
+    private List<VariableDescriptor> parameters;
+    /**
+     * True once the descriptor is read-only
+     */
+    private boolean frozen = false;
 
     /**
      * Constructor
@@ -39,15 +46,18 @@ public class ImportDescriptor extends Descriptor{
         this.isMethod = isMethod;
         if (isMethod) {
             this.parameters = new LinkedList<>();
-            this.type = "void";
+            this.type = JmmType.VOID;
         }
     }
 
     /**
      * Adds a parameter to the parameter list
      * @param dataType new parameter
+     * @throws IllegalStateException if the descriptor is frozen
      */
     public void addParameter(String dataType) {
+        if (this.frozen)
+            throw new IllegalStateException("Import descriptor is frozen");
         if (!this.isMethod)
             return;
 
@@ -58,12 +68,27 @@ public class ImportDescriptor extends Descriptor{
      * Set import return type.
      * Default is void.
      * @param dataType import return type
+     * @throws IllegalStateException if the descriptor is frozen
      */
     public void setReturnType(String dataType) {
+        if (this.frozen)
+            throw new IllegalStateException("Import descriptor is frozen");
         if (!this.isMethod)
             return;
 
-        this.type = dataType;
+        this.type = JmmType.of(dataType);
+    }
+
+    /**
+     * Makes the descriptor read-only, compacting its
+     * parameter list into an unmodifiable array list
+     */
+    public void freeze() {
+        if (this.frozen)
+            return;
+        if (this.isMethod)
+            this.parameters = Collections.unmodifiableList(new ArrayList<>(this.parameters));
+        this.frozen = true;
     }
 
     /**
@@ -99,7 +124,7 @@ public class ImportDescriptor extends Descriptor{
      * @param returnType return type
      * @throws SemanticErrorException
      */
-    public void checkEqualImport(LinkedList<VariableDescriptor> parameters, String returnType) throws SemanticErrorException {
+    public void checkEqualImport(List<VariableDescriptor> parameters, String returnType) throws SemanticErrorException {
         // check if both parameter lists are the same
         if (this.parameters.equals(parameters))
             throw new SemanticErrorException("Parameter type list already defined");
@@ -136,7 +161,7 @@ public class ImportDescriptor extends Descriptor{
      * Getter method for parameter list
      * @return parameter list
      */
-    public LinkedList<VariableDescriptor> getParameters() {
+    public List<VariableDescriptor> getParameters() {
         return parameters;
     }
 
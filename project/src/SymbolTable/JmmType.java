@@ -0,0 +1,133 @@
+package SymbolTable;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <h1>J-- Type</h1>
+ * <p>Canonical representation of a J-- type. There is only
+ * one instance per type, so types can be compared by
+ * reference (i.e type == JmmType.INT).</p>
+ * <p>Each type caches its JVM descriptor (i.e 'I', '[I',
+ * 'LClassName;') and its instruction prefix (i.e 'i' in
+ * 'iload', 'a' in 'aload').</p>
+ */
+public final class JmmType {
+
+    /**
+     * Kind of type
+     */
+    public enum Kind { INT, BOOLEAN, INT_ARRAY, STRING_ARRAY, VOID, CLASS }
+
+    /**
+     * Interned types
+     * J-- type name -> type
+     */
+    private static final ConcurrentHashMap<String, JmmType> types = new ConcurrentHashMap<>();
+
+    public static final JmmType INT = intern(new JmmType(Kind.INT, "int", "I", "i"));
+    public static final JmmType BOOLEAN = intern(new JmmType(Kind.BOOLEAN, "boolean", "Z", "i"));
+    public static final JmmType INT_ARRAY = intern(new JmmType(Kind.INT_ARRAY, "int[]", "[I", "a"));
+    public static final JmmType STRING_ARRAY = intern(new JmmType(Kind.STRING_ARRAY, "String[]", "[Ljava/lang/String;", "a"));
+    public static final JmmType VOID = intern(new JmmType(Kind.VOID, "void", "V", ""));
+
+    /**
+     * Kind of type
+     */
+    private final Kind kind;
+    /**
+     * J-- type name (i.e 'int[]')
+     */
+    private final String name;
+    /**
+     * JVM type descriptor (i.e '[I')
+     */
+    private final String descriptor;
+    /**
+     * JVM instruction prefix (i.e 'a' for aload)
+     */
+    private final String instructionPrefix;
+
+    /**
+     * Constructor
+     * @param kind kind of type
+     * @param name J-- type name
+     * @param descriptor JVM type descriptor
+     * @param instructionPrefix JVM instruction prefix
+     */
+    private JmmType(Kind kind, String name, String descriptor, String instructionPrefix) {
+        this.kind = kind;
+        this.name = name;
+        this.descriptor = descriptor;
+        this.instructionPrefix = instructionPrefix;
+    }
+
+    /**
+     * Registers a built in type
+     * @param type type to register
+     * @return registered type
+     */
+    private static JmmType intern(JmmType type) {
+        types.put(type.name, type);
+        return type;
+    }
+
+    /**
+     * Get the canonical type with the name passed as argument.
+     * Names other than the built in types are class references.
+     * @param name J-- type name (i.e 'int', 'int[]', 'ClassName')
+     * @return canonical type, null if name is null
+     */
+    public static JmmType of(String name) {
+        if (name == null)
+            return null;
+        JmmType type = types.get(name);
+        if (type != null)
+            return type;
+        return types.computeIfAbsent(name, className -> new JmmType(Kind.CLASS, className, "L" + className + ";", "a"));
+    }
+
+    /**
+     * Getter method for kind
+     * @return kind of type
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Getter method for name
+     * @return J-- type name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Getter method for descriptor
+     * @return JVM type descriptor
+     */
+    public String getDescriptor() {
+        return descriptor;
+    }
+
+    /**
+     * Getter method for instruction prefix
+     * @return JVM instruction prefix
+     */
+    public String getInstructionPrefix() {
+        return instructionPrefix;
+    }
+
+    /**
+     * Returns true if this type is a class reference
+     * @return true if class reference
+     */
+    public boolean isClass() {
+        return kind == Kind.CLASS;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -9,34 +9,66 @@ import java.util.*;
  * <p>A method descriptor has more information regarding
  * a method statement and method body. This class uses
  * Maps to map a variable name to its descriptor</p>
- * <p>It also makes use of a LinkedHashMap in order
- * to maintain the order of parameters for comparison</p>
+ * <p>Variables are keyed by the symbol id of their name,
+ * in maps which keep the order of parameters for
+ * comparison</p>
  * @see VariableDescriptor
- * @see LinkedHashMap
- * @see HashMap
+ * @see SymbolMap
  */
 public class MethodDescriptor extends Descriptor {
+    /**
+     * Names of the compilation (identifier -> symbol id)
+     */
+    private final SymbolInterner symbols;
+
     /**
      * Parameter list
-     * LinkedHashMap preserves insertion order
-     * identifier -> < data type >
+     * SymbolMap preserves insertion order
+     * symbol id -> < data type >
      */
-    private LinkedHashMap<String, VariableDescriptor> parameters;
+    private SymbolMap<VariableDescriptor> parameters;
 
     /**
      * Variable list
-     * identifier -> < data type >
+     * symbol id -> < data type >
      */
-    private HashMap<String, VariableDescriptor> variableDescriptors;
+    private SymbolMap<VariableDescriptor> variableDescriptors;
 
     /**
      * Constructor
      * @param type method's return type
+     * @param symbols names of the compilation
+     */
+    public MethodDescriptor(String type, SymbolInterner symbols) {
+        this.type = JmmType.of(type);
+        this.symbols = symbols;
+        this.parameters = new SymbolMap<>();
+        this.variableDescriptors = new SymbolMap<>();
+    }
+
+    /**
+     * Searches in its variable list for the VariableDescriptor
+     * mapped to the identifier string passed as argument.
+     * @param variableIdentifier variable name
+     * @return variable's descriptor if found, null otherwise
+     */
+    public VariableDescriptor findVariable(String variableIdentifier) {
+        return this.findVariable(this.symbols.find(variableIdentifier));
+    }
+
+    /**
+     * Searches in its variable list for the VariableDescriptor
+     * mapped to the symbol id passed as argument.
+     * @param variableSymbol variable name symbol id
+     * @return variable's descriptor if found, null otherwise
      */
-    public MethodDescriptor(String type) {
-        this.type = type;
-        this.parameters = new LinkedHashMap<>();
-        this.variableDescriptors = new HashMap<>();
+    public VariableDescriptor findVariable(int variableSymbol) {
+        // find variable descriptor in defined variables
+        VariableDescriptor descriptor = this.variableDescriptors.get(variableSymbol);
+        // find variable descriptor in parameter list
+        if (descriptor == null)
+            descriptor = this.parameters.get(variableSymbol);
+        return descriptor;
     }
 
     /**
@@ -48,14 +80,10 @@ public class MethodDescriptor extends Descriptor {
      * @throws SemanticErrorException
      */
     public VariableDescriptor lookupVariable(String variableIdentifier) throws SemanticErrorException {
-        // find variable descriptor in defined variables
-        if (this.variableDescriptors.containsKey(variableIdentifier))
-            return this.variableDescriptors.get(variableIdentifier);
-            // find variable descriptor in parameter list
-        else if (this.parameters.containsKey(variableIdentifier))
-            return this.parameters.get(variableIdentifier);
-        else
+        VariableDescriptor descriptor = this.findVariable(variableIdentifier);
+        if (descriptor == null)
             throw new SemanticErrorException("Variable '" + variableIdentifier + "' not defined");
+        return descriptor;
     }
 
     /**
@@ -66,10 +94,11 @@ public class MethodDescriptor extends Descriptor {
      * @throws SemanticErrorException
      */
     public void addParameter(String identifier, String dataType) throws SemanticErrorException {
-        if (!this.parameters.containsKey(identifier)) {
+        int symbol = this.symbols.intern(identifier);
+        if (!this.parameters.containsKey(symbol)) {
             VariableDescriptor parameter = new VariableDescriptor(dataType);
             parameter.setInitialised(true);
-            this.parameters.put(identifier, parameter);
+            this.parameters.put(symbol, parameter);
         }
         else
             throw new SemanticErrorException("Parameter name '" + identifier + "' already in use");
@@ -83,12 +112,23 @@ public class MethodDescriptor extends Descriptor {
      * @throws SemanticErrorException
      */
     public void addVariable(String identifier, String dataType) throws SemanticErrorException {
-        if (!this.variableDescriptors.containsKey(identifier))
-            this.variableDescriptors.put(identifier, new VariableDescriptor(dataType));
+        int symbol = this.symbols.intern(identifier);
+        if (!this.variableDescriptors.containsKey(symbol))
+            this.variableDescriptors.put(symbol, new VariableDescriptor(dataType));
         else
             throw new SemanticErrorException("Variable '" + identifier + "' already defined");
     }
 
+    /**
+     * Makes the parameter and variable lists read-only.
+     * Adding a parameter or variable afterwards throws
+     * an IllegalStateException.
+     */
+    public void freeze() {
+        this.parameters.freeze();
+        this.variableDescriptors.freeze();
+    }
+
     /**
      * This method receives a parameter list and a return type, and
      * compares these arguments to its own values. If the parameter
@@ -104,10 +144,10 @@ public class MethodDescriptor extends Descriptor {
      * @param returnType return type
      * @throws SemanticErrorException
      */
-    public void checkEqualMethod(HashMap<String, VariableDescriptor> parameters, String returnType) throws SemanticErrorException {
+    public void checkEqualMethod(SymbolMap<VariableDescriptor> parameters, String returnType) throws SemanticErrorException {
         // get parameters types list
-        List<VariableDescriptor> thisParametersTypes = new ArrayList<VariableDescriptor>(this.parameters.values());
-        List<VariableDescriptor> parametersTypes = new ArrayList<VariableDescriptor>(parameters.values());
+        List<VariableDescriptor> thisParametersTypes = this.parameters.values();
+        List<VariableDescriptor> parametersTypes = parameters.values();
         // check if both parameter lists are the same
         if (thisParametersTypes.equals(parametersTypes))
             throw new SemanticErrorException("Parameter type list already defined");
@@ -129,27 +169,27 @@ public class MethodDescriptor extends Descriptor {
         buf.append(prefix).append("Return type: ").append(this.type).append("\n");
         // get parameters
         buf.append(prefix).append("Parameters:").append("\n");
-        for (Map.Entry<String, VariableDescriptor> entry : this.parameters.entrySet()) {
+        for (int i = 0; i < this.parameters.size(); i++) {
             buf.append(prefix).append("  Parameter Name: ");
             // get parameter name
-            buf.append(entry.getKey()).append("\n");
+            buf.append(this.symbols.name(this.parameters.keyAt(i))).append("\n");
             // get all descriptor with the same name
-            buf.append(entry.getValue().dump(prefix + "    ")).append("\n");
+            buf.append(this.parameters.valueAt(i).dump(prefix + "    ")).append("\n");
         }
 
         // get local variable descriptors
         buf.append(prefix).append("Local Variables:").append("\n");
-        for (Map.Entry<String, VariableDescriptor> entry : this.variableDescriptors.entrySet()) {
+        for (int i = 0; i < this.variableDescriptors.size(); i++) {
             buf.append(prefix).append("  Variable Name: ");
             // get variable name
-            buf.append(entry.getKey()).append("\n");
+            buf.append(this.symbols.name(this.variableDescriptors.keyAt(i))).append("\n");
             // get all descriptor with the same name
-            buf.append(entry.getValue().dump(prefix + "    ")).append("\n");
+            buf.append(this.variableDescriptors.valueAt(i).dump(prefix + "    ")).append("\n");
         }
         return buf.toString();
     }
 
-    public HashMap<String, VariableDescriptor> getParameters() {
+    public SymbolMap<VariableDescriptor> getParameters() {
         return this.parameters;
     }
 
@@ -160,10 +200,9 @@ public class MethodDescriptor extends Descriptor {
      * @see VariableDescriptor
      */
     public LinkedList<String> getStringParameters() {
-        LinkedList<VariableDescriptor> parameterTypes = new LinkedList<VariableDescriptor>(this.parameters.values());
         LinkedList<String> returnTypes = new LinkedList<>();
-        for (VariableDescriptor parameter : parameterTypes) {
-            returnTypes.add(parameter.getType());
+        for (int i = 0; i < this.parameters.size(); i++) {
+            returnTypes.add(this.parameters.valueAt(i).getType());
         }
         return returnTypes;
     }
@@ -172,7 +211,7 @@ public class MethodDescriptor extends Descriptor {
      * Getter method for parameter list
      * @return parameter list
      */
-    public HashMap<String, VariableDescriptor> getVariableDescriptors() {
+    public SymbolMap<VariableDescriptor> getVariableDescriptors() {
         return variableDescriptors;
     }
 }
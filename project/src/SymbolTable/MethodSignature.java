@@ -0,0 +1,100 @@
+package SymbolTable;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <h1>Method Signature</h1>
+ * <p>Key used for overload resolution. It consists of a
+ * method (or import) identifier and its parameter type
+ * vector, i.e 'foo' and [int, boolean].</p>
+ * <p>The hash is computed once, and a signature can be
+ * compared with an identifier and a parameter type list
+ * without building a new signature.</p>
+ * @see SignatureIndex
+ */
+public final class MethodSignature {
+
+    /**
+     * Method identifier
+     */
+    private final String identifier;
+    /**
+     * Parameter types in declaration order
+     */
+    private final String[] parameterTypes;
+    /**
+     * Precomputed hash
+     */
+    private final int hash;
+
+    /**
+     * Constructor
+     * @param identifier method identifier
+     * @param parameterTypes parameter types in declaration order
+     */
+    public MethodSignature(String identifier, String[] parameterTypes) {
+        this.identifier = identifier;
+        this.parameterTypes = parameterTypes;
+        this.hash = hash(identifier, Arrays.asList(parameterTypes));
+    }
+
+    /**
+     * Computes the hash of a signature without building it
+     * @param identifier method identifier
+     * @param parameterTypes List of parameter types
+     * @return signature hash
+     */
+    public static int hash(String identifier, List<String> parameterTypes) {
+        int hash = identifier.hashCode();
+        // unresolved argument types (null) never match but must still be hashed
+        for (String parameterType : parameterTypes)
+            hash = 31 * hash + (parameterType == null ? 0 : parameterType.hashCode());
+        return hash;
+    }
+
+    /**
+     * Compares this signature with an identifier and a parameter type list
+     * @param identifier method identifier
+     * @param parameterTypes List of parameter types
+     * @return true if both have the same identifier and parameter types
+     */
+    public boolean matches(String identifier, List<String> parameterTypes) {
+        if (!this.identifier.equals(identifier) || this.parameterTypes.length != parameterTypes.size())
+            return false;
+        int index = 0;
+        for (String parameterType : parameterTypes) {
+            if (!this.parameterTypes[index++].equals(parameterType))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Getter method for identifier
+     * @return method identifier
+     */
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof MethodSignature))
+            return false;
+        MethodSignature that = (MethodSignature) o;
+        return this.hash == that.hash && this.identifier.equals(that.identifier) && Arrays.equals(this.parameterTypes, that.parameterTypes);
+    }
+
+    @Override
+    public String toString() {
+        return identifier + "(" + String.join(", ", parameterTypes) + ")";
+    }
+}
@@ -0,0 +1,75 @@
+package SymbolTable;
+
+import java.util.List;
+
+/**
+ * <h1>Signature Index</h1>
+ * <p>Open addressing hash table mapping a method signature
+ * to its descriptor. Keys and values are kept in two flat
+ * arrays and collisions are solved by linear probing.</p>
+ * <p>Lookups take an identifier and a parameter type list
+ * and do not allocate.</p>
+ * @param <D> descriptor type
+ * @see MethodSignature
+ */
+class SignatureIndex<D extends Descriptor> {
+
+    /**
+     * Signatures, null for empty slots
+     */
+    private final MethodSignature[] keys;
+    /**
+     * Descriptors, in the same slot as their signature
+     */
+    private final Descriptor[] values;
+    /**
+     * keys.length - 1, keys.length is a power of two
+     */
+    private final int mask;
+
+    /**
+     * Constructor
+     * @param expectedSize number of signatures to be indexed
+     */
+    SignatureIndex(int expectedSize) {
+        // keep the load factor at or below 1/2
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 1) * 2 - 1) << 1;
+        this.keys = new MethodSignature[capacity];
+        this.values = new Descriptor[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Adds a signature to the index. If the signature is
+     * already present the first descriptor is kept.
+     * @param signature method signature
+     * @param descriptor method descriptor
+     */
+    void put(MethodSignature signature, D descriptor) {
+        int slot = signature.hashCode() & mask;
+        while (keys[slot] != null) {
+            if (keys[slot].equals(signature))
+                return;
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = signature;
+        values[slot] = descriptor;
+    }
+
+    /**
+     * Finds the descriptor of a signature
+     * @param identifier method identifier
+     * @param parameterTypes List of parameter types
+     * @return descriptor if found, null otherwise
+     */
+    @SuppressWarnings("unchecked")
+    D get(String identifier, List<String> parameterTypes) {
+        int slot = MethodSignature.hash(identifier, parameterTypes) & mask;
+        while (keys[slot] != null) {
+            if (keys[slot].matches(identifier, parameterTypes))
+                return (D) values[slot];
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+}
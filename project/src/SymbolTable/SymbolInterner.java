@@ -0,0 +1,165 @@
+package SymbolTable;
+
+/**
+ * <h1>Symbol Interner</h1>
+ * <p>Assigns every distinct name of a compilation a small
+ * integer id, starting at 0. The lexer interns identifiers
+ * as it reads them, the parser stores the id in the AST
+ * nodes and later phases key their maps by it.</p>
+ * <p>Names are kept in an open addressing table, so a name
+ * can be interned from the lexer's characters without
+ * building a String when it was already seen.</p>
+ * @see SymbolMap
+ */
+public class SymbolInterner {
+
+    /**
+     * Initial capacity, must be a power of two
+     */
+    private static final int INITIAL_CAPACITY = 256;
+
+    /**
+     * Name of each symbol id
+     */
+    private String[] names = new String[INITIAL_CAPACITY / 2];
+    /**
+     * Hash table: symbol id + 1 of each slot, 0 if empty
+     */
+    private int[] slots = new int[INITIAL_CAPACITY];
+    /**
+     * Number of interned names
+     */
+    private int size = 0;
+
+    /**
+     * Get the id of a name, adding it if not present
+     * @param name name to intern
+     * @return symbol id
+     */
+    public int intern(String name) {
+        int slot = this.findSlot(name);
+        if (this.slots[slot] == 0)
+            return this.add(slot, name);
+        return this.slots[slot] - 1;
+    }
+
+    /**
+     * Get the id of a name held in a char array, adding it if
+     * not present. A String is only built for new names.
+     * @param chars name characters
+     * @param length number of characters
+     * @param hash String hash of the characters
+     * @return symbol id
+     */
+    public int intern(char[] chars, int length, int hash) {
+        int mask = this.slots.length - 1;
+        int slot = spread(hash) & mask;
+        for (int id; (id = this.slots[slot]) != 0; slot = (slot + 1) & mask) {
+            String name = this.names[id - 1];
+            if (name.hashCode() == hash && regionEquals(name, chars, length))
+                return id - 1;
+        }
+        return this.add(slot, new String(chars, 0, length));
+    }
+
+    /**
+     * Get the id of a name without adding it
+     * @param name name to find
+     * @return symbol id, -1 if the name was never interned
+     */
+    public int find(String name) {
+        return this.slots[this.findSlot(name)] - 1;
+    }
+
+    /**
+     * Get the name of a symbol id
+     * @param id symbol id
+     * @return interned name
+     */
+    public String name(int id) {
+        return this.names[id];
+    }
+
+    /**
+     * Getter method for size
+     * @return number of interned names
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Finds the slot of a name
+     * @param name name to find
+     * @return slot holding the name, or the empty slot where it belongs
+     */
+    private int findSlot(String name) {
+        int mask = this.slots.length - 1;
+        int slot = spread(name.hashCode()) & mask;
+        for (int id; (id = this.slots[slot]) != 0; slot = (slot + 1) & mask) {
+            String other = this.names[id - 1];
+            if (other == name || other.equals(name))
+                break;
+        }
+        return slot;
+    }
+
+    /**
+     * Adds a name in an empty slot, growing the table when half full
+     * @param slot empty slot where the name belongs
+     * @param name name to add
+     * @return new symbol id
+     */
+    private int add(int slot, String name) {
+        if (this.size == this.names.length) {
+            String[] newNames = new String[this.names.length * 2];
+            System.arraycopy(this.names, 0, newNames, 0, this.size);
+            this.names = newNames;
+            this.rehash();
+            slot = this.findSlot(name);
+        }
+        this.names[this.size] = name;
+        this.slots[slot] = ++this.size;
+        return this.size - 1;
+    }
+
+    /**
+     * Rebuilds the hash table with twice the capacity
+     */
+    private void rehash() {
+        this.slots = new int[this.slots.length * 2];
+        int mask = this.slots.length - 1;
+        for (int id = 0; id < this.size; id++) {
+            int slot = spread(this.names[id].hashCode()) & mask;
+            while (this.slots[slot] != 0)
+                slot = (slot + 1) & mask;
+            this.slots[slot] = id + 1;
+        }
+    }
+
+    /**
+     * Spreads the high bits of a hash to the low ones
+     * @param hash String hash
+     * @return spread hash
+     */
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Compares a name with the first characters of a char array
+     * @param name name
+     * @param chars characters
+     * @param length number of characters
+     * @return true if both have the same characters
+     */
+    private static boolean regionEquals(String name, char[] chars, int length) {
+        if (name.length() != length)
+            return false;
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != chars[i])
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,194 @@
+package SymbolTable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <h1>Symbol Map</h1>
+ * <p>Map from symbol ids to values. Keys are primitive ints,
+ * so lookups neither box nor compare strings. Entries are
+ * kept in insertion order, which is the order parameters
+ * are declared in.</p>
+ * <p>Once frozen the map is read-only and can be shared by
+ * several threads without locking.</p>
+ * @param <V> value type
+ * @see SymbolInterner
+ */
+public class SymbolMap<V> {
+
+    /**
+     * Symbol id of each entry, in insertion order
+     */
+    private int[] keys;
+    /**
+     * Value of each entry, in insertion order
+     */
+    private Object[] values;
+    /**
+     * Hash table: entry index + 1 of each slot, 0 if empty
+     */
+    private int[] slots;
+    /**
+     * Number of entries
+     */
+    private int size = 0;
+    /**
+     * True once the map is read-only
+     */
+    private boolean frozen = false;
+
+    /**
+     * Constructor
+     */
+    public SymbolMap() {
+        this.keys = new int[4];
+        this.values = new Object[4];
+        this.slots = new int[8];
+    }
+
+    /**
+     * Get the value mapped to a symbol id
+     * @param key symbol id
+     * @return value, null if not mapped (or if key is negative)
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        if (key < 0)
+            return null;
+        int entry = this.slots[this.findSlot(key)];
+        return entry == 0 ? null : (V) this.values[entry - 1];
+    }
+
+    /**
+     * Get the entry index of a symbol id
+     * @param key symbol id
+     * @return entry index, in insertion order, -1 if not mapped
+     */
+    public int indexOf(int key) {
+        if (key < 0)
+            return -1;
+        return this.slots[this.findSlot(key)] - 1;
+    }
+
+    /**
+     * Checks if a symbol id is mapped
+     * @param key symbol id
+     * @return true if mapped
+     */
+    public boolean containsKey(int key) {
+        return key >= 0 && this.slots[this.findSlot(key)] != 0;
+    }
+
+    /**
+     * Maps a symbol id to a value, replacing the previous value if any
+     * @param key symbol id
+     * @param value value
+     * @throws IllegalStateException if the map is frozen
+     */
+    public void put(int key, V value) {
+        if (this.frozen)
+            throw new IllegalStateException("Symbol map is frozen");
+        int slot = this.findSlot(key);
+        if (this.slots[slot] != 0) {
+            this.values[this.slots[slot] - 1] = value;
+            return;
+        }
+        if (this.size == this.keys.length) {
+            this.keys = Arrays.copyOf(this.keys, this.size * 2);
+            this.values = Arrays.copyOf(this.values, this.size * 2);
+            this.rehash();
+            slot = this.findSlot(key);
+        }
+        this.keys[this.size] = key;
+        this.values[this.size] = value;
+        this.slots[slot] = ++this.size;
+    }
+
+    /**
+     * Makes the map read-only, trimming the entry arrays to size
+     */
+    public void freeze() {
+        if (this.frozen)
+            return;
+        this.keys = Arrays.copyOf(this.keys, this.size);
+        this.values = Arrays.copyOf(this.values, this.size);
+        this.frozen = true;
+    }
+
+    /**
+     * Checks if the map is read-only
+     * @return true if frozen
+     */
+    public boolean isFrozen() {
+        return this.frozen;
+    }
+
+    /**
+     * Getter method for size
+     * @return number of entries
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Get the symbol id of an entry
+     * @param index entry index, in insertion order
+     * @return symbol id
+     */
+    public int keyAt(int index) {
+        return this.keys[index];
+    }
+
+    /**
+     * Get the value of an entry
+     * @param index entry index, in insertion order
+     * @return value
+     */
+    @SuppressWarnings("unchecked")
+    public V valueAt(int index) {
+        return (V) this.values[index];
+    }
+
+    /**
+     * Get all values
+     * @return values in insertion order
+     */
+    @SuppressWarnings("unchecked")
+    public List<V> values() {
+        List<V> list = new ArrayList<>(this.size);
+        for (int i = 0; i < this.size; i++)
+            list.add((V) this.values[i]);
+        return list;
+    }
+
+    /**
+     * Finds the slot of a symbol id
+     * @param key symbol id
+     * @return slot holding the key, or the empty slot where it belongs
+     */
+    private int findSlot(int key) {
+        int mask = this.slots.length - 1;
+        int slot = (key * 0x9E3779B9 >>> 16) & mask;
+        for (int entry; (entry = this.slots[slot]) != 0; slot = (slot + 1) & mask) {
+            if (this.keys[entry - 1] == key)
+                break;
+        }
+        return slot;
+    }
+
+    /**
+     * Rebuilds the hash table with twice the capacity
+     */
+    private void rehash() {
+        this.slots = new int[this.slots.length * 2];
+        int mask = this.slots.length - 1;
+        for (int entry = 0; entry < this.size; entry++) {
+            int slot = (this.keys[entry] * 0x9E3779B9 >>> 16) & mask;
+            while (this.slots[slot] != 0)
+                slot = (slot + 1) & mask;
+            this.slots[slot] = entry + 1;
+        }
+    }
+}
@@ -2,8 +2,11 @@ package SymbolTable;
 
 import Exceptions.SemanticErrorException;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -13,6 +16,13 @@ import java.util.Map;
  * and methods.</p>
  * <p>This is a vital part of semantic analysis and lookups
  * during code generation</p>
+ * <p>The table is filled by the SymbolTableBuilder and then
+ * frozen: its maps and descriptor lists are compacted into
+ * read-only structures and the overload indexes are built, so
+ * the analysis and code generation threads share it without
+ * locking. Every structural change after that throws an
+ * IllegalStateException.</p>
+ * @see #freeze()
  */
 public class SymbolTable {
 
@@ -24,33 +34,71 @@ public class SymbolTable {
      * Name of the extended class (if any)
      */
     private String extendedClassName;
+    /**
+     * Names of the compilation (identifier -> symbol id)
+     */
+    private final SymbolInterner symbols;
     /**
      * Attribute list
-     * identifier -> < data type >
+     * symbol id -> < data type >
      */
-    private HashMap<String, VariableDescriptor> variableDescriptors;
+    private SymbolMap<VariableDescriptor> variableDescriptors;
     /**
      * Declared Methods
      * identifier -> < return data type, list of params, list of local variables >
      */
-    private HashMap<String, LinkedList<MethodDescriptor>> methodDescriptors;
+    private Map<String, List<MethodDescriptor>> methodDescriptors;
     /**
      * Imported resources
      * identifier -> < isMethod, isStatic, return data type, list of params >
      */
-    private HashMap<String, LinkedList<ImportDescriptor>> importDescriptors;
+    private Map<String, List<ImportDescriptor>> importDescriptors;
+    /**
+     * Method overload resolution index
+     * null if it must be rebuilt
+     */
+    private SignatureIndex<MethodDescriptor> methodIndex;
+    /**
+     * Import overload resolution index
+     * null if it must be rebuilt
+     */
+    private SignatureIndex<ImportDescriptor> importIndex;
+    /**
+     * True once the table is read-only
+     */
+    private boolean frozen = false;
 
     /**
      * Constructor
+     * @param symbols names of the compilation, shared with the AST
      */
-    public SymbolTable() {
+    public SymbolTable(SymbolInterner symbols) {
         this.className = "";
         this.extendedClassName = "";
+        this.symbols = symbols;
         this.methodDescriptors = new HashMap<>();
-        this.variableDescriptors = new HashMap<>();
+        this.variableDescriptors = new SymbolMap<>();
         this.importDescriptors = new HashMap<>();
     }
 
+    /**
+     * Find class attribute with the name passed as argument.
+     * @param variableIdentifier identifier
+     * @return Variable Descriptor if found, null otherwise
+     */
+    public VariableDescriptor findAttribute(String variableIdentifier) {
+        return this.variableDescriptors.get(this.symbols.find(variableIdentifier));
+    }
+
+    /**
+     * Find class attribute with the symbol id passed as argument.
+     * @param variableSymbol identifier symbol id
+     * @return Variable Descriptor if found, null otherwise
+     */
+    public VariableDescriptor findAttribute(int variableSymbol) {
+        return this.variableDescriptors.get(variableSymbol);
+    }
+
     /**
      * Lookup class attribute with the name passed as
      * argument. A SemanticErrorException is thrown if
@@ -60,10 +108,24 @@ public class SymbolTable {
      * @throws SemanticErrorException if not found
      */
     public VariableDescriptor lookupAttribute(String variableIdentifier) throws SemanticErrorException {
-        if (!this.variableDescriptors.containsKey(variableIdentifier))
+        VariableDescriptor descriptor = this.findAttribute(variableIdentifier);
+        if (descriptor == null)
             throw new SemanticErrorException("Variable '" + variableIdentifier + "' not defined");
-        else
-            return this.variableDescriptors.get(variableIdentifier);
+        return descriptor;
+    }
+
+    /**
+     * Find class method with the identifier and parameters
+     * type list passed as argument.
+     * @param methodIdentifier identifier
+     * @param parameterTypes List of parameter types
+     * @return Method Descriptor if found, null otherwise
+     */
+    public MethodDescriptor findMethod(String methodIdentifier, LinkedList<String> parameterTypes) {
+        // built before any concurrent lookup, see buildIndexes()
+        if (this.methodIndex == null)
+            this.methodIndex = buildIndex(this.methodDescriptors);
+        return this.methodIndex.get(methodIdentifier, parameterTypes);
     }
 
     /**
@@ -76,29 +138,30 @@ public class SymbolTable {
      * @throws SemanticErrorException if not found
      */
     public MethodDescriptor lookupMethod(String methodIdentifier, LinkedList<String> parameterTypes) throws SemanticErrorException {
-        // build error message
-        StringBuilder message = new StringBuilder(methodIdentifier + "(");
-        message.append(String.join(", ", parameterTypes));
-        message.append(")");
-        // if method name does not exist throw error
-        if (!this.methodDescriptors.containsKey(methodIdentifier))
-            throw new SemanticErrorException("Method '" + message + "' not defined");
-        // methodIdentifier exists, now we must check for parameter types
-        // find method in possible method descriptors
-        LinkedList<MethodDescriptor> possibleMethods = this.methodDescriptors.get(methodIdentifier);
-        for (MethodDescriptor possibleMethod : possibleMethods) {
-            // get List of parameter types
-            LinkedList<String> possibleParameterTypes = possibleMethod.getStringParameters();
-            if (possibleParameterTypes.equals(parameterTypes))
-                return possibleMethod;
-        }
-        // if method parameter types do not match any of the declared
-        // then the method is not defined
-        throw new SemanticErrorException("Method '" + message + "' not defined");
+        MethodDescriptor descriptor = this.findMethod(methodIdentifier, parameterTypes);
+        // if method name or parameter types do not match
+        // any of the declared then the method is not defined
+        if (descriptor == null)
+            throw new SemanticErrorException("Method '" + signature(methodIdentifier, parameterTypes) + "' not defined");
+        return descriptor;
     }
 
     /**
-     * Lookup class method with the identifier and parameters
+     * Find imported method with the identifier and parameters
+     * type list passed as argument.
+     * @param importIdentifier import identifier
+     * @param parameterTypes List of parameter types
+     * @return Import Descriptor if found, null otherwise
+     */
+    public ImportDescriptor findImport(String importIdentifier, LinkedList<String> parameterTypes) {
+        // built before any concurrent lookup, see buildIndexes()
+        if (this.importIndex == null)
+            this.importIndex = buildIndex(this.importDescriptors);
+        return this.importIndex.get(importIdentifier, parameterTypes);
+    }
+
+    /**
+     * Lookup imported method with the identifier and parameters
      * type list passed as argument. A SemanticErrorException
      * is thrown if not found.
      * @param importIdentifier import identifier
@@ -107,25 +170,142 @@ public class SymbolTable {
      * @throws SemanticErrorException if not found
      */
     public ImportDescriptor lookupImport(String importIdentifier, LinkedList<String> parameterTypes) throws SemanticErrorException {
-        // build error message
-        StringBuilder message = new StringBuilder(importIdentifier + "(");
-        message.append(String.join(", ", parameterTypes));
-        message.append(")");
-        // if method name does not exist throw error
-        if (!this.importDescriptors.containsKey(importIdentifier))
-            throw new SemanticErrorException("Method '" + message + "' not defined");
-        // methodIdentifier exists, now we must check for parameter types
-        // find method in possible method descriptors
-        LinkedList<ImportDescriptor> possibleImports = this.importDescriptors.get(importIdentifier);
-        for (ImportDescriptor possibleImport : possibleImports) {
-            // get List of parameter types
-            LinkedList<String> possibleParameterTypes = possibleImport.getStringParameters();
-            if (possibleParameterTypes.equals(parameterTypes))
-                return possibleImport;
+        ImportDescriptor descriptor = this.findImport(importIdentifier, parameterTypes);
+        // if import name or parameter types do not match
+        // any of the declared then the method is not defined
+        if (descriptor == null)
+            throw new SemanticErrorException("Method '" + signature(importIdentifier, parameterTypes) + "' not defined");
+        return descriptor;
+    }
+
+    /**
+     * Builds the overload resolution index of a descriptor map.
+     * Descriptors with the same signature keep declaration order,
+     * so the first one declared is found.
+     * @param descriptors identifier -> descriptors with that identifier
+     * @param <D> descriptor type
+     * @return signature index
+     */
+    private static <D extends Descriptor> SignatureIndex<D> buildIndex(Map<String, List<D>> descriptors) {
+        int size = 0;
+        for (List<D> overloads : descriptors.values())
+            size += overloads.size();
+        SignatureIndex<D> index = new SignatureIndex<>(size);
+        for (Map.Entry<String, List<D>> entry : descriptors.entrySet()) {
+            for (D descriptor : entry.getValue())
+                index.put(new MethodSignature(entry.getKey(), parameterTypes(descriptor)), descriptor);
+        }
+        return index;
+    }
+
+    /**
+     * Builds the overload indexes that are missing, which the
+     * lookups would otherwise build lazily. Must be called before
+     * several threads look methods or imports up, so that no
+     * lookup writes.
+     */
+    public void buildIndexes() {
+        if (this.methodIndex == null)
+            this.methodIndex = buildIndex(this.methodDescriptors);
+        if (this.importIndex == null)
+            this.importIndex = buildIndex(this.importDescriptors);
+    }
+
+    /**
+     * Compacts the table into read-only structures: the attribute
+     * and variable maps are trimmed, the descriptor lists become
+     * unmodifiable array lists and both overload indexes are built.
+     * Lookups never write afterwards, so the table can be shared
+     * by several threads without locking.
+     * <p>Only the per-analysis flags of the descriptors (initialised,
+     * constant value) remain writable.</p>
+     */
+    public void freeze() {
+        if (this.frozen)
+            return;
+        this.variableDescriptors.freeze();
+        this.methodDescriptors = freezeDescriptors(this.methodDescriptors);
+        for (List<MethodDescriptor> overloads : this.methodDescriptors.values()) {
+            for (MethodDescriptor method : overloads)
+                method.freeze();
+        }
+        this.importDescriptors = freezeDescriptors(this.importDescriptors);
+        for (List<ImportDescriptor> overloads : this.importDescriptors.values()) {
+            for (ImportDescriptor descriptor : overloads)
+                descriptor.freeze();
         }
-        // if method parameter types do not match any of the declared
-        // then the method is not defined
-        throw new SemanticErrorException("Method '" + message + "' not defined");
+        this.methodIndex = null;
+        this.importIndex = null;
+        this.buildIndexes();
+        this.frozen = true;
+    }
+
+    /**
+     * Checks if the table is read-only
+     * @return true if frozen
+     */
+    public boolean isFrozen() {
+        return this.frozen;
+    }
+
+    /**
+     * Copies a descriptor map into an unmodifiable map of
+     * unmodifiable, exactly sized lists
+     * @param descriptors identifier -> descriptors with that identifier
+     * @param <D> descriptor type
+     * @return read-only copy
+     */
+    private static <D extends Descriptor> Map<String, List<D>> freezeDescriptors(Map<String, List<D>> descriptors) {
+        // same capacity as the original, so the iteration order is kept
+        HashMap<String, List<D>> frozen = new HashMap<>();
+        for (Map.Entry<String, List<D>> entry : descriptors.entrySet())
+            frozen.put(entry.getKey(), Collections.unmodifiableList(new ArrayList<>(entry.getValue())));
+        return Collections.unmodifiableMap(frozen);
+    }
+
+    /**
+     * Throws if the table is read-only
+     * @throws IllegalStateException if the table is frozen
+     */
+    private void checkNotFrozen() {
+        if (this.frozen)
+            throw new IllegalStateException("Symbol table is frozen");
+    }
+
+    /**
+     * Get the last descriptor declared with an identifier
+     * @param descriptors identifier -> descriptors with that identifier
+     * @param identifier identifier
+     * @param <D> descriptor type
+     * @return last descriptor declared
+     */
+    private static <D extends Descriptor> D last(Map<String, List<D>> descriptors, String identifier) {
+        List<D> overloads = descriptors.get(identifier);
+        return overloads.get(overloads.size() - 1);
+    }
+
+    /**
+     * Get the parameter types of a method or import descriptor
+     * @param descriptor method or import descriptor
+     * @return parameter types, empty for constructor imports
+     */
+    private static String[] parameterTypes(Descriptor descriptor) {
+        if (descriptor instanceof MethodDescriptor)
+            return ((MethodDescriptor) descriptor).getStringParameters().toArray(new String[0]);
+        ImportDescriptor importDescriptor = (ImportDescriptor) descriptor;
+        if (!importDescriptor.isMethod())
+            return new String[0];
+        return importDescriptor.getStringParameters().toArray(new String[0]);
+    }
+
+    /**
+     * Builds the signature used in error messages, i.e 'foo(int, boolean)'
+     * @param identifier method identifier
+     * @param parameterTypes List of parameter types
+     * @return method signature
+     */
+    private static String signature(String identifier, LinkedList<String> parameterTypes) {
+        return identifier + "(" + String.join(", ", parameterTypes) + ")";
     }
 
     /**
@@ -134,10 +314,13 @@ public class SymbolTable {
      * @param identifier attribute identifier
      * @param dataType attribute data type
      * @throws SemanticErrorException if the identifier is already in use
+     * @throws IllegalStateException if the table is frozen
      */
     public void addVariable(String identifier, String dataType) throws SemanticErrorException {
-        if (!this.variableDescriptors.containsKey(identifier))
-            this.variableDescriptors.put(identifier, new VariableDescriptor(dataType));
+        this.checkNotFrozen();
+        int symbol = this.symbols.intern(identifier);
+        if (!this.variableDescriptors.containsKey(symbol))
+            this.variableDescriptors.put(symbol, new VariableDescriptor(dataType));
         else
             throw new SemanticErrorException("Variable '" + identifier + "' already defined");
     }
@@ -146,13 +329,16 @@ public class SymbolTable {
      * Adds a method to the method list.
      * @param identifier method identifier
      * @param dataType method return data type
+     * @throws IllegalStateException if the table is frozen
      */
     public void addMethod(String identifier, String dataType) {
+        this.checkNotFrozen();
         // no methods with the name 'identifier'
         if (!this.methodDescriptors.containsKey(identifier))
-            this.methodDescriptors.put(identifier, new LinkedList<>());
+            this.methodDescriptors.put(identifier, new ArrayList<>(1));
         // methods with the name 'identifier' are already present
-        this.methodDescriptors.get(identifier).add(new MethodDescriptor(dataType));
+        this.methodDescriptors.get(identifier).add(new MethodDescriptor(dataType, this.symbols));
+        this.methodIndex = null;
     }
 
     /**
@@ -163,10 +349,13 @@ public class SymbolTable {
      * @param parameterIdentifier parameter identifier
      * @param dataType parameter data type
      * @throws SemanticErrorException if the parameter identifier is already in use
+     * @throws IllegalStateException if the table is frozen
      */
     public void addMethodParameter(String methodIdentifier, String parameterIdentifier, String dataType) throws SemanticErrorException {
+        this.checkNotFrozen();
+        this.methodIndex = null;
         try {
-            this.methodDescriptors.get(methodIdentifier).getLast().addParameter(parameterIdentifier, dataType);
+            last(this.methodDescriptors, methodIdentifier).addParameter(parameterIdentifier, dataType);
         } catch (SemanticErrorException e) {
             throw new SemanticErrorException(e.getMessage() + " in method '" + methodIdentifier + "'");
         }
@@ -180,10 +369,12 @@ public class SymbolTable {
      * @param variableIdentifier variable identifier
      * @param dataType variable data type
      * @throws SemanticErrorException if the identifier is already in use
+     * @throws IllegalStateException if the table is frozen
      */
     public void addMethodVariable(String methodIdentifier, String variableIdentifier, String dataType) throws SemanticErrorException {
+        this.checkNotFrozen();
         try {
-            this.methodDescriptors.get(methodIdentifier).getLast().addVariable(variableIdentifier, dataType);
+            last(this.methodDescriptors, methodIdentifier).addVariable(variableIdentifier, dataType);
         } catch (SemanticErrorException e) {
             throw new SemanticErrorException(e.getMessage() + " in method '" + methodIdentifier + "'");
         }
@@ -199,7 +390,7 @@ public class SymbolTable {
      */
     public void checkEqualMethods(String identifier) throws SemanticErrorException {
         // get method descriptor list
-        LinkedList<MethodDescriptor> methods = this.methodDescriptors.get(identifier);
+        List<MethodDescriptor> methods = this.methodDescriptors.get(identifier);
         // cross check parameter list and return type
         for (int firstIndex = 0; firstIndex < methods.size(); firstIndex++) {
             for (int secondIndex = firstIndex + 1; secondIndex < methods.size(); secondIndex++) {
@@ -219,31 +410,39 @@ public class SymbolTable {
      * @param importIdentifier import identifier
      * @param isStatic true if import is static
      * @param isMethod true if import is a method
+     * @throws IllegalStateException if the table is frozen
      */
     public void addImport(String importIdentifier, boolean isStatic, boolean isMethod) {
+        this.checkNotFrozen();
         // no imports with the name 'identifier'
         if (!this.importDescriptors.containsKey(importIdentifier))
-            this.importDescriptors.put(importIdentifier, new LinkedList<>());
+            this.importDescriptors.put(importIdentifier, new ArrayList<>(1));
         // imports with the name 'identifier' are already present
         this.importDescriptors.get(importIdentifier).add(new ImportDescriptor(isStatic, isMethod));
+        this.importIndex = null;
     }
 
     /**
      * Adds an import parameter to the import's parameter list.
      * @param importIdentifier method identifier
      * @param dataType parameter data type
+     * @throws IllegalStateException if the table is frozen
      */
     public void addImportParameter(String importIdentifier, String dataType) {
-        this.importDescriptors.get(importIdentifier).getLast().addParameter(dataType);
+        this.checkNotFrozen();
+        last(this.importDescriptors, importIdentifier).addParameter(dataType);
+        this.importIndex = null;
     }
 
     /**
      * Sets the import's return type
      * @param importIdentifier method identifier
      * @param dataType import's return type
+     * @throws IllegalStateException if the table is frozen
      */
     public void setImportReturnType(String importIdentifier, String dataType) {
-        this.importDescriptors.get(importIdentifier).getLast().setReturnType(dataType);
+        this.checkNotFrozen();
+        last(this.importDescriptors, importIdentifier).setReturnType(dataType);
     }
 
     /**
@@ -256,7 +455,7 @@ public class SymbolTable {
      */
     public void checkEqualImports(String identifier) throws SemanticErrorException {
         // get import descriptor list
-        LinkedList<ImportDescriptor> imports = this.importDescriptors.get(identifier);
+        List<ImportDescriptor> imports = this.importDescriptors.get(identifier);
         // verification only valid for method imports
         LinkedList<ImportDescriptor> methodImports = new LinkedList<>(imports);
         methodImports.removeIf(ImportDescriptor -> !ImportDescriptor.isMethod());
@@ -276,17 +475,17 @@ public class SymbolTable {
 
     /**
      * Getter method for import descriptors
-     * @return import descriptor list
+     * @return import descriptor list, read-only once frozen
      */
-    public HashMap<String, LinkedList<ImportDescriptor>> getImportDescriptors() {
+    public Map<String, List<ImportDescriptor>> getImportDescriptors() {
         return importDescriptors;
     }
 
     /**
      * Getter method for method descriptors
-     * @return method descriptor list
+     * @return method descriptor list, read-only once frozen
      */
-    public HashMap<String, LinkedList<MethodDescriptor>> getMethodDescriptors() {
+    public Map<String, List<MethodDescriptor>> getMethodDescriptors() {
         return methodDescriptors;
     }
 
@@ -294,10 +493,18 @@ public class SymbolTable {
      * Getter method for parameter descriptors
      * @return parameter descriptor list
      */
-    public HashMap<String, VariableDescriptor> getVariableDescriptors() {
+    public SymbolMap<VariableDescriptor> getVariableDescriptors() {
         return variableDescriptors;
     }
 
+    /**
+     * Getter method for symbols
+     * @return names of the compilation
+     */
+    public SymbolInterner getSymbols() {
+        return symbols;
+    }
+
     /**
      * Getter method for class name
      * @return class name
@@ -317,16 +524,20 @@ public class SymbolTable {
     /**
      * Setter method for class name
      * @param className class name to set
+     * @throws IllegalStateException if the table is frozen
      */
     public void setClassName(String className) {
+        this.checkNotFrozen();
         this.className = className;
     }
 
     /**
      * Setter method for extended class name
      * @param extendedClassName extended class name to set
+     * @throws IllegalStateException if the table is frozen
      */
     public void setExtendedClassName(String extendedClassName) {
+        this.checkNotFrozen();
         this.extendedClassName = extendedClassName;
     }
 
@@ -343,7 +554,7 @@ public class SymbolTable {
 
         // Import Descriptors
         System.out.println("Import Descriptors");
-        for (Map.Entry<String, LinkedList<ImportDescriptor>> entry : this.importDescriptors.entrySet()) {
+        for (Map.Entry<String, List<ImportDescriptor>> entry : this.importDescriptors.entrySet()) {
             StringBuilder buf = new StringBuilder(" Import name: ");
             // get import name
             buf.append(entry.getKey()).append("\n");
@@ -355,18 +566,18 @@ public class SymbolTable {
 
         // Variable Descriptors
         System.out.println("Variable Descriptors:");
-        for (Map.Entry<String, VariableDescriptor> entry : this.variableDescriptors.entrySet()) {
+        for (int i = 0; i < this.variableDescriptors.size(); i++) {
             StringBuilder buf = new StringBuilder("  Variable name: ");
             // get variable name
-            buf.append(entry.getKey()).append("\n");
+            buf.append(this.symbols.name(this.variableDescriptors.keyAt(i))).append("\n");
             // get all descriptors with the same name
-            buf.append(entry.getValue().dump("    "));
+            buf.append(this.variableDescriptors.valueAt(i).dump("    "));
             System.out.println(buf.toString());
         }
 
         // Method Descriptors
         System.out.println("\nMethod Descriptors:");
-        for (Map.Entry<String, LinkedList<MethodDescriptor>> entry : this.methodDescriptors.entrySet()) {
+        for (Map.Entry<String, List<MethodDescriptor>> entry : this.methodDescriptors.entrySet()) {
             StringBuilder buf = new StringBuilder("  Method name: ");
             // get method name
             buf.append(entry.getKey()).append("\n");
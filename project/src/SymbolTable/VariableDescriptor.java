@@ -15,7 +15,7 @@ public class VariableDescriptor extends Descriptor {
 
     public VariableDescriptor(String dataType) {
         this.initialised = false;
-        this.type = dataType;
+        this.type = JmmType.of(dataType);
         this.constant = true;
     }
 
@@ -63,6 +63,6 @@ public class VariableDescriptor extends Descriptor {
 
         VariableDescriptor that = (VariableDescriptor) o;
 
-        return this.type.equals(that.type);
+        return this.type == that.type;
     }
 }
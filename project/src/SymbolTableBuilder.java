@@ -1,9 +1,12 @@
 import Exceptions.SemanticErrorException;
+import SymbolTable.SymbolInterner;
 import SymbolTable.SymbolTable;
+import SymbolTable.JmmType;
 import SymbolTable.ImportDescriptor;
 
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 /**
  * <h1>Symbol Table Builder</h1>
@@ -40,13 +43,19 @@ public class SymbolTableBuilder implements ParserVisitor {
      */
     private final SymbolTable table;
 
+    /**
+     * Warnings printed, in order
+     */
+    private final ArrayList<String> warnings = new ArrayList<>();
+
     /**
      * Constructor
      * @param root AST root node
+     * @param symbols names of the compilation, used when parsing the AST
      */
-    public SymbolTableBuilder(SimpleNode root) {
+    public SymbolTableBuilder(SimpleNode root, SymbolInterner symbols) {
         this.root = root;
-        this.table = new SymbolTable();
+        this.table = new SymbolTable(symbols);
         this.numErrors = 0;
     }
 
@@ -58,13 +67,23 @@ public class SymbolTableBuilder implements ParserVisitor {
         return numErrors;
     }
 
+    /**
+     * Getter method for the warnings printed
+     * @return printed warnings, in order
+     */
+    public ArrayList<String> getWarnings() {
+        return this.warnings;
+    }
+
     /**
      * Initiator method for symbol table building
-     * @return built symbol table
+     * @return built symbol table, frozen
      */
     public SymbolTable buildSymbolTable() {
         // start visiting nodes from the root
         this.visit(root, null);
+        // compact into read-only structures, shared by the analysis and codegen threads
+        this.table.freeze();
         // return complete symbol table
         return this.table;
     }
@@ -91,7 +110,9 @@ public class SymbolTableBuilder implements ParserVisitor {
      * @param column column the error occurred
      */
     private void printWarning(String message, int line, int column) {
-        System.out.println("SEMANTIC WARNING: " + message + " at line: " + line + ", column: " + column + ".");
+        String warning = "SEMANTIC WARNING: " + message + " at line: " + line + ", column: " + column + ".";
+        System.out.println(warning);
+        this.warnings.add(warning);
     }
 
     @Override
@@ -181,9 +202,10 @@ public class SymbolTableBuilder implements ParserVisitor {
         }
 
         // check for imported types
-        if (!variableType.equals("int") && !variableType.equals("int[]") && !variableType.equals("boolean") && !variableType.equals(this.table.getClassName())) {
+        JmmType type = JmmType.of(variableType);
+        if (type != JmmType.INT && type != JmmType.INT_ARRAY && type != JmmType.BOOLEAN && type != JmmType.of(this.table.getClassName())) {
             // check import table
-            HashMap<String, LinkedList<ImportDescriptor>> importTable = this.table.getImportDescriptors();
+            Map<String, List<ImportDescriptor>> importTable = this.table.getImportDescriptors();
             if (!importTable.containsKey(variableType)) {
                 this.printError("Type '" + variableType + "' not defined", node.line, node.column);
             }
@@ -0,0 +1,26 @@
+/**
+ * <h1>Symbol Token</h1>
+ * <p>IDENTIFIER token read by JmmLexer, which carries the symbol
+ * id the lexer interned its characters to, so the parser actions
+ * do not hash the identifier a second time.</p>
+ * @see JmmLexer
+ */
+public class SymbolToken extends Token {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Symbol id of the identifier
+     */
+    public final int symbol;
+
+    /**
+     * Constructor
+     * @param image identifier
+     * @param symbol symbol id of the identifier
+     */
+    public SymbolToken(String image, int symbol) {
+        super(ParserConstants.IDENTIFIER, image);
+        this.symbol = symbol;
+    }
+}
@@ -4,6 +4,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 
 import static org.junit.Assert.*;
 
@@ -133,6 +135,21 @@ public class CompUtils {
         return mkdir(new File(parentFolder, child));
     }
 
+    /**
+     * Writes a generated source file to the temporary folder.
+     *
+     * @param name
+     *                     name of the file, without the .jmm extension
+     * @param contents
+     *                     source code
+     * @return the file written
+     */
+    public static File writeSource(String name, String contents) throws IOException {
+        File file = new File(getTempFolder("comp_jmm_test"), name + ".jmm");
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
     public static File resourceCopy(String resource, File destinationFolder) {
 
         boolean useResourcePath = true;
@@ -0,0 +1,118 @@
+import java.io.File;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import jasmin.JasminUtils;
+import jasmin.JmmCompiler;
+
+/**
+ * Times the code generated for 'while (i < a.length)' array
+ * traversals. Not a test: run its main method from the project
+ * directory, with the test classpath, on the builds to compare.
+ * The class is compiled, assembled and loaded in this JVM, and
+ * each traversal is timed after a warm up, so the JIT compiles the
+ * loops before they are measured.
+ */
+public class CountedLoopBenchmark {
+
+    private static final String SOURCE = "class LoopBench {\n"
+            + "    public int sum(int[] a) {\n"
+            + "        int i;\n"
+            + "        int s;\n"
+            + "        i = 0;\n"
+            + "        s = 0;\n"
+            + "        while (i < a.length) {\n"
+            + "            s = s + a[i];\n"
+            + "            i = i + 1;\n"
+            + "        }\n"
+            + "        return s;\n"
+            + "    }\n"
+            + "    public int fill(int[] a) {\n"
+            + "        int i;\n"
+            + "        i = 0;\n"
+            + "        while (i < a.length) {\n"
+            + "            a[i] = i * 3;\n"
+            + "            i = i + 1;\n"
+            + "        }\n"
+            + "        return 0;\n"
+            + "    }\n"
+            + "    public int below(int[] a, int limit) {\n"
+            + "        int i;\n"
+            + "        int c;\n"
+            + "        i = 0;\n"
+            + "        c = 0;\n"
+            + "        while (i < a.length) {\n"
+            + "            if (a[i] < limit) {\n"
+            + "                c = c + 1;\n"
+            + "            } else {\n"
+            + "            }\n"
+            + "            i = i + 1;\n"
+            + "        }\n"
+            + "        return c;\n"
+            + "    }\n"
+            + "    public static void main(String[] args) {\n"
+            + "    }\n"
+            + "}\n";
+
+    private static final int LENGTH = 1_000_000;
+    private static final int WARM_UP = 300;
+    private static final int ROUNDS = 25;
+    private static final int CALLS = 20;
+
+    /**
+     * Assembles Jasmin code
+     * @return directory of the class file
+     */
+    private static File assemble(String code) throws Exception {
+        File directory = Files.createTempDirectory("loop_bench").toFile();
+        File jasminFile = new File(directory, "LoopBench.j");
+        Files.write(jasminFile.toPath(), code.getBytes(StandardCharsets.UTF_8));
+        Process jasmin = new ProcessBuilder("java", "-jar", JasminUtils.getJasminJar().getAbsolutePath(),
+                "-d", directory.getAbsolutePath(), jasminFile.getAbsolutePath()).inheritIO().start();
+        if (jasmin.waitFor() != 0)
+            throw new IllegalStateException("jasmin failed");
+        return directory;
+    }
+
+    /**
+     * Times a method, in nanoseconds per array element
+     * @return median of the rounds
+     */
+    private static double time(Object instance, Method method, Object... args) throws Exception {
+        for (int i = 0; i < WARM_UP; i++)
+            method.invoke(instance, args);
+        double[] rounds = new double[ROUNDS];
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < CALLS; i++)
+                method.invoke(instance, args);
+            rounds[round] = (System.nanoTime() - start) / (double) CALLS / LENGTH;
+        }
+        Arrays.sort(rounds);
+        return rounds[ROUNDS / 2];
+    }
+
+    public static void main(String[] args) throws Exception {
+        File source = CompUtils.writeSource("LoopBench", SOURCE);
+        String code;
+        try {
+            code = JmmCompiler.compile(source);
+        } finally {
+            source.delete();
+            new File("out/LoopBench.j").delete();
+        }
+
+        try (URLClassLoader loader = new URLClassLoader(new URL[] { assemble(code).toURI().toURL() })) {
+            Class<?> loopClass = loader.loadClass("LoopBench");
+            Object instance = loopClass.getConstructor().newInstance();
+            int[] array = new int[LENGTH];
+            System.out.printf("fill  %.3f ns/element%n", time(instance, loopClass.getMethod("fill", int[].class), array));
+            System.out.printf("sum   %.3f ns/element%n", time(instance, loopClass.getMethod("sum", int[].class), array));
+            System.out.printf("below %.3f ns/element%n", time(instance, loopClass.getMethod("below", int[].class, int.class), array, LENGTH));
+        }
+    }
+}
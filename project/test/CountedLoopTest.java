@@ -0,0 +1,114 @@
+import static org.junit.Assert.*;
+
+import java.io.File;
+
+import jasmin.CodeGeneratorUtils;
+import jasmin.JasminUtils;
+import jasmin.JmmCompiler;
+import org.junit.Test;
+
+/**
+ * Loops over the length of a local array hoist the length out of the
+ * loop, and loops whose array may change keep reading the length.
+ */
+public class CountedLoopTest {
+
+    private static final String SOURCE = "import static io.println(int) void;\n"
+            + "class Counted {\n"
+            + "    int[] f;\n"
+            + "    public int sum(int[] a) {\n"
+            + "        int i;\n"
+            + "        int s;\n"
+            + "        i = 0;\n"
+            + "        s = 0;\n"
+            + "        while (i < a.length) {\n"
+            + "            s = s + a[i];\n"
+            + "            i = i + 1;\n"
+            + "        }\n"
+            + "        return s;\n"
+            + "    }\n"
+            + "    public int shrink(int[] a) {\n"
+            + "        int i;\n"
+            + "        int s;\n"
+            + "        i = 0;\n"
+            + "        s = 0;\n"
+            + "        while (i < a.length) {\n"
+            + "            s = s + a[i];\n"
+            + "            a = new int[1];\n"
+            + "            i = i + 1;\n"
+            + "        }\n"
+            + "        return s;\n"
+            + "    }\n"
+            + "    public int reset() {\n"
+            + "        f = new int[1];\n"
+            + "        return 0;\n"
+            + "    }\n"
+            + "    public int fieldSum() {\n"
+            + "        int i;\n"
+            + "        int s;\n"
+            + "        int r;\n"
+            + "        f = new int[3];\n"
+            + "        f[0] = 7;\n"
+            + "        f[1] = 8;\n"
+            + "        f[2] = 9;\n"
+            + "        i = 0;\n"
+            + "        s = 0;\n"
+            + "        while (i < f.length) {\n"
+            + "            s = s + f[i];\n"
+            + "            r = this.reset();\n"
+            + "            s = s + r;\n"
+            + "            i = i + 1;\n"
+            + "        }\n"
+            + "        return s;\n"
+            + "    }\n"
+            + "    public static void main(String[] args) {\n"
+            + "        Counted c;\n"
+            + "        int[] a;\n"
+            + "        int i;\n"
+            + "        c = new Counted();\n"
+            + "        a = new int[5];\n"
+            + "        i = 0;\n"
+            + "        while (i < a.length) {\n"
+            + "            a[i] = i + 1;\n"
+            + "            i = i + 1;\n"
+            + "        }\n"
+            + "        io.println(c.sum(a));\n"
+            + "        io.println(c.shrink(a));\n"
+            + "        io.println(c.fieldSum());\n"
+            + "    }\n"
+            + "}\n";
+
+    /**
+     * Counts the array length reads of a method
+     */
+    private static int countLengthReads(String code, String method) {
+        String body = CodeGeneratorUtils.getMethod(code, method);
+        int count = 0;
+        for (String line : body.split("\n")) {
+            if (line.trim().equals("arraylength"))
+                count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void testCountedLoops() throws Exception {
+        File testFile = CompUtils.writeSource("Counted", SOURCE);
+        try {
+            String code = JmmCompiler.compile(testFile);
+
+            // the length of a local array is read once, before the loop
+            assertEquals(1, countLengthReads(code, "sum"));
+            assertTrue(CodeGeneratorUtils.codeContainsExpressionRegex(CodeGeneratorUtils.getMethod(code, "sum"),
+                    "arraylength\\s+istore"));
+            // an array reassigned in the loop, or a field, is read on each test
+            assertEquals(2, countLengthReads(code, "shrink"));
+            assertEquals(2, countLengthReads(code, "fieldSum"));
+
+            JasminUtils.testJasminBase(code, "15\n1\n7", null);
+        } finally {
+            testFile.delete();
+            new File("out/Counted.j").delete();
+        }
+    }
+}
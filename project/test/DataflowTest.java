@@ -0,0 +1,142 @@
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+
+import SymbolTable.SymbolInterner;
+import SymbolTable.SymbolTable;
+import jasmin.CodeGeneratorUtils;
+import jasmin.JasminUtils;
+import jasmin.JmmCompiler;
+import org.junit.Test;
+
+/**
+ * Uses of the dataflow analyses: stores of values never read are
+ * dropped but keep their side effects, and locals read before they
+ * are assigned on every path get a warning.
+ */
+public class DataflowTest {
+
+    private static final String STORES = "import static io.println(int) void;\n"
+            + "class Stores {\n"
+            + "    public int f() {\n"
+            + "        io.println(7);\n"
+            + "        return 1;\n"
+            + "    }\n"
+            + "    public int call() {\n"
+            + "        int x;\n"
+            + "        x = this.f();\n"
+            + "        return 0;\n"
+            + "    }\n"
+            + "    public int division(int a, int b) {\n"
+            + "        int x;\n"
+            + "        x = a / b;\n"
+            + "        return 0;\n"
+            + "    }\n"
+            + "    public int pure(int a, int b) {\n"
+            + "        int x;\n"
+            + "        x = a * b;\n"
+            + "        return 0;\n"
+            + "    }\n"
+            + "    public int element(int v) {\n"
+            + "        int[] a;\n"
+            + "        a = new int[3];\n"
+            + "        a[1] = v;\n"
+            + "        return 0;\n"
+            + "    }\n"
+            + "    public int carried(int n) {\n"
+            + "        int i;\n"
+            + "        int p;\n"
+            + "        p = n - n;\n"
+            + "        i = 0;\n"
+            + "        while (i < n) {\n"
+            + "            io.println(p);\n"
+            + "            p = i * 10;\n"
+            + "            i = i + 1;\n"
+            + "        }\n"
+            + "        return 0;\n"
+            + "    }\n"
+            + "    public static void main(String[] args) {\n"
+            + "        Stores s;\n"
+            + "        int r;\n"
+            + "        s = new Stores();\n"
+            + "        r = s.call();\n"
+            + "        r = s.division(6, 3);\n"
+            + "        r = s.element(5);\n"
+            + "        r = s.carried(3);\n"
+            + "        io.println(r);\n"
+            + "    }\n"
+            + "}\n";
+
+    private static final String WARNINGS = "class Warnings {\n"
+            + "    public int onlyThen(boolean c) {\n"
+            + "        int x;\n"
+            + "        if (c) {\n"
+            + "            x = 1;\n"
+            + "        } else {\n"
+            + "        }\n"
+            + "        return x;\n"
+            + "    }\n"
+            + "    public int bothBranches(boolean c) {\n"
+            + "        int y;\n"
+            + "        if (c) {\n"
+            + "            y = 1;\n"
+            + "        } else {\n"
+            + "            y = 2;\n"
+            + "        }\n"
+            + "        return y;\n"
+            + "    }\n"
+            + "    public static void main(String[] args) {\n"
+            + "    }\n"
+            + "}\n";
+
+    @Test
+    public void testDeadStores() throws Exception {
+        File testFile = CompUtils.writeSource("Stores", STORES);
+        try {
+            String code = JmmCompiler.compile(testFile);
+
+            // the value is not stored, but the call and the division still run
+            assertTrue(CodeGeneratorUtils.codeContainsExpressionRegex(CodeGeneratorUtils.getMethod(code, "call"),
+                    "invokevirtual Stores/f\\(\\)I\\s+pop"));
+            assertTrue(CodeGeneratorUtils.codeContainsExpressionRegex(CodeGeneratorUtils.getMethod(code, "division"),
+                    "idiv\\s+pop"));
+            // nothing is left of a store without side effects
+            assertFalse(CodeGeneratorUtils.getMethod(code, "pure").contains("imul"));
+            // an array element is never a dead store
+            assertTrue(CodeGeneratorUtils.getMethod(code, "element").contains("iastore"));
+
+            // a value read by the next iteration is kept
+            JasminUtils.testJasminBase(code, "7\n0\n0\n10\n0", null);
+        } finally {
+            testFile.delete();
+            new File("out/Stores.j").delete();
+        }
+    }
+
+    @Test
+    public void testDefiniteAssignment() throws Exception {
+        File testFile = CompUtils.writeSource("Warnings", WARNINGS);
+        PrintStream out = System.out;
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            SymbolInterner symbols = new SymbolInterner();
+            Parser parser = new Parser(new JmmLexer(new MappedCharStream(testFile), symbols));
+            parser.setSymbols(symbols);
+            SimpleNode root = parser.parse();
+
+            System.setOut(new PrintStream(output, true));
+            SymbolTableBuilder tableBuilder = new SymbolTableBuilder(root, symbols);
+            SymbolTable table = tableBuilder.buildSymbolTable();
+            assertTrue(new SemanticAnalyser(table, tableBuilder.getNumErrors()).analise(root));
+        } finally {
+            System.setOut(out);
+            testFile.delete();
+        }
+
+        String warnings = output.toString();
+        assertTrue(warnings.contains("Variable 'x' may not have been initialized on every path at line: 8"));
+        assertFalse(warnings.contains("'y'"));
+    }
+}
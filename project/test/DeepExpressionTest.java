@@ -0,0 +1,110 @@
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import SymbolTable.SymbolInterner;
+import SymbolTable.SymbolTable;
+import org.junit.Test;
+
+/**
+ * Very deep expressions: operator chains with tens
+ * of thousands of terms, compiled on a thread with a small stack.
+ */
+public class DeepExpressionTest {
+
+    private static final int TERMS = 50000;
+
+    /**
+     * Stack size of the compiling thread, far less than a
+     * recursive walk of a chain of TERMS operators needs
+     */
+    private static final long STACK_SIZE = 512 * 1024;
+
+    /**
+     * Writes a class whose method returns the given expression
+     */
+    private File writeClass(String name, String type, String expression) throws IOException {
+        return CompUtils.writeSource(name, "class " + name + " {\n public " + type + " deep(int a, boolean b) {\n  return "
+                + expression + ";\n }\n public static void main(String[] args) {\n }\n}\n");
+    }
+
+    /**
+     * Parses, analyses and generates a file
+     * @return generated code
+     */
+    private String compile(File file) throws Exception {
+        SymbolInterner symbols = new SymbolInterner();
+        Parser parser = new Parser(new JmmLexer(new MappedCharStream(file), symbols));
+        parser.setSymbols(symbols);
+        SimpleNode root = parser.parse();
+
+        SymbolTableBuilder tableBuilder = new SymbolTableBuilder(root, symbols);
+        SymbolTable table = tableBuilder.buildSymbolTable();
+        assertTrue(new SemanticAnalyser(table, tableBuilder.getNumErrors()).analise(root));
+
+        CodeGenerator generator = new CodeGenerator(table, root);
+        generator.generateCode();
+        return generator.getOutput().toString();
+    }
+
+    /**
+     * Compiles a chain of TERMS terms joined by an operator on a small stack thread
+     * @return generated code
+     */
+    private String compileChain(String name, String type, String term, String operator) throws Exception {
+        StringBuilder expression = new StringBuilder(term);
+        for (int i = 1; i < TERMS; i++)
+            expression.append(' ').append(operator).append(' ').append(term);
+        File file = this.writeClass(name, type, expression.toString());
+
+        String[] code = new String[1];
+        Throwable[] error = new Throwable[1];
+        Thread thread = new Thread(null, () -> {
+            try {
+                code[0] = this.compile(file);
+            } catch (Throwable e) {
+                error[0] = e;
+            }
+        }, name, STACK_SIZE);
+        try {
+            thread.start();
+            thread.join();
+        } finally {
+            file.delete();
+            new File("out/" + name + ".j").delete();
+        }
+        if (error[0] instanceof StackOverflowError)
+            fail(name + " overflowed the stack");
+        if (error[0] instanceof Exception)
+            throw (Exception) error[0];
+        if (error[0] != null)
+            throw new AssertionError(error[0]);
+        return code[0];
+    }
+
+    /**
+     * Counts the lines of some code that are a given instruction
+     */
+    private static int count(String code, String instruction) {
+        int count = 0;
+        for (String line : code.split("\n")) {
+            if (line.trim().equals(instruction))
+                count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void testDeepArithmetic() throws Exception {
+        assertEquals(TERMS - 1, count(this.compileChain("DeepSum", "int", "a", "+"), "iadd"));
+        assertEquals(TERMS - 1, count(this.compileChain("DeepSub", "int", "a", "-"), "isub"));
+        assertEquals(TERMS - 1, count(this.compileChain("DeepMult", "int", "a", "*"), "imul"));
+    }
+
+    @Test
+    public void testDeepLogic() throws Exception {
+        String code = this.compileChain("DeepAnd", "boolean", "b", "&&");
+        assertTrue(code.contains("false_and_" + (TERMS - 2) + ":"));
+    }
+}
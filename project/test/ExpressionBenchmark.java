@@ -0,0 +1,97 @@
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import SymbolTable.SymbolInterner;
+
+/**
+ * Times the parsing of expression heavy sources. Not a test: run
+ * its main method from the project directory, with the test
+ * classpath, on the builds to compare. The same generated source
+ * is parsed repeatedly in this JVM, timed after a warm up. The
+ * optional argument is the number of methods of the source.
+ */
+public class ExpressionBenchmark {
+
+    private static final int METHODS = 200;
+    private static final int STATEMENTS = 50;
+    private static final int OPERANDS = 12;
+    private static final int WARM_UP = 30;
+    private static final int ROUNDS = 25;
+
+    private static final String[] OPERATORS = { "+", "-", "*", "/", "<", "&&" };
+    private static final String[] PRIMARIES = { "a", "b", "c", "d", "1", "42", "this.f(a)", "v[b]", "v.length" };
+
+    /**
+     * Writes a random expression of a number of operands, with
+     * some of its parts in parentheses
+     */
+    private static void expression(StringBuilder source, Random random, int operands) {
+        String operator = null;
+        for (int i = 0; i < operands; i++) {
+            if (i > 0) {
+                operator = OPERATORS[random.nextInt(OPERATORS.length)];
+                source.append(' ').append(operator).append(' ');
+            }
+            // '!' binds looser than the other operators but '&&'
+            if ((operator == null || operator.equals("&&")) && random.nextInt(3) == 0)
+                source.append('!');
+            if (operands > 3 && random.nextInt(5) == 0) {
+                source.append('(');
+                expression(source, random, 3);
+                source.append(')');
+            }
+            else
+                source.append(PRIMARIES[random.nextInt(PRIMARIES.length)]);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int methods = args.length > 0 ? Integer.parseInt(args[0]) : METHODS;
+        Random random = new Random(46);
+        StringBuilder source = new StringBuilder("class ExpressionBench {\n int[] v;\n");
+        for (int m = 0; m < methods; m++) {
+            source.append(" public int f").append(m).append("(int a, int b, int c, int d) {\n  int y;\n");
+            for (int s = 0; s < STATEMENTS; s++) {
+                source.append("  y = ");
+                expression(source, random, OPERANDS);
+                source.append(";\n");
+            }
+            source.append("  return y;\n }\n");
+        }
+        source.append(" public static void main(String[] args) {\n }\n}\n");
+        File file = CompUtils.writeSource("ExpressionBench", source.toString());
+
+        // the parser prints a banner on every parse
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        double[] rounds = new double[ROUNDS];
+        try {
+            for (int i = 0; i < WARM_UP; i++)
+                parse(file);
+            for (int round = 0; round < ROUNDS; round++) {
+                long start = System.nanoTime();
+                parse(file);
+                rounds[round] = (System.nanoTime() - start) / 1e6;
+            }
+        } finally {
+            System.setOut(out);
+            file.delete();
+        }
+        Arrays.sort(rounds);
+        System.out.printf("%d expressions of %d operands (%d KB): %.2f ms/parse%n",
+                methods * STATEMENTS, OPERANDS, source.length() / 1024, rounds[ROUNDS / 2]);
+    }
+
+    /**
+     * Parses a file
+     */
+    private static SimpleNode parse(File file) throws Exception {
+        SymbolInterner symbols = new SymbolInterner();
+        Parser parser = new Parser(new JmmLexer(new MappedCharStream(file), symbols));
+        parser.setSymbols(symbols);
+        return parser.parse();
+    }
+}
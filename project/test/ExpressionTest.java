@@ -0,0 +1,114 @@
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import SymbolTable.SymbolInterner;
+import org.junit.Test;
+
+/**
+ * Shape of the trees built by the precedence climbing expression
+ * parser, and expression heavy method bodies.
+ */
+public class ExpressionTest {
+
+    private static final int STATEMENTS = 4000;
+
+    private static final String[] OPERATORS = { "+", "-", "*", "/", "<", "&&" };
+
+    /**
+     * Writes a class whose method body is the given statements
+     */
+    private File writeClass(String name, String statements) throws IOException {
+        return CompUtils.writeSource(name, "class " + name + " {\n public int f(int a, int b, int c, int d) {\n  int y;\n"
+                + statements + "  return y;\n }\n public static void main(String[] args) {\n }\n}\n");
+    }
+
+    /**
+     * Parses a file
+     */
+    private SimpleNode parse(File file) throws ParseException, IOException {
+        return new Parser(new JmmLexer(new MappedCharStream(file), new SymbolInterner())).parse();
+    }
+
+    /**
+     * Writes an expression tree in prefix form, i.e 'sum(a,mult(b,c))'
+     */
+    private String shape(SimpleNode node) {
+        if (node.jjtGetNumChildren() == 0)
+            return String.valueOf(node.jjtGetValue());
+        StringBuilder buffer = new StringBuilder(node.toString()).append('(');
+        for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+            if (i > 0)
+                buffer.append(',');
+            buffer.append(this.shape((SimpleNode) node.jjtGetChild(i)));
+        }
+        return buffer.append(')').toString();
+    }
+
+    /**
+     * Parses 'y = expression;' and returns the shape of the expression
+     */
+    private String shape(String expression) throws Exception {
+        File file = this.writeClass("Shape", "  y = " + expression + ";\n");
+        try {
+            // Program > ClassDeclaration > RegularMethod > Assignment
+            SimpleNode method = (SimpleNode) this.parse(file).jjtGetChild(1).jjtGetChild(0);
+            return this.shape((SimpleNode) method.jjtGetChild(3).jjtGetChild(1));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testLeftAssociative() throws Exception {
+        assertEquals("sub(sub(a,b),c)", this.shape("a - b - c"));
+        assertEquals("div(div(a,b),c)", this.shape("a / b / c"));
+        assertEquals("lt(lt(a,b),c)", this.shape("a < b < c"));
+        assertEquals("and(and(a,b),c)", this.shape("a && b && c"));
+    }
+
+    @Test
+    public void testPrecedence() throws Exception {
+        // '+' binds looser than '-' and '*' looser than '/'
+        assertEquals("sum(a,sub(b,c))", this.shape("a + b - c"));
+        assertEquals("sum(sub(a,b),c)", this.shape("a - b + c"));
+        assertEquals("mult(a,div(b,c))", this.shape("a * b / c"));
+        assertEquals("mult(div(a,b),c)", this.shape("a / b * c"));
+        assertEquals("and(lt(sum(1,mult(2,3)),4),true)", this.shape("1 + 2 * 3 < 4 && true"));
+        assertEquals("mult(sum(a,b),c)", this.shape("(a + b) * c"));
+    }
+
+    @Test
+    public void testNot() throws Exception {
+        // '!' applies to a whole '<' expression
+        assertEquals("and(not(lt(a,b)),c)", this.shape("!a < b && c"));
+        assertEquals("and(a,not(not(b)))", this.shape("a && !!b"));
+        assertEquals("not(sum(a,b))", this.shape("!(a + b)"));
+    }
+
+    @Test
+    public void testExpressionHeavyBody() throws Exception {
+        java.util.Random random = new java.util.Random(7);
+        StringBuilder statements = new StringBuilder();
+        for (int i = 0; i < STATEMENTS; i++) {
+            statements.append("  y = ");
+            for (int j = 0; j < 16; j++) {
+                statements.append(j % 4 == 0 ? "(" : "").append((char) ('a' + random.nextInt(4)));
+                statements.append(j % 4 == 3 ? ")" : "");
+                if (j < 15)
+                    statements.append(' ').append(OPERATORS[random.nextInt(OPERATORS.length)]).append(' ');
+            }
+            statements.append(";\n");
+        }
+        File file = this.writeClass("ExpressionHeavy", statements.toString());
+
+        try {
+            SimpleNode root = this.parse(file);
+            // type, parameters, variable, statements and return
+            assertEquals(STATEMENTS + 4, root.jjtGetChild(1).jjtGetChild(0).jjtGetNumChildren());
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayDeque;
+
+import SymbolTable.SymbolInterner;
+import jasmin.JmmCompiler;
+import org.junit.Test;
+
+/**
+ * Flat ASTs rebuild the same nodes they were built from, and flat
+ * compilations write the same class as whole tree compilations.
+ */
+public class FlatASTTest {
+
+    private static final String[] FIXTURES = { "Life", "TicTacToe", "QuickSort", "Lazysort", "MonteCarloPi" };
+
+    /**
+     * Describes every node of a tree, in tree order: kind, value,
+     * position, symbol id and the fields of the node classes
+     */
+    private static String describe(SimpleNode root) {
+        StringBuilder description = new StringBuilder();
+        ArrayDeque<SimpleNode> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            SimpleNode node = stack.pop();
+            description.append(node.getClass().getSimpleName()).append(' ').append(node.jjtGetValue())
+                    .append(' ').append(node.line).append(':').append(node.column).append(" #").append(node.symbol);
+            if (node instanceof ASTImport) {
+                ASTImport importNode = (ASTImport) node;
+                description.append(' ').append(importNode.importId).append(' ').append(importNode.isStatic)
+                        .append(' ').append(importNode.methodId).append(' ').append(importNode.methodLine)
+                        .append(':').append(importNode.methodColumn);
+            }
+            else if (node instanceof ASTClassDeclaration) {
+                ASTClassDeclaration classNode = (ASTClassDeclaration) node;
+                description.append(' ').append(classNode.classId).append(' ').append(classNode.extId)
+                        .append(' ').append(classNode.extLine).append(':').append(classNode.extColumn);
+            }
+            else if (node instanceof ASTType)
+                description.append(' ').append(((ASTType) node).array);
+            else if (node instanceof ASTReturnType)
+                description.append(' ').append(((ASTReturnType) node).array);
+            else if (node instanceof ASTAssignment)
+                description.append(' ').append(((ASTAssignment) node).array);
+            description.append(" (").append(node.jjtGetNumChildren()).append(")\n");
+            for (int i = node.jjtGetNumChildren() - 1; i >= 0; i--)
+                stack.push((SimpleNode) node.jjtGetChild(i));
+        }
+        return description.toString();
+    }
+
+    /**
+     * Creates a parser of a file
+     */
+    private static Parser newParser(File file, SymbolInterner symbols) throws Exception {
+        Parser parser = new Parser(new JmmLexer(new MappedCharStream(file), symbols));
+        parser.setSymbols(symbols);
+        return parser;
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        File tempFolder = CompUtils.getTempFolder("comp_jmm_test");
+        for (String fixture : FIXTURES) {
+            File testFile = CompUtils.resourceCopy("fixtures/public/" + fixture + ".jmm", tempFolder);
+            try {
+                SimpleNode root = newParser(testFile, new SymbolInterner()).parse();
+                assertEquals(describe(root), describe(FlatAST.flatten(root).materialize()));
+
+                // methods flattened while parsing, and their signatures
+                FlatAST ast = new FlatAST(16);
+                SimpleNode signatures = newParser(testFile, new SymbolInterner()).parseFlat(ast);
+                ast.trim();
+                ast.addSignatures(signatures);
+                assertEquals(describe(newParser(testFile, new SymbolInterner()).scanSignatures()), describe(signatures));
+                SimpleNode classNode = (SimpleNode) root.jjtGetChild(root.jjtGetNumChildren() - 1);
+                int firstMethod = classNode.jjtGetNumChildren() - ast.getMethodCount();
+                for (int i = 0; i < ast.getMethodCount(); i++)
+                    assertEquals(describe((SimpleNode) classNode.jjtGetChild(firstMethod + i)), describe(ast.materialize(ast.getMethod(i))));
+            } finally {
+                testFile.delete();
+            }
+        }
+    }
+
+    @Test
+    public void testSameClass() throws Exception {
+        File tempFolder = CompUtils.getTempFolder("comp_jmm_test");
+        for (String fixture : FIXTURES) {
+            File testFile = CompUtils.resourceCopy("fixtures/public/" + fixture + ".jmm", tempFolder);
+            try {
+                String code = JmmCompiler.compile(testFile);
+                assertEquals(code, JmmCompiler.compile(testFile, "-flat"));
+                assertEquals(JmmCompiler.compile(testFile, "-time"), JmmCompiler.compile(testFile, "-time", "-flat"));
+            } finally {
+                testFile.delete();
+                new File("out/" + fixture + ".j").delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+
+import SymbolTable.SymbolInterner;
+import org.junit.Test;
+
+/**
+ * Edits reparse only the method they fall in, and leave the same tree,
+ * with the same positions, as a parse of the edited document.
+ */
+public class IncrementalParseTest {
+
+    /**
+     * Describes a tree in pre-order: node, position, name and parent of every node
+     */
+    private static String describe(SimpleNode root, SymbolInterner symbols) {
+        StringBuilder description = new StringBuilder();
+        ArrayDeque<SimpleNode> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            SimpleNode node = stack.pop();
+            description.append(node).append(" @").append(node.line).append(':').append(node.column)
+                    .append(" #").append(node.symbol == -1 ? "" : symbols.name(node.symbol))
+                    .append(" in ").append(node.jjtGetParent()).append('\n');
+            for (int i = node.jjtGetNumChildren() - 1; i >= 0; i--)
+                stack.push((SimpleNode) node.jjtGetChild(i));
+        }
+        return description.toString();
+    }
+
+    /**
+     * Describes the tree of a new parse of a document
+     */
+    private static String parse(String text) throws ParseException {
+        SymbolInterner symbols = new SymbolInterner();
+        return describe(new IncrementalParser(text, false, symbols).parse(), symbols);
+    }
+
+    /**
+     * Line and column of the first occurrence of a string, in a line without tabs before it
+     */
+    private static int[] position(String text, String occurrence) {
+        int offset = text.indexOf(occurrence);
+        assertTrue(offset >= 0);
+        return position(text, offset);
+    }
+
+    /**
+     * Line and column of a character, in a line without tabs before it
+     */
+    private static int[] position(String text, int offset) {
+        int lineStart = text.lastIndexOf('\n', offset - 1) + 1;
+        assertEquals(-1, text.substring(lineStart, offset).indexOf('\t'));
+        int line = 1;
+        for (int i = 0; i < lineStart; i++) {
+            if (text.charAt(i) == '\n')
+                line++;
+        }
+        return new int[] { line, offset - lineStart + 1 };
+    }
+
+    /**
+     * Replaces the first occurrence of a string
+     */
+    private static SimpleNode replace(IncrementalParser parser, String occurrence, String text) throws ParseException {
+        String document = parser.getText();
+        int[] begin = position(document, occurrence);
+        int[] end = position(document, document.indexOf(occurrence) + occurrence.length());
+        return parser.edit(begin[0], begin[1], end[0], end[1], text);
+    }
+
+    private static String readFixture(String name) throws Exception {
+        File tempFolder = CompUtils.getTempFolder("comp_jmm_test");
+        File testFile = CompUtils.resourceCopy("fixtures/public/" + name + ".jmm", tempFolder);
+        try {
+            return new String(Files.readAllBytes(testFile.toPath()), "UTF-8");
+        } finally {
+            testFile.delete();
+        }
+    }
+
+    @Test
+    public void testEditMethod() throws Exception {
+        SymbolInterner symbols = new SymbolInterner();
+        IncrementalParser parser = new IncrementalParser(readFixture("Life"), false, symbols);
+        parser.parse();
+        int size = parser.getReparsedLength();
+
+        // columns of a line change
+        SimpleNode method = replace(parser, "225000", "1");
+        assertTrue(method instanceof ASTRegularMethod);
+        assertEquals("init", ((ASTRegularMethod) method).jjtGetValue());
+        assertTrue(parser.getReparsedLength() < size / 4);
+        assertEquals(parse(parser.getText()), describe(parser.getRoot(), symbols));
+
+        // lines of the following methods change
+        method = replace(parser, "OVERPOP_LIM = 3;", "OVERPOP_LIM = 3;\n        UNDERPOP_LIM = OVERPOP_LIM - 1;\n");
+        assertTrue(method instanceof ASTRegularMethod);
+        assertTrue(parser.getReparsedLength() < size / 4);
+        assertEquals(parse(parser.getText()), describe(parser.getRoot(), symbols));
+
+        // the whole method
+        String text = parser.getText();
+        method = replace(parser, text.substring(text.indexOf("public boolean init()"), text.indexOf("return true;\n    }") + "return true;\n    }".length()),
+                "public boolean init() { return false; } ");
+        assertTrue(method instanceof ASTRegularMethod);
+        assertEquals(parse(parser.getText()), describe(parser.getRoot(), symbols));
+    }
+
+    @Test
+    public void testReparseDocument() throws Exception {
+        SymbolInterner symbols = new SymbolInterner();
+        IncrementalParser parser = new IncrementalParser(readFixture("Life"), false, symbols);
+        parser.parse();
+        String text = parser.getText();
+
+        // outside the methods
+        SimpleNode root = replace(parser, "int yMax;", "int yMax;\n    int zMax;");
+        assertSame(parser.getRoot(), root);
+        assertEquals(parser.getText().getBytes("UTF-8").length, parser.getReparsedLength());
+        assertEquals(parse(parser.getText()), describe(parser.getRoot(), symbols));
+
+        // a method which does not parse, then parses again
+        try {
+            replace(parser, "REPRODUCE_NUM = 3;", "REPRODUCE_NUM = 3");
+            fail("syntax error not found");
+        } catch (ParseException e) {
+            assertNull(parser.getRoot());
+        }
+        replace(parser, "REPRODUCE_NUM = 3", "REPRODUCE_NUM = 3;");
+        assertNotNull(parser.getRoot());
+        assertEquals(parse(parser.getText()), describe(parser.getRoot(), symbols));
+
+        // a form feed after a method, which the lexer does not skip
+        try {
+            replace(parser, "return true;\n    }", "return true;\n    }\f");
+            fail("lexical error not found");
+        } catch (ParseException | TokenMgrError e) {
+            assertNull(parser.getRoot());
+        }
+        replace(parser, "return true;\n    }\f", "return true;\n    }");
+        assertEquals(parse(parser.getText()), describe(parser.getRoot(), symbols));
+
+        // a new method
+        replace(parser, "return true;\n    }", "return true;\n    }\n    public int one() { return 1; }");
+        assertEquals(parse(parser.getText()), describe(parser.getRoot(), symbols));
+        assertNotEquals(text, parser.getText());
+    }
+}
@@ -0,0 +1,111 @@
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Cache entries are found for the same source and options only,
+ * replay the warnings of the compilation and are evicted least
+ * recently used first.
+ */
+public class JmmCacheTest {
+
+    private File directory;
+    private File outputDirectory;
+
+    @Before
+    public void setUp() {
+        File tempFolder = CompUtils.getTempFolder("comp_jmm_test");
+        this.directory = new File(tempFolder, "cache");
+        this.outputDirectory = new File(tempFolder, "cache_out");
+        deleteDirectory(this.directory);
+        deleteDirectory(this.outputDirectory);
+    }
+
+    @After
+    public void tearDown() {
+        deleteDirectory(this.directory);
+        deleteDirectory(this.outputDirectory);
+    }
+
+    private static void deleteDirectory(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files)
+                file.delete();
+        }
+        directory.delete();
+    }
+
+    /**
+     * Restores an entry, capturing what it prints
+     * @return printed text, null on a miss
+     */
+    private String restore(JmmCache cache) {
+        PrintStream out = System.out;
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(output, true));
+        try {
+            return cache.restore(this.outputDirectory) ? output.toString() : null;
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+    @Test
+    public void testHitAndMiss() throws Exception {
+        File source = CompUtils.writeSource("Cached", "class Cached {\n}\n");
+        try {
+            assertNull(this.restore(new JmmCache(this.directory, source, "time=false")));
+
+            String warning = "SEMANTIC WARNING: Variable 'x' may not have been initialized on every path at line: 3, column: 5.";
+            new JmmCache(this.directory, source, "time=false").store("Cached", ".class public Cached\n", Collections.singletonList(warning));
+
+            // same source and options: the class is written and the warning printed again
+            String printed = this.restore(new JmmCache(this.directory, source, "time=false"));
+            assertEquals(warning, printed.trim());
+            File jasminFile = new File(this.outputDirectory, "Cached.j");
+            assertEquals(".class public Cached\n", new String(Files.readAllBytes(jasminFile.toPath()), StandardCharsets.UTF_8));
+
+            // other options or another source
+            assertNull(this.restore(new JmmCache(this.directory, source, "time=true")));
+            Files.write(source.toPath(), "class Cached {\n int a;\n}\n".getBytes(StandardCharsets.UTF_8));
+            assertNull(this.restore(new JmmCache(this.directory, source, "time=false")));
+        } finally {
+            source.delete();
+        }
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        File source = CompUtils.writeSource("Cached", "class Cached {\n}\n");
+        try {
+            JmmCache[] caches = new JmmCache[3];
+            for (int i = 0; i < caches.length; i++)
+                caches[i] = new JmmCache(this.directory, source, "entry=" + i, 2, Long.MAX_VALUE);
+
+            caches[0].store("Cached", "0", Collections.emptyList());
+            caches[1].store("Cached", "1", Collections.emptyList());
+            // both entries were stored a minute ago, and entry 0 is used now
+            for (File entry : this.directory.listFiles())
+                entry.setLastModified(System.currentTimeMillis() - 60000);
+            assertNotNull(this.restore(caches[0]));
+
+            caches[2].store("Cached", "2", Collections.emptyList());
+            assertEquals(2, this.directory.listFiles().length);
+            assertNotNull(this.restore(caches[0]));
+            assertNull(this.restore(caches[1]));
+            assertNotNull(this.restore(caches[2]));
+        } finally {
+            source.delete();
+        }
+    }
+}
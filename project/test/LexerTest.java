@@ -0,0 +1,73 @@
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import SymbolTable.SymbolInterner;
+import org.junit.Test;
+
+/**
+ * JmmLexer returns the same tokens, with the same positions, and
+ * the same lexical errors as the generated token manager.
+ */
+public class LexerTest {
+
+    /**
+     * Describes the tokens of a source up to the end of file or the
+     * first lexical error: kind, image and position of every token
+     */
+    private static String describe(ParserTokenManager lexer) {
+        StringBuilder description = new StringBuilder();
+        try {
+            for (;;) {
+                Token token = lexer.getNextToken();
+                description.append(token.kind).append(" '").append(token.image).append("' ")
+                        .append(token.beginLine).append(':').append(token.beginColumn).append('-')
+                        .append(token.endLine).append(':').append(token.endColumn).append('\n');
+                if (token.kind == ParserConstants.EOF)
+                    break;
+            }
+        } catch (TokenMgrError e) {
+            description.append(e.getMessage()).append('\n');
+        }
+        return description.toString();
+    }
+
+    /**
+     * Checks that both lexers describe a source in the same way
+     */
+    private static void assertSameTokens(byte[] source) {
+        MappedCharStream.Region whole = new MappedCharStream.Region(0, source.length, 1, 0, false, false);
+        String generated = describe(new ParserTokenManager(new MappedCharStream(ByteBuffer.wrap(source), whole)));
+        String handWritten = describe(new JmmLexer(new MappedCharStream(ByteBuffer.wrap(source), whole), new SymbolInterner()));
+        assertEquals(generated, handWritten);
+    }
+
+    @Test
+    public void testFixtures() throws Exception {
+        File tempFolder = CompUtils.getTempFolder("comp_jmm_test");
+        for (String fixture : new String[] { "Life", "TicTacToe", "QuickSort", "Turing", "Lazysort", "MonteCarloPi" }) {
+            File testFile = CompUtils.resourceCopy("fixtures/public/" + fixture + ".jmm", tempFolder);
+            try {
+                assertSameTokens(Files.readAllBytes(testFile.toPath()));
+            } finally {
+                testFile.delete();
+            }
+        }
+    }
+
+    @Test
+    public void testEdgeInputs() {
+        String[] inputs = {
+                "0x", "0x1F 0XaB", "0b2", "0b101 0B1", "00789", "0 07 10",
+                "a **/ b", "/* a **/ b */ c", "/** } **/ x", "/* never closed", "/*",
+                "a & b", "a && b", "&",
+                "int a;\r\nint b;\r\n", "a\rb\r\n\nc", "// no new line", "// new line\nx",
+                "a\tb", "$_x1 _ y2$", "a/b", "x = !y;", "\u00e9", "\f"
+        };
+        for (String input : inputs)
+            assertSameTokens(input.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,143 @@
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayDeque;
+
+import SymbolTable.SymbolInterner;
+import org.junit.Test;
+
+/**
+ * Files parsed a method per thread build the same tree, with the same
+ * positions and symbol ids, as files parsed sequentially.
+ */
+public class ParallelParseTest {
+
+    /**
+     * Describes a tree in pre-order: node, position, symbol and parent
+     * of every node, then the names of the compilation in id order
+     */
+    private static String describe(SimpleNode root, SymbolInterner symbols) {
+        StringBuilder description = new StringBuilder();
+        ArrayDeque<SimpleNode> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            SimpleNode node = stack.pop();
+            description.append(node).append(" @").append(node.line).append(':').append(node.column)
+                    .append(" #").append(node.symbol).append(" in ").append(node.jjtGetParent()).append('\n');
+            for (int i = node.jjtGetNumChildren() - 1; i >= 0; i--)
+                stack.push((SimpleNode) node.jjtGetChild(i));
+        }
+        for (int id = 0; id < symbols.size(); id++)
+            description.append(symbols.name(id)).append('\n');
+        return description.toString();
+    }
+
+    @Test
+    public void testSameTree() throws Exception {
+        File tempFolder = CompUtils.getTempFolder("comp_jmm_test");
+        for (String fixture : new String[] { "Life", "TicTacToe", "QuickSort", "Turing" }) {
+            File testFile = CompUtils.resourceCopy("fixtures/public/" + fixture + ".jmm", tempFolder);
+            try {
+                SymbolInterner symbols = new SymbolInterner();
+                Parser parser = new Parser(new JmmLexer(new MappedCharStream(testFile), symbols));
+                parser.setSymbols(symbols);
+                String sequential = describe(parser.parse(), symbols);
+
+                symbols = new SymbolInterner();
+                ParallelParser parallelParser = new ParallelParser(testFile, false, symbols);
+                String parallel = describe(parallelParser.parse(), symbols);
+                assertTrue(parallelParser.getMethodCount() > 1);
+                assertEquals(sequential, parallel);
+            } finally {
+                testFile.delete();
+            }
+        }
+    }
+
+    @Test(expected = ParseException.class)
+    public void testSyntaxError() throws Exception {
+        File tempFolder = CompUtils.getTempFolder("comp_jmm_test");
+        File testFile = CompUtils.resourceCopy("fixtures/public/fail/syntactical/BlowUp.jmm", tempFolder);
+        try {
+            new ParallelParser(testFile, false, new SymbolInterner()).parse();
+        } finally {
+            testFile.delete();
+        }
+    }
+
+    /**
+     * Parses a source sequentially and then a method per thread, and
+     * checks that both reject it
+     */
+    private static void assertBothReject(String name, String contents) throws Exception {
+        File testFile = CompUtils.writeSource(name, contents);
+        try {
+            try {
+                SymbolInterner symbols = new SymbolInterner();
+                Parser parser = new Parser(new JmmLexer(new MappedCharStream(testFile), symbols));
+                parser.setSymbols(symbols);
+                parser.parse();
+                fail("sequential parse accepted " + name);
+            } catch (ParseException e) {
+                // expected
+            }
+            try {
+                new ParallelParser(testFile, false, new SymbolInterner()).parse();
+                fail("parallel parse accepted " + name);
+            } catch (ParseException e) {
+                // expected
+            }
+        } finally {
+            testFile.delete();
+        }
+    }
+
+    @Test
+    public void testTokensBetweenMethods() throws Exception {
+        assertBothReject("GapJunk", "class GapJunk {\n"
+                + " public int f(int a) {\n  return a;\n }\n"
+                + " this is not valid J-- at all ;;; int z; 42 + )\n"
+                + " public int g(int a) {\n  return a;\n }\n"
+                + " public static void main(String[] args) {\n }\n}\n");
+    }
+
+    @Test
+    public void testUnclosedComment() throws Exception {
+        // '**/' does not close a block comment, so the brace and the method are in it
+        assertBothReject("StarComment", "class StarComment {\n"
+                + " public int f(int a) {\n  return a;\n }\n"
+                + " /** } **/ public int g(int a) {\n  return a;\n }\n"
+                + " public static void main(String[] args) {\n }\n}\n");
+    }
+
+    @Test
+    public void testLexicalErrorInMethod() throws Exception {
+        StringBuilder source = new StringBuilder("class LexicalError {\n");
+        for (int i = 0; i < 16; i++)
+            source.append(" public int f").append(i).append("(int a) {\n  return a;\n }\n");
+        source.append(" public int g(int a) {\n  return a # 2;\n }\n");
+        source.append(" public static void main(String[] args) {\n }\n}\n");
+        File testFile = CompUtils.writeSource("LexicalError", source.toString());
+        try {
+            String expected = null;
+            try {
+                SymbolInterner symbols = new SymbolInterner();
+                Parser parser = new Parser(new JmmLexer(new MappedCharStream(testFile), symbols));
+                parser.setSymbols(symbols);
+                parser.parse();
+                fail("sequential parse accepted LexicalError");
+            } catch (TokenMgrError e) {
+                expected = e.getMessage();
+            }
+            // the error is the one of the sequential parse of the whole file
+            try {
+                new ParallelParser(testFile, false, new SymbolInterner()).parse();
+                fail("parallel parse accepted LexicalError");
+            } catch (TokenMgrError e) {
+                assertEquals(expected, e.getMessage());
+            }
+        } finally {
+            testFile.delete();
+        }
+    }
+}
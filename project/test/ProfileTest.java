@@ -0,0 +1,66 @@
+import static org.junit.Assert.*;
+
+import java.io.File;
+
+import jasmin.JasminUtils;
+import jasmin.JmmCompiler;
+import org.junit.Test;
+
+/**
+ * Instrumented builds count the branches taken, and builds with
+ * the resulting profile lay the hot branch out as the fall-through.
+ */
+public class ProfileTest {
+
+    private static final String SOURCE = "import static io.println(int) void;\n"
+            + "class HotElse {\n"
+            + "    public int run(int n) {\n"
+            + "        int i;\n"
+            + "        int s;\n"
+            + "        i = 0;\n"
+            + "        s = 0;\n"
+            + "        while (i < n) {\n"
+            + "            if (i < 1) {\n"
+            + "                s = s + 100;\n"
+            + "            } else {\n"
+            + "                s = s + 1;\n"
+            + "            }\n"
+            + "            i = i + 1;\n"
+            + "        }\n"
+            + "        return s;\n"
+            + "    }\n"
+            + "    public static void main(String[] args) {\n"
+            + "        HotElse h;\n"
+            + "        h = new HotElse();\n"
+            + "        io.println(h.run(10));\n"
+            + "    }\n"
+            + "}\n";
+
+    @Test
+    public void testHotElseFallsThrough() throws Exception {
+        File testFile = CompUtils.writeSource("HotElse", SOURCE);
+        // the instrumented class writes its counts to the working directory
+        File profile = new File("HotElse.prof");
+        profile.delete();
+        try {
+            String plain = JmmCompiler.compile(testFile);
+            assertTrue(plain.contains("ifeq else_0"));
+            assertTrue(plain.indexOf("bipush 100") < plain.indexOf("else_0:"));
+
+            String instrumented = JmmCompiler.compile(testFile, "-instrument");
+            assertEquals("109", JasminUtils.runJasmin(instrumented, null).getStdOut().trim());
+            assertTrue(profile.isFile());
+
+            String optimised = JmmCompiler.compile(testFile, "-branch-profile=" + profile.getAbsolutePath());
+            // the else branch is tested first and falls through
+            assertTrue(optimised.contains("ifne then_0"));
+            assertFalse(optimised.contains("ifeq else_0"));
+            assertTrue(optimised.indexOf("then_0:") < optimised.indexOf("bipush 100"));
+            assertEquals("109", JasminUtils.runJasmin(optimised, null).getStdOut().trim());
+        } finally {
+            testFile.delete();
+            profile.delete();
+            new File("out/HotElse.j").delete();
+        }
+    }
+}
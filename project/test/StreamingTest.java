@@ -0,0 +1,60 @@
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.junit.Test;
+
+/**
+ * Streamed compilations, one method at a time, write the same
+ * class as whole file compilations and nothing when they fail.
+ */
+public class StreamingTest {
+
+    /**
+     * Compiles a fixture
+     * @return Jasmin code of the class, null if the compilation failed
+     */
+    private String compile(String jmmResource, String className, String... options) throws Exception {
+        File tempFolder = CompUtils.getTempFolder("comp_jmm_test");
+        File testFile = CompUtils.resourceCopy(jmmResource, tempFolder);
+        File outFile = new File("out/" + className + ".j");
+        outFile.delete();
+
+        String[] args = new String[options.length + 1];
+        args[0] = testFile.getAbsolutePath();
+        System.arraycopy(options, 0, args, 1, options.length);
+        try {
+            Main.main(args);
+        } catch (Exception e) {
+            return null;
+        } finally {
+            testFile.delete();
+        }
+        assertFalse(new File("out/" + className + ".j.part").exists());
+        String code = new String(Files.readAllBytes(outFile.toPath()), "UTF-8");
+        outFile.delete();
+        return code;
+    }
+
+    @Test
+    public void testSameClass() throws Exception {
+        for (String fixture : new String[] { "Life", "TicTacToe", "QuickSort" }) {
+            String resource = "fixtures/public/" + fixture + ".jmm";
+            String code = this.compile(resource, fixture);
+            assertNotNull(code);
+            assertEquals(code, this.compile(resource, fixture, "-stream"));
+            assertEquals(this.compile(resource, fixture, "-time"), this.compile(resource, fixture, "-time", "-stream"));
+        }
+    }
+
+    @Test
+    public void testErrorsWriteNothing() throws Exception {
+        String[][] fixtures = { { "semantic/var_undef", "T" }, { "syntactical/BlowUp", "BlowUp" } };
+        for (String[] fixture : fixtures) {
+            assertNull(this.compile("fixtures/public/fail/" + fixture[0] + ".jmm", fixture[1], "-stream"));
+            assertFalse(new File("out/" + fixture[1] + ".j").exists());
+            assertFalse(new File("out/" + fixture[1] + ".j.part").exists());
+        }
+    }
+}
@@ -0,0 +1,39 @@
+import static org.junit.Assert.*;
+
+import java.io.File;
+
+import jasmin.JasminUtils;
+import jasmin.JmmCompiler;
+import org.junit.Test;
+import pt.up.fe.specs.util.system.ProcessOutputAsString;
+
+/**
+ * Timed builds print the calls and time of every method when main
+ * exits, after the normal output of the program.
+ */
+public class TimingTest {
+
+    @Test
+    public void testTimedBuild() throws Exception {
+        File tempFolder = CompUtils.getTempFolder("comp_jmm_test");
+        File testFile = CompUtils.resourceCopy("fixtures/public/Simple.jmm", tempFolder);
+        try {
+            String code = JmmCompiler.compile(testFile, "-time");
+            ProcessOutputAsString output = JasminUtils.runJasmin(code, null);
+
+            // the program prints the same as the normal build
+            assertEquals("30", output.getStdOut().trim());
+
+            // the profile goes to System.err, the most expensive method first
+            String[] profile = output.getStdErr().trim().split("\\r?\\n");
+            assertEquals(4, profile.length);
+            assertEquals("==== Method Profile ====", profile[0]);
+            assertTrue(profile[1].matches("main\\(\\[Ljava/lang/String;\\) calls: 1 time \\(ns\\): [0-9]+"));
+            assertTrue(profile[2].matches("add\\(II\\) calls: 1 time \\(ns\\): [0-9]+"));
+            assertEquals("constInstr() calls: 0 time (ns): 0", profile[3]);
+        } finally {
+            testFile.delete();
+            new File("out/Simple.j").delete();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import SymbolTable.SymbolInterner;
+import org.junit.Test;
+
+/**
+ * Very wide nodes: method bodies with thousands of statements
+ * and classes with thousands of methods.
+ */
+public class WideBodyTest {
+
+    private static final int STATEMENTS = 50000;
+
+    private static final int METHODS = 5000;
+
+    private static final int CHILDREN = 300000;
+
+    /**
+     * Writes a generated class to a temporary file
+     */
+    private File writeClass(String name, String body) throws IOException {
+        return CompUtils.writeSource(name, "class " + name + " {\n" + body + " public static void main(String[] args) {\n }\n}\n");
+    }
+
+    /**
+     * Parses a file
+     */
+    private SimpleNode parse(File file) throws ParseException, IOException {
+        return new Parser(new JmmLexer(new MappedCharStream(file), new SymbolInterner())).parse();
+    }
+
+    @Test
+    public void testWideMethodBody() throws Exception {
+        StringBuilder body = new StringBuilder(" public int wide(int x) {\n  int y;\n");
+        for (int i = 0; i < STATEMENTS; i++)
+            body.append("  y = x + ").append(i).append(";\n");
+        body.append("  return y;\n }\n");
+        File file = this.writeClass("WideBody", body.toString());
+
+        try {
+            SimpleNode root = this.parse(file);
+            // Program > ClassDeclaration > RegularMethod
+            SimpleNode method = (SimpleNode) root.jjtGetChild(1).jjtGetChild(0);
+            // return type, parameters, variable, statements and return
+            assertEquals(STATEMENTS + 4, method.jjtGetNumChildren());
+            assertEquals(method.jjtGetNumChildren(), method.jjtGetChildren().length);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testWideClass() throws Exception {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < METHODS; i++)
+            body.append(" public int method").append(i).append("() {\n  return ").append(i).append(";\n }\n");
+        File file = this.writeClass("WideClass", body.toString());
+
+        try {
+            SimpleNode root = this.parse(file);
+            // methods and main
+            assertEquals(METHODS + 1, root.jjtGetChild(1).jjtGetNumChildren());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testChildrenAddedInOrder() {
+        SimpleNode node = new SimpleNode(ParserTreeConstants.JJTPROGRAM);
+        for (int i = 0; i < CHILDREN; i++)
+            node.jjtAddChild(new SimpleNode(ParserTreeConstants.JJTIDENTIFIER), i);
+        node.jjtClose();
+
+        assertEquals(CHILDREN, node.jjtGetNumChildren());
+        assertEquals(CHILDREN, node.jjtGetChildren().length);
+    }
+}
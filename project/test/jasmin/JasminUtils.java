@@ -168,6 +168,17 @@ public class JasminUtils {
 	}
 	
     public static void testJasminBase(String code, String expectedOutput, String stdin) {
+		var classOutput = runJasmin(code, stdin);
+		
+		assertEquals(JasminUtils.normalize(expectedOutput), JasminUtils.normalize(classOutput.getOutput()));
+    }
+
+	/**
+	 * Assembles Jasmin code and runs the class, in the working directory.
+	 *
+	 * @return the output of the class
+	 */
+    public static ProcessOutputAsString runJasmin(String code, String stdin) {
 
 		var jasminFile = SpecsIo.getTempFile(null, "j");
 		SpecsIo.write(jasminFile, code);
@@ -219,7 +230,7 @@ public class JasminUtils {
 		
 		System.out.println("Program output:\n" + classOutput.getOutput());
 		
-		assertEquals(JasminUtils.normalize(expectedOutput), JasminUtils.normalize(classOutput.getOutput()));
+		return classOutput;
     }
 
 }
\ No newline at end of file